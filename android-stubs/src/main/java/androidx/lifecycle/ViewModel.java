@@ -1,4 +1,8 @@
 package androidx.lifecycle;
 
 public class ViewModel {
+
+    protected void onCleared() {
+
+    }
 }
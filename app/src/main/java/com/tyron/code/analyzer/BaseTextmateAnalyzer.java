@@ -4,6 +4,7 @@ import android.graphics.Color;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.tyron.code.language.textmate.CodeBlockUtils;
 import com.tyron.editor.Editor;
@@ -28,6 +29,7 @@ import io.github.rosemoe.sora.textmate.core.registry.Registry;
 import io.github.rosemoe.sora.textmate.core.theme.FontStyle;
 import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
 import io.github.rosemoe.sora.textmate.core.theme.Theme;
+import io.github.rosemoe.sora.textmate.core.theme.ThemeTrieElementRule;
 import io.github.rosemoe.sora.textmate.languageconfiguration.ILanguageConfiguration;
 import io.github.rosemoe.sora.textmate.languageconfiguration.internal.LanguageConfigurator;
 import io.github.rosemoe.sora.textmate.languageconfiguration.internal.supports.Folding;
@@ -35,9 +37,13 @@ import io.github.rosemoe.sora.util.ArrayList;
 import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
 
 /**
- * A text mate analyzer which does not use a TextMateLanguage
+ * A text mate analyzer which does not use a TextMateLanguage.
+ *
+ * <p>The line states are {@link StackElement}s of the grammar, subclasses that tokenize the lines
+ * themselves may use states of their own. Such subclasses pass no grammar, so that it is not
+ * loaded, the theme is still used for their styles.</p>
  */
-public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackElement, Span> {
+public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<Object, Span> {
 
     /**
      * Maximum for code block count
@@ -45,20 +51,27 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     public static int MAX_FOLDING_REGIONS_FOR_INDENT_LIMIT = 5000;
 
     private final Registry registry = new Registry();
+    @Nullable
     private final IGrammar grammar;
     private Theme theme;
     private final Editor editor;
     private final ILanguageConfiguration configuration;
 
+    /**
+     * @param grammarIns the grammar to tokenize the lines with, {@code null} if the subclass
+     * tokenizes them itself
+     */
     public BaseTextmateAnalyzer(Editor editor,
                                 String grammarName,
-                                InputStream grammarIns,
+                                @Nullable InputStream grammarIns,
                                 Reader languageConfiguration,
                                 IRawTheme theme) throws Exception {
         registry.setTheme(theme);
         this.editor = editor;
         this.theme = Theme.createFromRawTheme(theme);
-        this.grammar = registry.loadGrammarFromPathSync(grammarName, grammarIns);
+        this.grammar = grammarIns != null
+                ? registry.loadGrammarFromPathSync(grammarName, grammarIns)
+                : null;
         if (languageConfiguration != null) {
             LanguageConfigurator languageConfigurator =
                     new LanguageConfigurator(languageConfiguration);
@@ -111,12 +124,12 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     }
 
     @Override
-    public StackElement getInitialState() {
+    public Object getInitialState() {
         return null;
     }
 
     @Override
-    public boolean stateEquals(StackElement state, StackElement another) {
+    public boolean stateEquals(Object state, Object another) {
         if (state == null && another == null) {
             return true;
         }
@@ -127,10 +140,10 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     }
 
     @Override
-    public synchronized LineTokenizeResult<StackElement, Span> tokenizeLine(CharSequence lineC, StackElement state) {
+    public synchronized LineTokenizeResult<Object, Span> tokenizeLine(CharSequence lineC, Object state) {
         String line = lineC.toString();
         ArrayList<Span> tokens = new ArrayList<>();
-        ITokenizeLineResult2 lineTokens = grammar.tokenizeLine2(line, state);
+        ITokenizeLineResult2 lineTokens = grammar.tokenizeLine2(line, (StackElement) state);
         int tokensLength = lineTokens.getTokens().length / 2;
         for (int i = 0; i < tokensLength; i++) {
             int startIndex = lineTokens.getTokens()[2 * i];
@@ -157,7 +170,7 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     }
 
     @Override
-    public List<Span> generateSpansForLine(LineTokenizeResult<StackElement, Span> tokens) {
+    public List<Span> generateSpansForLine(LineTokenizeResult<Object, Span> tokens) {
         return null;
     }
 
@@ -184,4 +197,22 @@ public class BaseTextmateAnalyzer extends AsyncIncrementalAnalyzeManager<StackEl
     protected Theme getTheme() {
         return theme;
     }
+
+    /**
+     * @return the style the current theme gives to the given scope, or {@code 0} if the theme
+     * has no rule for it
+     */
+    protected long getStyle(String scope) {
+        List<ThemeTrieElementRule> match = theme.match(scope);
+        if (!match.isEmpty()) {
+            ThemeTrieElementRule next = match.iterator().next();
+            int foreground = next.foreground;
+            int fontStyle = next.fontStyle;
+            return TextStyle.makeStyle(foreground + 255, 0,
+                                       (fontStyle & FontStyle.Bold) == FontStyle.Bold,
+                                       (fontStyle & FontStyle.Italic) == FontStyle.Italic,
+                                       false);
+        }
+        return 0;
+    }
 }
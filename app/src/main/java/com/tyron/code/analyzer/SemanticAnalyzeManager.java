@@ -1,29 +1,46 @@
 package com.tyron.code.analyzer;
 
-import com.tyron.code.analyzer.semantic.SemanticToken;
+import com.tyron.code.analyzer.semantic.SemanticTokens;
+import com.tyron.code.analyzer.semantic.TokenType;
 import com.tyron.code.language.HighlightUtil;
-import com.tyron.editor.CharPosition;
-import com.tyron.editor.Content;
+import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
 import com.tyron.editor.Editor;
 
 import java.io.InputStream;
 import java.io.Reader;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
-import io.github.rosemoe.sora.lang.styling.MappedSpans;
 import io.github.rosemoe.sora.lang.styling.Span;
-import io.github.rosemoe.sora.lang.styling.Spans;
 import io.github.rosemoe.sora.lang.styling.Styles;
-import io.github.rosemoe.sora.lang.styling.TextStyle;
-import io.github.rosemoe.sora.textmate.core.grammar.StackElement;
-import io.github.rosemoe.sora.textmate.core.theme.FontStyle;
+import io.github.rosemoe.sora.text.CharPosition;
 import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
-import io.github.rosemoe.sora.textmate.core.theme.ThemeTrieElementRule;
 
+/**
+ * Applies semantic tokens on top of the TextMate styles. The tokens are shifted in place as the
+ * text is edited. TextMate tokenizes the lines of an edit again, and the lines after it until
+ * its state settles, such as after opening a comment. Only those lines lose their semantic spans,
+ * so only they are styled again when TextMate sends its updated styles. The whole file is only
+ * styled when new tokens are set.
+ */
 public abstract class SemanticAnalyzeManager extends DiagnosticTextmateAnalyzer {
 
-    private List<SemanticToken> mSemanticTokens;
+    private final Map<TokenType, Long> mStyleCache = new IdentityHashMap<>();
+
+    private SemanticTokens mSemanticTokens = SemanticTokens.EMPTY;
+    private long[] mTokenStyles = new long[0];
+    private Styles mAppliedStyles;
+    /**
+     * The edits that TextMate has not sent its updated styles for yet, oldest first.
+     */
+    private final ArrayDeque<PendingEdit> mPendingEdits = new ArrayDeque<>();
+    /**
+     * The lines tokenized again for the edits whose styles arrived while later edits were still
+     * pending, styled once the last of them arrives.
+     */
+    private int mRestyleStartLine = Integer.MAX_VALUE;
+    private int mRestyleEndLine = -1;
 
     public SemanticAnalyzeManager(Editor editor,
                                   String grammarName,
@@ -33,49 +50,161 @@ public abstract class SemanticAnalyzeManager extends DiagnosticTextmateAnalyzer
         super(editor, grammarName, grammarIns, languageConfiguration, theme);
     }
 
-    public abstract List<SemanticToken> analyzeSpansAsync(CharSequence contents);
+    public abstract SemanticTokens analyzeSpansAsync(CharSequence contents);
+
+    /**
+     * Replaces the semantic tokens of the file and styles the editor with them.
+     */
+    public void setSemanticTokens(SemanticTokens tokens) {
+        synchronized (this) {
+            mSemanticTokens = tokens;
+            mTokenStyles = computeTokenStyles(tokens);
+            mAppliedStyles = null;
+        }
+
+        Editor editor = mEditor;
+        if (editor instanceof CodeEditorView) {
+            CodeEditorView view = (CodeEditorView) editor;
+            Styles styles = view.getStyles();
+            if (styles != null) {
+                applySemanticTokens(styles);
+                view.setStyles(this, styles);
+            }
+        }
+    }
 
     @Override
-    public void insert(io.github.rosemoe.sora.text.CharPosition start,
-                       io.github.rosemoe.sora.text.CharPosition end,
-                       CharSequence insertedText) {
+    public void insert(CharPosition start, CharPosition end, CharSequence insertedText) {
+        synchronized (this) {
+            mSemanticTokens.shiftOnInsert(start.line, start.column, end.line, end.column);
+            mPendingEdits.add(new PendingEdit(start.line, end.line - start.line));
+        }
         super.insert(start, end, insertedText);
     }
 
+    @Override
+    public void delete(CharPosition start, CharPosition end, CharSequence deletedText) {
+        synchronized (this) {
+            mSemanticTokens.shiftOnDelete(start.line, start.column, end.line, end.column);
+            mPendingEdits.add(new PendingEdit(start.line, start.line - end.line));
+        }
+        super.delete(start, end, deletedText);
+    }
+
+    /**
+     * TextMate tokenizes the lines of an edit in order, starting at its first line, before it
+     * sends the updated styles. Counting them gives the lines that lost their semantic spans.
+     * Subclasses tokenizing the lines themselves override {@link #doTokenizeLine} instead.
+     */
+    @Override
+    public final synchronized LineTokenizeResult<Object, Span> tokenizeLine(CharSequence line, Object state) {
+        PendingEdit edit = mPendingEdits.peek();
+        if (edit != null) {
+            edit.tokenizedLines++;
+        }
+        return doTokenizeLine(line, state);
+    }
+
+    protected LineTokenizeResult<Object, Span> doTokenizeLine(CharSequence line, Object state) {
+        return super.tokenizeLine(line, state);
+    }
+
+    @Override
+    public void updateTheme(IRawTheme theme) {
+        super.updateTheme(theme);
+        synchronized (this) {
+            mStyleCache.clear();
+            mTokenStyles = computeTokenStyles(mSemanticTokens);
+            mAppliedStyles = null;
+        }
+    }
+
     @Override
     protected void modifyStyles(Styles styles) {
         super.modifyStyles(styles);
 
-        Content content = mEditor.getContent();
-
-        if (mSemanticTokens != null) {
-            for (int i = mSemanticTokens.size() - 1; i >= 0; i--) {
-                SemanticToken token = mSemanticTokens.get(i);
-                if (token.getOffset() > content.length()) {
-                    continue;
-                }
-                CharPosition start = mEditor.getCharPosition(token.getOffset());
-                CharPosition end =
-                        mEditor.getCharPosition(token.getOffset() + token.getLength());
-
-                Span span = Span.obtain(0, getStyle(token));
-                HighlightUtil.replaceSpan(styles, span, start.getLine(), start.getColumn(),
-                                          end.getLine(), end.getColumn());
+        if (styles != null) {
+            applySemanticTokens(styles);
+        }
+    }
+
+    private synchronized void applySemanticTokens(Styles styles) {
+        Editor editor = mEditor;
+        if (editor == null) {
+            return;
+        }
+        int startLine;
+        int endLine;
+        if (styles != mAppliedStyles) {
+            startLine = 0;
+            endLine = editor.getContent().getLineCount() - 1;
+        } else if (!mPendingEdits.isEmpty()) {
+            PendingEdit edit = mPendingEdits.poll();
+            // the lines of the earlier edits move with this edit
+            if (mRestyleEndLine >= 0) {
+                mRestyleStartLine = edit.shiftLine(mRestyleStartLine);
+                mRestyleEndLine = edit.shiftLine(mRestyleEndLine);
+            }
+            mRestyleStartLine = Math.min(mRestyleStartLine, edit.startLine);
+            mRestyleEndLine = Math.max(mRestyleEndLine,
+                    edit.startLine + Math.max(edit.tokenizedLines, 1) - 1);
+            if (!mPendingEdits.isEmpty()) {
+                // the tokens have already been shifted by the later edits, but these styles
+                // have not, wait for the styles of the last edit
+                return;
+            }
+            startLine = mRestyleStartLine;
+            endLine = mRestyleEndLine;
+            mRestyleStartLine = Integer.MAX_VALUE;
+            mRestyleEndLine = -1;
+        } else {
+            return;
+        }
+        mAppliedStyles = styles;
+
+        long[] tokenStyles = mTokenStyles;
+        mSemanticTokens.forEachInLines(startLine, endLine,
+                (line, column, length, type, modifiers) -> {
+            Span span = Span.obtain(0, tokenStyles[type]);
+            HighlightUtil.replaceSpan(styles, span, line, column, line, column + length);
+        });
+    }
+
+    private long[] computeTokenStyles(SemanticTokens tokens) {
+        TokenType[] types = tokens.getTypes();
+        long[] styles = new long[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Long style = mStyleCache.get(types[i]);
+            if (style == null) {
+                style = getStyle(types[i].toString());
+                mStyleCache.put(types[i], style);
             }
+            styles[i] = style;
         }
+        return styles;
     }
 
-    private long getStyle(SemanticToken token) {
-        List<ThemeTrieElementRule> match = getTheme().match(token.getTokenType().toString());
-        if (!match.isEmpty()) {
-            ThemeTrieElementRule next = match.iterator().next();
-            int foreground = next.foreground;
-            int fontStyle = next.fontStyle;
-            return TextStyle.makeStyle(foreground + 255, 0,
-                                       (fontStyle & FontStyle.Bold) == FontStyle.Bold,
-                                       (fontStyle & FontStyle.Italic) == FontStyle.Italic,
-                                       false);
+    private static class PendingEdit {
+        private final int startLine;
+        /**
+         * The number of lines added by the edit, negative when lines were deleted.
+         */
+        private final int lineDelta;
+        private int tokenizedLines;
+
+        private PendingEdit(int startLine, int lineDelta) {
+            this.startLine = startLine;
+            this.lineDelta = lineDelta;
+        }
+
+        /**
+         * @return the line a line from before this edit is on after it
+         */
+        private int shiftLine(int line) {
+            if (line <= startLine) {
+                return line;
+            }
+            return Math.max(startLine, line + lineDelta);
         }
-        return 0;
     }
 }
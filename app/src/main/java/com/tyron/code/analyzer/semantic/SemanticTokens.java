@@ -0,0 +1,237 @@
+package com.tyron.code.analyzer.semantic;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The semantic tokens of a file packed in a single int array, five ints per token in order
+ * of their position: the line relative to the previous token, the column relative to the
+ * previous token when on the same line, the length, the index of the token type and the
+ * modifiers.
+ *
+ * <p>Edits to the text shift the tokens in place and remove the tokens touched by the edit.
+ * Since each token is stored relative to the previous one, only the tokens on the edited lines
+ * and the line of the first token after them are rewritten. Instances are not thread safe.</p>
+ */
+public class SemanticTokens {
+
+    public static final SemanticTokens EMPTY = new SemanticTokens(new int[0], 0, new TokenType[0]);
+
+    private static final int ENTRY_SIZE = 5;
+
+    public interface TokenVisitor {
+        void visitToken(int line, int column, int length, int type, int modifiers);
+    }
+
+    private final int[] data;
+    private int size;
+    private final TokenType[] types;
+
+    private SemanticTokens(int[] data, int size, TokenType[] types) {
+        this.data = data;
+        this.size = size;
+        this.types = types;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the token types, indexed by the type passed to {@link TokenVisitor#visitToken}
+     */
+    public TokenType[] getTypes() {
+        return types;
+    }
+
+    public void forEach(TokenVisitor visitor) {
+        forEachInLines(0, Integer.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits the tokens from {@code startLine} to {@code endLine}, both inclusive.
+     */
+    public void forEachInLines(int startLine, int endLine, TokenVisitor visitor) {
+        int line = 0;
+        int column = 0;
+        for (int i = 0; i < size * ENTRY_SIZE; i += ENTRY_SIZE) {
+            int deltaLine = data[i];
+            line += deltaLine;
+            column = deltaLine == 0 ? column + data[i + 1] : data[i + 1];
+            if (line > endLine) {
+                return;
+            }
+            if (line >= startLine) {
+                visitor.visitToken(line, column, data[i + 2], data[i + 3], data[i + 4]);
+            }
+        }
+    }
+
+    /**
+     * Shifts the tokens after text was inserted at the given start position, ending at the
+     * given end position. A token that the insertion splits is removed.
+     */
+    public void shiftOnInsert(int startLine, int startColumn, int endLine, int endColumn) {
+        shift(startLine, startColumn, startLine, startColumn, endLine, endColumn);
+    }
+
+    /**
+     * Shifts the tokens after the text from the given start position to the given end
+     * position was deleted. The tokens that overlap the deleted text are removed.
+     */
+    public void shiftOnDelete(int startLine, int startColumn, int endLine, int endColumn) {
+        shift(startLine, startColumn, endLine, endColumn, startLine, startColumn);
+    }
+
+    /**
+     * Moves the tokens at or after {@code (fromLine, fromColumn)} by the distance to
+     * {@code (toLine, toColumn)} and removes the tokens that overlap the range from
+     * {@code (startLine, startColumn)} to {@code (fromLine, fromColumn)}.
+     */
+    private void shift(int startLine, int startColumn, int fromLine, int fromColumn,
+                       int toLine, int toColumn) {
+        // skip the tokens that end before the edit
+        int line = 0;
+        int column = 0;
+        int i = 0;
+        int end = size * ENTRY_SIZE;
+        for (; i < end; i += ENTRY_SIZE) {
+            int nextLine = line + data[i];
+            int nextColumn = data[i] == 0 ? column + data[i + 1] : data[i + 1];
+            if (nextLine > startLine || (nextLine == startLine && nextColumn + data[i + 2] > startColumn)) {
+                break;
+            }
+            line = nextLine;
+            column = nextColumn;
+        }
+
+        // the tokens up to the last line of the edit are either removed or moved to the
+        // line the edit ends on, they are rewritten in place
+        int previousLine = line;
+        int previousColumn = column;
+        int write = i;
+        for (; i < end; i += ENTRY_SIZE) {
+            int tokenLine = line + data[i];
+            if (tokenLine > fromLine) {
+                break;
+            }
+            int tokenColumn = data[i] == 0 ? column + data[i + 1] : data[i + 1];
+            line = tokenLine;
+            column = tokenColumn;
+            if (tokenLine < fromLine || tokenColumn < fromColumn) {
+                continue;
+            }
+            int newColumn = toColumn + tokenColumn - fromColumn;
+            data[write] = toLine - previousLine;
+            data[write + 1] = toLine == previousLine ? newColumn - previousColumn : newColumn;
+            data[write + 2] = data[i + 2];
+            data[write + 3] = data[i + 3];
+            data[write + 4] = data[i + 4];
+            previousLine = toLine;
+            previousColumn = newColumn;
+            write += ENTRY_SIZE;
+        }
+
+        // the following tokens keep their positions relative to each other, only the line of
+        // the first of them changes, their column is already absolute as it starts a new line
+        if (i < end) {
+            int firstLine = line + data[i] + toLine - fromLine;
+            if (write != i) {
+                System.arraycopy(data, i, data, write, end - i);
+            }
+            data[write] = firstLine - previousLine;
+        }
+        size -= (i - write) / ENTRY_SIZE;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SemanticTokens{size=" + size + ", types=" + Arrays.toString(types) + '}';
+    }
+
+    /**
+     * Collects tokens in any order, they are expected to mostly arrive in order of their
+     * position so they are sorted with an insertion sort.
+     */
+    public static class Builder {
+        private final List<TokenType> types;
+        private final Map<TokenType, Integer> typeIndexes = new IdentityHashMap<>();
+        private int[] entries;
+        private int size;
+
+        public Builder() {
+            this(64, new TokenType[0]);
+        }
+
+        private Builder(int expectedSize, TokenType[] types) {
+            this.entries = new int[Math.max(expectedSize, 16) * ENTRY_SIZE];
+            this.types = new ArrayList<>(Arrays.asList(types));
+            for (int i = 0; i < types.length; i++) {
+                typeIndexes.put(types[i], i);
+            }
+        }
+
+        public Builder add(int line, int column, int length, TokenType type, int modifiers) {
+            Integer index = typeIndexes.get(type);
+            if (index == null) {
+                index = types.size();
+                types.add(type);
+                typeIndexes.put(type, index);
+            }
+            return add(line, column, length, (int) index, modifiers);
+        }
+
+        private Builder add(int line, int column, int length, int type, int modifiers) {
+            if (line < 0 || column < 0 || length <= 0) {
+                return this;
+            }
+            if ((size + 1) * ENTRY_SIZE > entries.length) {
+                entries = Arrays.copyOf(entries, entries.length * 2);
+            }
+            int position = size * ENTRY_SIZE;
+            while (position > 0 && compare(entries, position - ENTRY_SIZE, line, column) > 0) {
+                System.arraycopy(entries, position - ENTRY_SIZE, entries, position, ENTRY_SIZE);
+                position -= ENTRY_SIZE;
+            }
+            entries[position] = line;
+            entries[position + 1] = column;
+            entries[position + 2] = length;
+            entries[position + 3] = type;
+            entries[position + 4] = modifiers;
+            size++;
+            return this;
+        }
+
+        private static int compare(int[] entries, int position, int line, int column) {
+            int result = Integer.compare(entries[position], line);
+            return result != 0 ? result : Integer.compare(entries[position + 1], column);
+        }
+
+        public SemanticTokens build() {
+            if (size == 0 && types.isEmpty()) {
+                return EMPTY;
+            }
+            int[] data = new int[size * ENTRY_SIZE];
+            int previousLine = 0;
+            int previousColumn = 0;
+            for (int i = 0; i < data.length; i += ENTRY_SIZE) {
+                int line = entries[i];
+                int column = entries[i + 1];
+                data[i] = line - previousLine;
+                data[i + 1] = line == previousLine ? column - previousColumn : column;
+                data[i + 2] = entries[i + 2];
+                data[i + 3] = entries[i + 3];
+                data[i + 4] = entries[i + 4];
+                previousLine = line;
+                previousColumn = column;
+            }
+            return new SemanticTokens(data, size, types.toArray(new TokenType[0]));
+        }
+    }
+}
@@ -1,84 +1,277 @@
 package com.tyron.code.language.java;
 
-import android.os.Bundle;
+import android.content.res.AssetManager;
 
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
+import com.tyron.code.ApplicationLoader;
+import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
+import com.tyron.editor.Editor;
 
 import org.jetbrains.kotlin.com.intellij.lang.java.lexer.JavaLexer;
 import org.jetbrains.kotlin.com.intellij.lexer.Lexer;
-import org.jetbrains.kotlin.com.intellij.lexer.LexerPosition;
 import org.jetbrains.kotlin.com.intellij.pom.java.LanguageLevel;
+import org.jetbrains.kotlin.com.intellij.psi.JavaTokenType;
+import org.jetbrains.kotlin.com.intellij.psi.TokenType;
+import org.jetbrains.kotlin.com.intellij.psi.impl.source.tree.ElementType;
+import org.jetbrains.kotlin.com.intellij.psi.tree.IElementType;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 
-import io.github.rosemoe.sora.lang.analysis.IncrementalAnalyzeManager;
-import io.github.rosemoe.sora.lang.analysis.StyleReceiver;
 import io.github.rosemoe.sora.lang.styling.Span;
-import io.github.rosemoe.sora.text.CharPosition;
-import io.github.rosemoe.sora.text.ContentReference;
+import io.github.rosemoe.sora.lang.styling.TextStyle;
+import io.github.rosemoe.sora.langs.textmate.theme.TextMateColorScheme;
+import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
+import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
 
-public class IncrementalJavaAnalyzeManager
-        implements IncrementalAnalyzeManager<LexerPosition, Object> {
+/**
+ * Highlights java files with the java lexer instead of the TextMate grammar, diagnostics and
+ * semantic tokens are still applied by {@link JavaAnalyzer}. The grammar is not loaded, only
+ * the theme is used for the styles.
+ *
+ * <p>The lexer is started on each line on its own, the state of a line is whether it ends
+ * inside a block comment or a text block so only the lines up to the one whose state did not
+ * change are lexed again after an edit.</p>
+ */
+public class IncrementalJavaAnalyzeManager extends JavaAnalyzer {
 
-    private final Lexer mLexer;
+    private static final Integer STATE_NORMAL = 0;
+    private static final Integer STATE_BLOCK_COMMENT = 1;
+    private static final Integer STATE_TEXT_BLOCK = 2;
 
-    public IncrementalJavaAnalyzeManager() {
-        mLexer = new JavaLexer(LanguageLevel.HIGHEST);
-    }
+    private static final int STYLE_NORMAL = 0;
+    private static final int STYLE_KEYWORD = 1;
+    private static final int STYLE_CONSTANT = 2;
+    private static final int STYLE_NUMBER = 3;
+    private static final int STYLE_STRING = 4;
+    private static final int STYLE_COMMENT = 5;
+    private static final int STYLE_OPERATOR = 6;
+    private static final int STYLE_ANNOTATION = 7;
 
-    @Override
-    public LexerPosition getInitialState() {
-        return mLexer.getCurrentPosition();
-    }
+    /**
+     * The TextMate scopes of each style, the styles are taken from the theme so both
+     * highlighters look the same.
+     */
+    private static final String[] STYLE_SCOPES = {
+            "source.java",
+            "keyword.control.java",
+            "constant.language.java",
+            "constant.numeric.java",
+            "string.quoted.double.java",
+            "comment.block.java",
+            "keyword.operator.java",
+            "storage.type.annotation.java"
+    };
 
-    @Override
-    public LineTokenizeResult<LexerPosition, Object> getState(int line) {
-        return null;
-    }
+    /**
+     * Used when the theme has no rule for the scope of a style.
+     */
+    private static final int[] DEFAULT_COLORS = {
+            EditorColorScheme.TEXT_NORMAL,
+            EditorColorScheme.KEYWORD,
+            EditorColorScheme.KEYWORD,
+            EditorColorScheme.LITERAL,
+            EditorColorScheme.LITERAL,
+            EditorColorScheme.COMMENT,
+            EditorColorScheme.OPERATOR,
+            EditorColorScheme.ANNOTATION
+    };
 
-    @Override
-    public boolean stateEquals(LexerPosition state, LexerPosition another) {
-        return state.equals(another);
-    }
+    public static IncrementalJavaAnalyzeManager create(Editor editor) {
+        try {
+            AssetManager assetManager = ApplicationLoader.applicationContext.getAssets();
 
-    @Override
-    public LineTokenizeResult<LexerPosition, Object> tokenizeLine(CharSequence line, LexerPosition state) {
-        return null;
+            try (InputStreamReader config = new InputStreamReader(assetManager.open(CONFIG_PATH))) {
+                return new IncrementalJavaAnalyzeManager(editor, config,
+                                                         ((TextMateColorScheme) ((CodeEditorView) editor)
+                        .getColorScheme()).getRawTheme());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    @Override
-    public List<Span> generateSpansForLine(LineTokenizeResult<LexerPosition, Object> tokens) {
-        return null;
+    private final Lexer mLexer = new JavaLexer(LanguageLevel.HIGHEST);
+    private long[] mStyles;
+
+    public IncrementalJavaAnalyzeManager(Editor editor,
+                                         Reader languageConfiguration,
+                                         IRawTheme theme) throws Exception {
+        super(editor, GRAMMAR_NAME, null, languageConfiguration, theme);
+        mStyles = computeStyles();
     }
 
     @Override
-    public void setReceiver(@Nullable StyleReceiver receiver) {
+    public void updateTheme(IRawTheme theme) {
+        super.updateTheme(theme);
+        mStyles = computeStyles();
+    }
 
+    private long[] computeStyles() {
+        long[] styles = new long[STYLE_SCOPES.length];
+        for (int i = 0; i < styles.length; i++) {
+            long style = getStyle(STYLE_SCOPES[i]);
+            styles[i] = style != 0 ? style : TextStyle.makeStyle(DEFAULT_COLORS[i]);
+        }
+        return styles;
     }
 
     @Override
-    public void reset(@NonNull ContentReference content, @NonNull Bundle extraArguments) {
-        mLexer.start(content.getReference().toString());
+    public Object getInitialState() {
+        return STATE_NORMAL;
     }
 
     @Override
-    public void insert(CharPosition start, CharPosition end, CharSequence insertedContent) {
+    protected LineTokenizeResult<Object, Span> doTokenizeLine(CharSequence line, Object state) {
+        long[] styles = mStyles;
+        List<Span> spans = new ArrayList<>();
+        int length = line.length();
+        int start = 0;
+
+        if (STATE_BLOCK_COMMENT.equals(state) || STATE_TEXT_BLOCK.equals(state)) {
+            boolean comment = STATE_BLOCK_COMMENT.equals(state);
+            spans.add(Span.obtain(0, styles[comment ? STYLE_COMMENT : STYLE_STRING]));
+            int end = comment ? findCommentEnd(line) : findTextBlockEnd(line);
+            if (end == -1) {
+                return new LineTokenizeResult<>(state, null, spans);
+            }
+            start = end;
+        }
+
+        Object endState = STATE_NORMAL;
+        IElementType previous = null;
+        mLexer.start(line, start, length, 0);
+        IElementType type;
+        while ((type = mLexer.getTokenType()) != null) {
+            int tokenStart = mLexer.getTokenStart();
+            int tokenEnd = mLexer.getTokenEnd();
+            if (type != TokenType.WHITE_SPACE) {
+                int style = type == JavaTokenType.AT ||
+                            (previous == JavaTokenType.AT && type == JavaTokenType.IDENTIFIER)
+                        ? STYLE_ANNOTATION
+                        : getStyleIndex(type);
+                addSpan(spans, tokenStart, styles[style]);
+                previous = type;
+            } else if (spans.isEmpty()) {
+                addSpan(spans, tokenStart, styles[STYLE_NORMAL]);
+            }
+            if (tokenEnd == length) {
+                endState = getEndState(type, line, tokenStart, tokenEnd);
+            }
+            mLexer.advance();
+        }
 
+        if (spans.isEmpty()) {
+            spans.add(Span.obtain(0, styles[STYLE_NORMAL]));
+        }
+        return new LineTokenizeResult<>(endState, null, spans);
     }
 
-    @Override
-    public void delete(CharPosition start, CharPosition end, CharSequence deletedContent) {
+    private static void addSpan(List<Span> spans, int column, long style) {
+        if (!spans.isEmpty()) {
+            Span last = spans.get(spans.size() - 1);
+            if (last.style == style) {
+                return;
+            }
+            if (last.column == column) {
+                last.style = style;
+                return;
+            }
+        }
+        spans.add(Span.obtain(column, style));
+    }
 
+    private static int getStyleIndex(IElementType type) {
+        if (type == JavaTokenType.IDENTIFIER) {
+            return STYLE_NORMAL;
+        }
+        if (type == JavaTokenType.TRUE_KEYWORD || type == JavaTokenType.FALSE_KEYWORD ||
+            type == JavaTokenType.NULL_KEYWORD) {
+            return STYLE_CONSTANT;
+        }
+        if (ElementType.KEYWORD_BIT_SET.contains(type)) {
+            return STYLE_KEYWORD;
+        }
+        if (type == JavaTokenType.STRING_LITERAL || type == JavaTokenType.CHARACTER_LITERAL ||
+            type == JavaTokenType.TEXT_BLOCK_LITERAL) {
+            return STYLE_STRING;
+        }
+        if (ElementType.LITERAL_BIT_SET.contains(type)) {
+            return STYLE_NUMBER;
+        }
+        if (ElementType.JAVA_COMMENT_BIT_SET.contains(type)) {
+            return STYLE_COMMENT;
+        }
+        if (ElementType.OPERATION_BIT_SET.contains(type) || type == JavaTokenType.QUEST ||
+            type == JavaTokenType.COLON || type == JavaTokenType.ARROW ||
+            type == JavaTokenType.DOUBLE_COLON) {
+            return STYLE_OPERATOR;
+        }
+        return STYLE_NORMAL;
     }
 
-    @Override
-    public void rerun() {
+    /**
+     * @return the state of the next line given the last token of this line, block comments and
+     * text blocks that are not closed on this line continue on the next one
+     */
+    private static Object getEndState(IElementType type, CharSequence line, int start, int end) {
+        int length = end - start;
+        if (ElementType.JAVA_COMMENT_BIT_SET.contains(type) && startsWith(line, start, "/*")) {
+            boolean closed = length >= 4 && startsWith(line, end - 2, "*/");
+            return closed ? STATE_NORMAL : STATE_BLOCK_COMMENT;
+        }
+        if (type == JavaTokenType.TEXT_BLOCK_LITERAL) {
+            boolean closed = length >= 6 && findTextBlockEnd(line.subSequence(start + 3, end)) == length - 3;
+            return closed ? STATE_NORMAL : STATE_TEXT_BLOCK;
+        }
+        return STATE_NORMAL;
+    }
 
+    /**
+     * @return the index after the {@code *}{@code /} closing the block comment the line starts
+     * in, or {@code -1} if the comment is not closed on this line
+     */
+    private static int findCommentEnd(CharSequence line) {
+        for (int i = 1; i < line.length(); i++) {
+            if (line.charAt(i) == '/' && line.charAt(i - 1) == '*') {
+                return i + 1;
+            }
+        }
+        return -1;
     }
 
-    @Override
-    public void destroy() {
+    /**
+     * @return the index after the quotes closing the text block the line starts in, or
+     * {@code -1} if the text block is not closed on this line
+     */
+    private static int findTextBlockEnd(CharSequence line) {
+        int quotes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\') {
+                i++;
+                quotes = 0;
+            } else if (c == '"') {
+                if (++quotes == 3) {
+                    return i + 1;
+                }
+            } else {
+                quotes = 0;
+            }
+        }
+        return -1;
+    }
 
+    private static boolean startsWith(CharSequence line, int offset, String prefix) {
+        if (offset < 0 || offset + prefix.length() > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -14,7 +14,7 @@ import com.tyron.code.ApplicationLoader;
 import com.tyron.code.BuildConfig;
 import com.tyron.code.analyzer.DiagnosticTextmateAnalyzer;
 import com.tyron.code.analyzer.SemanticAnalyzeManager;
-import com.tyron.code.analyzer.semantic.SemanticToken;
+import com.tyron.code.analyzer.semantic.SemanticTokens;
 import com.tyron.code.ui.editor.impl.text.rosemoe.CodeEditorView;
 import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.common.SharedPreferenceKeys;
@@ -75,9 +75,9 @@ import kotlin.jvm.functions.Function0;
 
 public class JavaAnalyzer extends SemanticAnalyzeManager {
 
-    private static final String GRAMMAR_NAME = "java.tmLanguage.json";
-    private static final String LANGUAGE_PATH = "textmate/java/syntaxes/java.tmLanguage.json";
-    private static final String CONFIG_PATH = "textmate/java/language-configuration.json";
+    static final String GRAMMAR_NAME = "java.tmLanguage.json";
+    static final String LANGUAGE_PATH = "textmate/java/syntaxes/java.tmLanguage.json";
+    static final String CONFIG_PATH = "textmate/java/language-configuration.json";
 
     public static JavaAnalyzer create(Editor editor) {
         try {
@@ -118,7 +118,7 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
     }
 
     @Override
-    public List<SemanticToken> analyzeSpansAsync(CharSequence contents) {
+    public SemanticTokens analyzeSpansAsync(CharSequence contents) {
         Editor editor = mEditorReference.get();
         JavaCompilerService compiler = getCompiler(editor);
         if (compiler == null) {
@@ -203,6 +203,11 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
                                             .collect(Collectors.toList());
                             editor.setDiagnostics(collect);
 
+                            JavaSemanticHighlighter highlighter =
+                                    new JavaSemanticHighlighter(task.task);
+                            highlighter.scan(task.root(currentFile), true);
+                            setSemanticTokens(highlighter.getTokens());
+
                             ProgressManager.getInstance()
                                     .runLater(() -> editor.setAnalyzing(false), 300);
                         }
@@ -9,9 +9,11 @@ import com.google.common.collect.Range;
 import com.google.googlejavaformat.java.Formatter;
 import com.google.googlejavaformat.java.FormatterException;
 import com.google.googlejavaformat.java.JavaFormatterOptions;
+import com.tyron.code.ApplicationLoader;
 import com.tyron.code.language.CompletionItemWrapper;
 import com.tyron.code.language.EditorFormatter;
 import com.tyron.code.analyzer.BaseTextmateAnalyzer;
+import com.tyron.common.SharedPreferenceKeys;
 import com.tyron.completion.model.CompletionList;
 import com.tyron.editor.Editor;
 
@@ -44,7 +46,12 @@ public class JavaLanguage implements Language, EditorFormatter {
 
     public JavaLanguage(Editor editor) {
         mEditor = editor;
-        mAnalyzer = JavaAnalyzer.create(editor);
+        if (ApplicationLoader.getDefaultPreferences()
+                .getBoolean(SharedPreferenceKeys.JAVA_LEXER_HIGHLIGHTING, false)) {
+            mAnalyzer = IncrementalJavaAnalyzeManager.create(editor);
+        } else {
+            mAnalyzer = JavaAnalyzer.create(editor);
+        }
     }
 
     public boolean isAutoCompleteChar(char p1) {
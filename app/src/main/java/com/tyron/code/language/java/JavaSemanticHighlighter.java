@@ -2,8 +2,7 @@ package com.tyron.code.language.java;
 
 import androidx.annotation.NonNull;
 
-import com.google.common.collect.Ordering;
-import com.tyron.code.analyzer.semantic.SemanticToken;
+import com.tyron.code.analyzer.semantic.SemanticTokens;
 import com.tyron.code.analyzer.semantic.TokenType;
 
 import javax.lang.model.element.Element;
@@ -16,6 +15,7 @@ import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ErroneousTree;
 import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.LineMap;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
@@ -28,28 +28,22 @@ import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.tree.TreeInfo;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 
 public class JavaSemanticHighlighter extends TreePathScanner<Void, Boolean> {
 
-    private static final Ordering<SemanticToken> INCREASING =
-            Ordering.from(Comparator.comparingInt(SemanticToken::getOffset));
-
-
     private JCTree.JCCompilationUnit cu;
     private SourcePositions pos;
     private final Trees trees;
     private final Elements elements;
-    private List<SemanticToken> tokens;
+    private final SemanticTokens.Builder tokens;
 
     public JavaSemanticHighlighter(JavacTask task) {
         this.trees = Trees.instance(task);
         this.pos = trees.getSourcePositions();
         this.elements = task.getElements();
-        this.tokens = new ArrayList<>();
+        this.tokens = new SemanticTokens.Builder();
     }
 
 
@@ -137,12 +131,18 @@ public class JavaSemanticHighlighter extends TreePathScanner<Void, Boolean> {
 
 
 
-    public List<SemanticToken> getTokens() {
-        return INCREASING.immutableSortedCopy(tokens);
+    public SemanticTokens getTokens() {
+        return tokens.build();
     }
 
     private void addToken(int offset, int length, TokenType tokenType, int modifiers) {
-        tokens.add(new SemanticToken(offset, length, tokenType, modifiers));
+        if (offset < 0) {
+            return;
+        }
+        LineMap lineMap = cu.getLineMap();
+        int line = (int) lineMap.getLineNumber(offset) - 1;
+        int column = (int) lineMap.getColumnNumber(offset) - 1;
+        tokens.add(line, column, length, tokenType, modifiers);
     }
 
     private void addToken(JCTree node, TokenType tokenType, int modifiers) {
@@ -1,56 +1,43 @@
 package com.tyron.code.language.xml;
 
-import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
-import com.tyron.builder.compiler.BuildType;
-import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
-import com.tyron.builder.exception.CompilationFailedException;
-import com.tyron.builder.log.ILogger;
-import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.code.BuildConfig;
 import com.tyron.code.analyzer.DiagnosticTextmateAnalyzer;
-import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.code.util.ProjectUtils;
 import com.tyron.common.util.Debouncer;
-import com.tyron.completion.index.CompilerService;
-import com.tyron.completion.java.JavaCompilerProvider;
-import com.tyron.completion.java.compiler.CompilerContainer;
-import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.progress.ProgressManager;
+import com.tyron.completion.xml.XmlRepository;
+import com.tyron.completion.xml.XmlResourceValidator;
 import com.tyron.completion.xml.task.InjectResourcesTask;
 import com.tyron.editor.Content;
 import com.tyron.editor.Editor;
 import com.tyron.viewbinding.task.InjectViewBindingTask;
-
-import org.apache.commons.io.FileUtils;
+import com.tyron.xml.completion.repository.ResourceRepository;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.lang.ref.WeakReference;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
-import java.util.stream.Collectors;
 
 import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
 import kotlin.Unit;
+import kotlin.jvm.functions.Function0;
 
 public class XMLAnalyzer extends DiagnosticTextmateAnalyzer {
 
-    private boolean mAnalyzerEnabled = false;
-
-    private static final Debouncer sDebouncer = new Debouncer(Duration.ofMillis(900L), Executors.newScheduledThreadPool(
+    private static final Debouncer sDebouncer = new Debouncer(Duration.ofMillis(200L), Executors.newScheduledThreadPool(
             1, new ThreadFactory() {
                 @Override
                 public Thread newThread(Runnable runnable) {
@@ -61,6 +48,12 @@ public class XMLAnalyzer extends DiagnosticTextmateAnalyzer {
 
     private final WeakReference<Editor> mEditorReference;
 
+    /**
+     * The resources declared by the file when the R and view binding classes were last
+     * generated, they are only generated again when these change.
+     */
+    private Set<String> mDeclaredResources;
+
     public XMLAnalyzer(Editor editor,
                        String grammarName,
                        InputStream grammarIns,
@@ -78,144 +71,75 @@ public class XMLAnalyzer extends DiagnosticTextmateAnalyzer {
             return;
         }
 
-        if (!mAnalyzerEnabled) {
-            Project project = editor.getProject();
-            if (project == null) {
-                return;
-            }
-
-            ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(true));
-
-            sDebouncer.cancel();
-            sDebouncer.schedule(cancel -> {
-                AndroidModule mainModule = (AndroidModule) project.getMainModule();
-                try {
-                    InjectResourcesTask.inject(project, mainModule);
-                    InjectViewBindingTask.inject(project, mainModule);
-                    ProgressManager.getInstance().runLater(() -> editor.setAnalyzing(false), 300);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                return Unit.INSTANCE;
-            });
+        File currentFile = editor.getCurrentFile();
+        if (currentFile == null || !ProjectUtils.isResourceXMLFile(currentFile)) {
             return;
         }
 
-        File currentFile = editor.getCurrentFile();
-        if (currentFile == null) {
+        Project project = editor.getProject();
+        if (project == null) {
+            return;
+        }
+        Module module = project.getModule(currentFile);
+        if (!(module instanceof AndroidModule)) {
             return;
         }
-
-        List<DiagnosticWrapper> diagnosticWrappers = new ArrayList<>();
 
         sDebouncer.cancel();
         sDebouncer.schedule(cancel -> {
-            compile(currentFile, contents.toString(), new ILogger() {
-                @Override
-                public void info(DiagnosticWrapper wrapper) {
-                    addMaybe(wrapper);
-                }
-
-                @Override
-                public void debug(DiagnosticWrapper wrapper) {
-                    addMaybe(wrapper);
+            try {
+                validate(editor, project, (AndroidModule) module, currentFile,
+                         contents.toString(), cancel);
+            } catch (IOException e) {
+                if (BuildConfig.DEBUG) {
+                    Log.e("XMLAnalyzer", "Failed to validate " + currentFile.getName(), e);
                 }
-
-                @Override
-                public void warning(DiagnosticWrapper wrapper) {
-                    addMaybe(wrapper);
-                }
-
-                @Override
-                public void error(DiagnosticWrapper wrapper) {
-                    addMaybe(wrapper);
-                }
-
-                private void addMaybe(DiagnosticWrapper wrapper) {
-                    if (currentFile.equals(wrapper.getSource())) {
-                        diagnosticWrappers.add(wrapper);
-                    }
-                }
-            });
-
-            if (!cancel.invoke()) {
-                ProgressManager.getInstance().runLater(() -> {
-                    editor.setDiagnostics(
-                            diagnosticWrappers.stream().filter(it -> it.getLineNumber() > 0)
-                                    .collect(Collectors.toList()));
-                });
             }
             return Unit.INSTANCE;
         });
-
     }
 
-    private final Handler handler = new Handler();
-    long delay = 1000L;
-    long lastTime;
-
-    private void compile(File file, String contents, ILogger logger) {
-        boolean isResource = ProjectUtils.isResourceXMLFile(file);
-
-        if (isResource) {
-            Project project = ProjectManager.getInstance().getCurrentProject();
-            if (project != null) {
-                Module module = project.getModule(file);
-                if (module instanceof AndroidModule) {
-                    try {
-                        doGenerate(project, (AndroidModule) module, file, contents, logger);
-                    } catch (IOException | CompilationFailedException e) {
-                        if (BuildConfig.DEBUG) {
-                            Log.e("XMLAnalyzer", "Failed compiling", e);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void doGenerate(Project project,
-                            AndroidModule module,
-                            File file,
-                            String contents,
-                            ILogger logger) throws IOException, CompilationFailedException {
-        if (!file.canWrite() || !file.canRead()) {
-            return;
-        }
+    /**
+     * Checks the file against the resources of the module in-process, AAPT2 is only run by the
+     * actual build. The resources of the file are updated on the thread of the repository.
+     */
+    private void validate(Editor editor,
+                          Project project,
+                          AndroidModule module,
+                          File file,
+                          String contents,
+                          Function0<Boolean> cancel) throws IOException {
+        XmlRepository xmlRepository = XmlRepository.getRepository(project, module);
+        Future<XmlResourceValidator.Result> future = xmlRepository.submit(() -> {
+            ResourceRepository repository = xmlRepository.getRepository();
+            repository.updateFile(file, contents);
+            return new XmlResourceValidator(repository).validate(file, contents);
+        });
 
-        if (!module.getFileManager().isOpened(file)) {
-            Log.e("XMLAnalyzer", "File is not yet opened!");
+        XmlResourceValidator.Result result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            // cancelled by a newer edit, the file is validated again
             return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
         }
-
-        Optional<CharSequence> fileContent = module.getFileManager().getFileContent(file);
-        if (!fileContent.isPresent()) {
-            Log.e("XMLAnalyzer", "No snapshot for file found.");
+        if (cancel.invoke()) {
             return;
         }
-
-        contents = fileContent.get().toString();
-        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
-        IncrementalAapt2Task task = new IncrementalAapt2Task(project, module, logger, false);
-
-        try {
-            task.prepare(BuildType.DEBUG);
-            task.run();
-        } catch (CompilationFailedException e) {
-            throw e;
-        }
-
-        // work around to refresh R.java file
-        File resourceClass = module.getJavaFile(module.getPackageName() + ".R");
-        if (resourceClass != null) {
-            JavaCompilerProvider provider =
-                    CompilerService.getInstance().getIndex(JavaCompilerProvider.KEY);
-            JavaCompilerService service = provider.getCompiler(project, module);
-
-            CompilerContainer container = service.compile(resourceClass.toPath());
-            container.run(__ -> {
-
-            });
+        ProgressManager.getInstance().runLater(() -> editor.setDiagnostics(result.getDiagnostics()));
+
+        Set<String> declaredResources = result.getDeclaredResources();
+        if (!declaredResources.equals(mDeclaredResources)) {
+            mDeclaredResources = declaredResources;
+            InjectResourcesTask.inject(project, module);
+            if (ProjectUtils.isLayoutXMLFile(file)) {
+                InjectViewBindingTask.inject(project, module);
+            }
         }
     }
 }
@@ -63,6 +63,7 @@ import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
 import javax.tools.Diagnostic;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -392,6 +393,13 @@ public class MainFragment extends Fragment implements ProjectManager.OnProjectOp
         mMainViewModel.setCurrentState(getString(R.string.compilation_state_compiling));
         mMainViewModel.setIndexing(true);
         mLogViewModel.clear(LogViewModel.BUILD_LOG);
+        try {
+            // the build log kept in memory is bounded, keep the complete log on disk
+            File logFile = new File(mProject.getMainModule().getBuildDirectory(), "logs/build.log");
+            mLogViewModel.setLogFile(LogViewModel.BUILD_LOG, logFile);
+        } catch (IOException e) {
+            Log.w("MainFragment", "Unable to create build log file", e);
+        }
 
         requireActivity().startService(new Intent(requireContext(), CompilerService.class));
         requireActivity().bindService(new Intent(requireContext(), CompilerService.class),
@@ -14,7 +14,10 @@ import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.KotlinModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.listener.ProjectFileListener;
+import com.tyron.builder.project.util.SourceDirectoryWatcher;
 import com.tyron.code.ApplicationLoader;
 import com.tyron.code.template.CodeTemplate;
 import com.tyron.code.util.ProjectUtils;
@@ -28,6 +31,7 @@ import com.tyron.completion.progress.ProgressManager;
 import com.tyron.completion.xml.XmlIndexProvider;
 import com.tyron.completion.xml.XmlRepository;
 import com.tyron.completion.xml.task.InjectResourcesTask;
+import com.tyron.kotlin.completion.core.model.KotlinAnalysisProjectCache;
 import com.tyron.viewbinding.task.InjectViewBindingTask;
 
 import org.apache.commons.io.FileUtils;
@@ -39,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
@@ -67,6 +72,90 @@ public class ProjectManager {
         return INSTANCE;
     }
 
+    /**
+     * Updates the completion caches of a module once its files are changed outside of the
+     * editor. Modifications of files that are open in the editor are its own saves, their
+     * contents are already known to the caches.
+     */
+    private static final ProjectFileListener EXTERNAL_CHANGE_LISTENER = new ProjectFileListener() {
+        @Override
+        public void onFilesChanged(@NonNull Module module,
+                                   @NonNull Map<File, SourceDirectoryWatcher.ChangeType> changes) {
+            List<File> javaFiles = new ArrayList<>();
+            List<File> resourceFiles = new ArrayList<>();
+            boolean kotlinChanged = false;
+            for (Map.Entry<File, SourceDirectoryWatcher.ChangeType> entry : changes.entrySet()) {
+                File file = entry.getKey();
+                if (entry.getValue() == SourceDirectoryWatcher.ChangeType.MODIFIED &&
+                    module.getFileManager().isOpened(file)) {
+                    continue;
+                }
+                if (file.getName().endsWith(".kt")) {
+                    kotlinChanged = true;
+                } else if (file.getName().endsWith(".java")) {
+                    javaFiles.add(file);
+                } else if (file.getName().endsWith(".xml") && module instanceof AndroidModule &&
+                           file.toPath().startsWith(((AndroidModule) module)
+                                                            .getAndroidResourcesDirectory()
+                                                            .toPath())) {
+                    resourceFiles.add(file);
+                }
+            }
+
+            if (kotlinChanged && module instanceof KotlinModule) {
+                KotlinAnalysisProjectCache.INSTANCE.resetCache((KotlinModule) module);
+            }
+            if (!javaFiles.isEmpty()) {
+                JavaCompilerProvider provider =
+                        CompilerService.getInstance().getIndex(JavaCompilerProvider.KEY);
+                if (provider != null) {
+                    provider.invalidate(javaFiles);
+                }
+            }
+            if (!resourceFiles.isEmpty()) {
+                updateResources((AndroidModule) module, resourceFiles);
+            }
+        }
+
+        @Override
+        public void onModuleReindexed(@NonNull Module module) {
+            if (module instanceof KotlinModule) {
+                KotlinAnalysisProjectCache.INSTANCE.resetCache((KotlinModule) module);
+            }
+            JavaCompilerProvider javaProvider =
+                    CompilerService.getInstance().getIndex(JavaCompilerProvider.KEY);
+            if (javaProvider != null) {
+                javaProvider.clear();
+            }
+            XmlIndexProvider xmlProvider =
+                    CompilerService.getInstance().getIndex(XmlIndexProvider.KEY);
+            if (xmlProvider != null) {
+                xmlProvider.clear();
+            }
+        }
+
+        private void updateResources(AndroidModule module, List<File> files) {
+            Project project = getInstance().getCurrentProject();
+            if (project == null) {
+                return;
+            }
+            XmlRepository repository = XmlIndexProvider.getRepository(project, module);
+            if (repository == null || !repository.isInitialized()) {
+                // the resources are read from disk once the repository is initialized
+                return;
+            }
+            try {
+                for (File file : files) {
+                    repository.getRepository().updateFile(file, null);
+                }
+                InjectResourcesTask.inject(project, module);
+            } catch (IOException e) {
+                LOG.warning("Unable to update the resources of " + module.getName() + ": " +
+                            e.getMessage());
+            }
+        }
+    };
+
     private final List<OnProjectOpenListener> mProjectOpenListeners = new ArrayList<>();
     private volatile Project mCurrentProject;
 
@@ -122,6 +211,14 @@ public class ProjectManager {
             logger.warning("Failed to open project: " + exception.getMessage());
         }
 
+        try {
+            mCurrentProject.addFileListener(EXTERNAL_CHANGE_LISTENER);
+            mCurrentProject.startWatching();
+        } catch (IOException exception) {
+            logger.warning("Unable to watch project files, external changes will not be " +
+                           "picked up until the project is opened again: " + exception.getMessage());
+        }
+
 //        Module module = mCurrentProject.getMainModule();
 //
 //        if (module instanceof AndroidModule) {
@@ -201,6 +298,8 @@ public class ProjectManager {
     }
 
     public void closeProject(@NonNull Project project) {
+        project.stopWatching();
+        project.removeFileListener(EXTERNAL_CHANGE_LISTENER);
         if (project.equals(mCurrentProject)) {
             mCurrentProject = null;
         }
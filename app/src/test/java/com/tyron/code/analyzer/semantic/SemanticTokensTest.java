@@ -0,0 +1,185 @@
+package com.tyron.code.analyzer.semantic;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SemanticTokensTest {
+
+    private static final TokenType FIELD = TokenType.create("variable.other.object.property.java");
+    private static final TokenType METHOD = TokenType.create("entity.name.function.member.java");
+
+    @Test
+    public void testInsertOnSameLine() {
+        SemanticTokens tokens = new SemanticTokens.Builder()
+                .add(0, 0, 3, FIELD, 0)
+                .add(0, 10, 4, METHOD, 0)
+                .add(2, 4, 5, FIELD, 0)
+                .build();
+
+        tokens.shiftOnInsert(0, 5, 0, 7);
+
+        assertEquals("0:0:3 0:12:4 2:4:5", toString(tokens));
+    }
+
+    @Test
+    public void testInsertLinesMovesFollowingTokens() {
+        SemanticTokens tokens = new SemanticTokens.Builder()
+                .add(0, 0, 3, FIELD, 0)
+                .add(1, 6, 4, METHOD, 0)
+                .add(1, 12, 2, FIELD, 0)
+                .add(3, 4, 5, FIELD, 0)
+                .build();
+
+        // a new line with two characters of indentation typed in the middle of line 1
+        tokens.shiftOnInsert(1, 10, 2, 2);
+
+        assertEquals("0:0:3 1:6:4 2:4:2 4:4:5", toString(tokens));
+    }
+
+    @Test
+    public void testInsertRemovesSplitToken() {
+        SemanticTokens tokens = new SemanticTokens.Builder()
+                .add(0, 0, 3, FIELD, 0)
+                .add(0, 10, 4, METHOD, 0)
+                .add(1, 0, 5, FIELD, 0)
+                .build();
+
+        tokens.shiftOnInsert(0, 12, 0, 13);
+
+        assertEquals("0:0:3 1:0:5", toString(tokens));
+    }
+
+    @Test
+    public void testDeleteLinesJoinsTokensOnStartLine() {
+        SemanticTokens tokens = new SemanticTokens.Builder()
+                .add(0, 0, 3, FIELD, 0)
+                .add(1, 2, 4, METHOD, 0)
+                .add(2, 8, 2, FIELD, 0)
+                .add(2, 12, 2, METHOD, 0)
+                .add(4, 1, 5, FIELD, 0)
+                .build();
+
+        tokens.shiftOnDelete(0, 5, 2, 8);
+
+        assertEquals("0:0:3 0:5:2 0:9:2 2:1:5", toString(tokens));
+    }
+
+    @Test
+    public void testShiftMatchesRebuiltTokens() {
+        Random random = new Random(41);
+        for (int round = 0; round < 500; round++) {
+            SemanticTokens.Builder builder = new SemanticTokens.Builder();
+            List<int[]> expected = new ArrayList<>();
+            int line = 0;
+            for (int i = random.nextInt(30); i > 0; i--) {
+                line += random.nextInt(3);
+                int column = random.nextInt(20);
+                int length = 1 + random.nextInt(5);
+                if (!overlaps(expected, line, column, length)) {
+                    builder.add(line, column, length, random.nextBoolean() ? FIELD : METHOD, 0);
+                    expected.add(new int[]{line, column, length});
+                }
+            }
+            SemanticTokens tokens = builder.build();
+
+            for (int edit = 0; edit < 10; edit++) {
+                int startLine = random.nextInt(line + 2);
+                int startColumn = random.nextInt(25);
+                int endLine = startLine + random.nextInt(3);
+                int endColumn = endLine == startLine
+                        ? startColumn + 1 + random.nextInt(5)
+                        : random.nextInt(25);
+                if (random.nextBoolean()) {
+                    tokens.shiftOnInsert(startLine, startColumn, endLine, endColumn);
+                    expected = rebuildOnInsert(expected, startLine, startColumn, endLine, endColumn);
+                } else {
+                    tokens.shiftOnDelete(startLine, startColumn, endLine, endColumn);
+                    expected = rebuildOnDelete(expected, startLine, startColumn, endLine, endColumn);
+                }
+                assertEquals(toString(expected), toString(tokens));
+                assertEquals(expected.size(), tokens.size());
+            }
+        }
+    }
+
+    private static boolean overlaps(List<int[]> tokens, int line, int column, int length) {
+        for (int[] token : tokens) {
+            if (token[0] == line && column < token[1] + token[2] && token[1] < column + length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the rules the tokens were shifted by when every edit rebuilt them
+
+    private static List<int[]> rebuildOnInsert(List<int[]> tokens, int startLine, int startColumn,
+                                               int endLine, int endColumn) {
+        List<int[]> result = new ArrayList<>();
+        for (int[] token : tokens) {
+            int line = token[0];
+            int column = token[1];
+            int length = token[2];
+            if (line < startLine || (line == startLine && column + length <= startColumn)) {
+                result.add(token);
+            } else if (line > startLine) {
+                result.add(new int[]{line + endLine - startLine, column, length});
+            } else if (column >= startColumn) {
+                result.add(new int[]{endLine, endColumn + column - startColumn, length});
+            }
+        }
+        return sorted(result);
+    }
+
+    private static List<int[]> rebuildOnDelete(List<int[]> tokens, int startLine, int startColumn,
+                                               int endLine, int endColumn) {
+        List<int[]> result = new ArrayList<>();
+        for (int[] token : tokens) {
+            int line = token[0];
+            int column = token[1];
+            int length = token[2];
+            if (line < startLine || (line == startLine && column + length <= startColumn)) {
+                result.add(token);
+            } else if (line > endLine) {
+                result.add(new int[]{line - endLine + startLine, column, length});
+            } else if (line == endLine && column >= endColumn) {
+                result.add(new int[]{startLine, startColumn + column - endColumn, length});
+            }
+        }
+        return sorted(result);
+    }
+
+    private static List<int[]> sorted(List<int[]> tokens) {
+        tokens.sort((left, right) -> left[0] != right[0]
+                ? Integer.compare(left[0], right[0])
+                : Integer.compare(left[1], right[1]));
+        return tokens;
+    }
+
+    private static String toString(List<int[]> tokens) {
+        StringBuilder builder = new StringBuilder();
+        for (int[] token : sorted(tokens)) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(token[0]).append(':').append(token[1]).append(':').append(token[2]);
+        }
+        return builder.toString();
+    }
+
+    private static String toString(SemanticTokens tokens) {
+        StringBuilder builder = new StringBuilder();
+        tokens.forEach((line, column, length, type, modifiers) -> {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(line).append(':').append(column).append(':').append(length);
+        });
+        return builder.toString();
+    }
+}
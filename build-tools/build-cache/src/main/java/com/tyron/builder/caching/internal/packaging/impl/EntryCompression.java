@@ -0,0 +1,86 @@
+package com.tyron.builder.caching.internal.packaging.impl;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Decides how each file inside a build cache entry is compressed.
+ *
+ * <p>The compression is recorded once per entry by its id, and whether a file is compressed
+ * is decided again from its name when unpacking. The rules of a compression must therefore
+ * not change without changing its id.</p>
+ */
+public enum EntryCompression {
+
+    /**
+     * Stores every file without compressing it.
+     */
+    NONE("none") {
+        @Override
+        public int getLevel(String fileName) {
+            return STORED;
+        }
+    },
+
+    /**
+     * Compresses with the fastest deflate level, files that are already compressed are stored.
+     */
+    FAST("fast") {
+        @Override
+        public int getLevel(String fileName) {
+            return isCompressed(fileName) ? STORED : Deflater.BEST_SPEED;
+        }
+    };
+
+    /**
+     * Returned by {@link #getLevel(String)} for files that should be stored as is.
+     */
+    public static final int STORED = -1;
+
+    private final String id;
+
+    EntryCompression(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param fileName the name of the file being packed
+     * @return the deflate level of the file, or {@link #STORED}
+     */
+    public abstract int getLevel(String fileName);
+
+    /**
+     * @return the compression with the given id, {@link #NONE} if there is no id
+     */
+    public static EntryCompression forId(@Nullable String id) {
+        if (id == null) {
+            return NONE;
+        }
+        for (EntryCompression compression : values()) {
+            if (compression.id.equals(id)) {
+                return compression;
+            }
+        }
+        throw new IllegalStateException("Cached entry format error, unknown compression " + id);
+    }
+
+    static boolean isCompressed(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".jar")
+               || name.endsWith(".zip")
+               || name.endsWith(".apk")
+               || name.endsWith(".aar")
+               || name.endsWith(".ap_")
+               || name.endsWith(".gz")
+               || name.endsWith(".png")
+               || name.endsWith(".webp")
+               || name.endsWith(".jpg")
+               || name.endsWith(".jpeg");
+    }
+}
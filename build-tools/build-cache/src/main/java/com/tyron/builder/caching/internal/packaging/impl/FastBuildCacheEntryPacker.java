@@ -0,0 +1,75 @@
+package com.tyron.builder.caching.internal.packaging.impl;
+
+import com.tyron.builder.internal.snapshot.FileSystemSnapshot;
+import com.tyron.builder.caching.internal.CacheableEntity;
+import com.tyron.builder.caching.internal.origin.OriginReader;
+import com.tyron.builder.caching.internal.origin.OriginWriter;
+import com.tyron.builder.caching.internal.packaging.BuildCacheEntryPacker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Writes entries without compressing the whole stream, the delegate is expected to compress
+ * the files inside the entry on its own (see {@link TarBuildCacheEntryPacker} with an
+ * {@link EntryCompression}). Entries start with a format header so that entries written by
+ * {@link GZipBuildCacheEntryPacker} can still be read.
+ */
+public class FastBuildCacheEntryPacker implements BuildCacheEntryPacker {
+
+    private static final byte[] MAGIC = {'C', 'A', 'B', 'C'};
+    /**
+     * Version 2 records the compression once in the metadata entry instead of on every file.
+     */
+    private static final int FORMAT_VERSION = 2;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BuildCacheEntryPacker delegate;
+
+    public FastBuildCacheEntryPacker(BuildCacheEntryPacker delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        BufferedOutputStream bufferedOutput = new BufferedOutputStream(output, BUFFER_SIZE);
+        bufferedOutput.write(MAGIC);
+        bufferedOutput.write(FORMAT_VERSION);
+        PackResult result = delegate.pack(entity, snapshots, bufferedOutput, writeOrigin);
+        bufferedOutput.flush();
+        return result;
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        bufferedInput.mark(MAGIC.length + 1);
+        int first = bufferedInput.read();
+        int second = bufferedInput.read();
+        if (first != -1 && second != -1 && (first | (second << 8)) == GZIP_MAGIC) {
+            // written before entries were compressed per file
+            bufferedInput.reset();
+            try (GZIPInputStream gzipInput = new GZIPInputStream(bufferedInput, BUFFER_SIZE)) {
+                return delegate.unpack(entity, gzipInput, readOrigin);
+            }
+        }
+
+        bufferedInput.reset();
+        for (byte b : MAGIC) {
+            if (bufferedInput.read() != b) {
+                throw new IllegalStateException("Cached entry format error, unknown format.");
+            }
+        }
+        int version = bufferedInput.read();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException("Cached entry format error, unsupported version " + version);
+        }
+        return delegate.unpack(entity, bufferedInput, readOrigin);
+    }
+}
@@ -4,10 +4,12 @@ import static com.tyron.builder.internal.file.FileMetadata.AccessType.DIRECT;
 import static com.tyron.builder.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.hash.HashCode;
 import com.google.common.io.CountingOutputStream;
+import com.tyron.builder.api.internal.file.temp.TemporaryFileProvider;
 import com.tyron.builder.internal.RelativePathSupplier;
 import com.tyron.builder.internal.file.FileType;
 import com.tyron.builder.internal.file.impl.DefaultFileMetadata;
@@ -43,11 +45,25 @@ import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -77,21 +93,70 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
 
+    /**
+     * Files up to this size are compressed in memory, larger ones are compressed to a
+     * temporary file so the pending entries hold at most this much heap each.
+     */
+    private static final long MAX_IN_MEMORY_SIZE = 1024 * 1024;
+
+    /**
+     * PAX header of the metadata entry holding the id of the {@link EntryCompression} used for
+     * the files of the archive, so the files themselves keep plain ustar headers.
+     */
+    private static final String COMPRESSION_HEADER = "CODEASSIST.compression";
+
+    /**
+     * PAX header of the metadata entry listing the escaped names of the file trees whose file
+     * is compressed. Their file name is not part of the archive, so it cannot be used to decide
+     * whether they are compressed when unpacking.
+     */
+    private static final String COMPRESSED_FILE_TREES_HEADER = "CODEASSIST.compressedFileTrees";
+
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    private final EntryCompression compression;
+    private final Executor executor;
+    private final int maxPendingEntries;
+    @Nullable
+    private final TemporaryFileProvider temporaryFileProvider;
 
     public TarBuildCacheEntryPacker(
             TarPackerFileSystemSupport fileSystemSupport,
             FilePermissionAccess filePermissionAccess,
             StreamHasher streamHasher,
             Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, EntryCompression.NONE, Runnable::run, 1, null);
+    }
+
+    /**
+     * @param compression           decides how each file is compressed
+     * @param executor              used to compress files in parallel, compressing blocks on
+     *                              file IO
+     * @param maxPendingEntries     the amount of files that can be compressed ahead of the one
+     *                              being written to the archive
+     * @param temporaryFileProvider creates the files large files are compressed to
+     */
+    public TarBuildCacheEntryPacker(
+            TarPackerFileSystemSupport fileSystemSupport,
+            FilePermissionAccess filePermissionAccess,
+            StreamHasher streamHasher,
+            Interner<String> stringInterner,
+            EntryCompression compression,
+            Executor executor,
+            int maxPendingEntries,
+            @Nullable TemporaryFileProvider temporaryFileProvider
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.compression = compression;
+        this.executor = executor;
+        this.maxPendingEntries = Math.max(1, maxPendingEntries);
+        this.temporaryFileProvider = temporaryFileProvider;
     }
 
     @Override
@@ -106,16 +171,41 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
             tarOutput.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
             tarOutput.setAddPaxHeadersForNonAsciiNames(true);
-            packMetadata(writeOrigin, tarOutput);
+            packMetadata(writeOrigin, getCompressedFileTrees(entity), tarOutput);
             long entryCount = pack(entity, snapshots, tarOutput);
             return new PackResult(entryCount + 1);
         }
     }
 
-    private void packMetadata(OriginWriter writeMetadata, TarArchiveOutputStream tarOutput) throws IOException {
+    /**
+     * @return the names of the file trees whose file is compressed when packing
+     */
+    private Set<String> getCompressedFileTrees(CacheableEntity entity) {
+        Set<String> trees = new LinkedHashSet<>();
+        entity.visitOutputTrees((treeName, type, root) -> {
+            // the file of a file tree is the root itself, see PackingVisitor
+            if (type == TreeType.FILE && compression.getLevel(root.getName()) != EntryCompression.STORED) {
+                trees.add(treeName);
+            }
+        });
+        return trees;
+    }
+
+    private void packMetadata(OriginWriter writeMetadata, Set<String> compressedFileTrees, TarArchiveOutputStream tarOutput) throws IOException {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         writeMetadata.execute(output);
-        createTarEntry(METADATA_PATH, output.size(), UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM, tarOutput);
+        TarArchiveEntry entry = new TarArchiveEntry(METADATA_PATH, true);
+        entry.setSize(output.size());
+        entry.setMode(UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM);
+        if (compression != EntryCompression.NONE) {
+            entry.addPaxHeader(COMPRESSION_HEADER, compression.getId());
+        }
+        if (!compressedFileTrees.isEmpty()) {
+            entry.addPaxHeader(COMPRESSED_FILE_TREES_HEADER, compressedFileTrees.stream()
+                    .map(TarBuildCacheEntryPacker::escape)
+                    .collect(Collectors.joining(",")));
+        }
+        tarOutput.putArchiveEntry(entry);
         tarOutput.write(output.toByteArray());
         tarOutput.closeArchiveEntry();
     }
@@ -136,7 +226,13 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
     private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, TarArchiveOutputStream tarOutput) {
         PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess);
-        snapshots.accept(new RelativePathTracker(), packingVisitor);
+        try {
+            snapshots.accept(new RelativePathTracker(), packingVisitor);
+            packingVisitor.writePendingEntries(0);
+        } finally {
+            // deletes the temporary files of entries that were not written because of a failure
+            packingVisitor.discardPendingEntries();
+        }
         return packingVisitor.getPackedEntryCount();
     }
 
@@ -161,6 +257,8 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
         TarArchiveEntry tarEntry;
         OriginMetadata originMetadata = null;
+        EntryCompression compression = EntryCompression.NONE;
+        Set<String> compressedFileTrees = Collections.emptySet();
         Map<String, FileSystemLocationSnapshot> snapshots = new HashMap<>();
 
         tarEntry = tarInput.getNextTarEntry();
@@ -171,6 +269,8 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
             if (path.equals(METADATA_PATH)) {
                 // handle origin metadata
+                compression = EntryCompression.forId(tarEntry.getExtraPaxHeader(COMPRESSION_HEADER));
+                compressedFileTrees = readCompressedFileTrees(tarEntry);
                 originMetadata = readOriginAction.execute(CloseShieldInputStream.wrap(tarInput));
                 tarEntry = tarInput.getNextTarEntry();
             } else {
@@ -188,7 +288,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
                 boolean missing = matcher.group(1) != null;
                 String childPath = matcher.group(3);
-                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries);
+                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries, compression, compressedFileTrees.contains(treeName));
             }
         }
         if (originMetadata == null) {
@@ -198,6 +298,18 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         return new UnpackResult(originMetadata, entries.get(), snapshots);
     }
 
+    private static Set<String> readCompressedFileTrees(TarArchiveEntry metadataEntry) {
+        String trees = metadataEntry.getExtraPaxHeader(COMPRESSED_FILE_TREES_HEADER);
+        if (Strings.isNullOrEmpty(trees)) {
+            return Collections.emptySet();
+        }
+        Set<String> result = new HashSet<>();
+        for (String tree : trees.split(",")) {
+            result.add(unescape(tree));
+        }
+        return result;
+    }
+
     private static class CacheableTree {
         private final TreeType type;
         private final File root;
@@ -217,7 +329,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     }
 
     @Nullable
-    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries) throws IOException {
+    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, EntryCompression compression, boolean compressedFileTree) throws IOException {
         boolean isDirEntry = rootEntry.isDirectory();
         boolean root = Strings.isNullOrEmpty(childPath);
         if (!root) {
@@ -234,7 +346,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             if (isDirEntry) {
                 throw new IllegalStateException("Should be a file: " + treeName);
             }
-            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
+            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName(), compressedFileTree);
             snapshots.put(treeName, fileSnapshot);
             return input.getNextTarEntry();
         }
@@ -244,12 +356,23 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         }
         chmodUnpackedFile(rootEntry, treeRoot);
 
-        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
+        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName, compression);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, boolean compressed) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
-            HashCode hash = streamHasher.hashCopy(input, output);
+            HashCode hash;
+            if (compressed) {
+                // inflated straight into the output file, the hash is of the original contents
+                Inflater inflater = new Inflater();
+                try {
+                    hash = streamHasher.hashCopy(new InflaterInputStream(CloseShieldInputStream.wrap(input), inflater, BUFFER_SIZE), output);
+                } finally {
+                    inflater.end();
+                }
+            } else {
+                hash = streamHasher.hashCopy(input, output);
+            }
             chmodUnpackedFile(entry, file);
             String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
             String internedFileName = stringInterner.intern(fileName);
@@ -259,7 +382,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     }
 
     @Nullable
-    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName, EntryCompression compression) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
 
         DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
@@ -283,7 +406,8 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
                 String internedName = stringInterner.intern(parser.getName());
                 builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
             } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
+                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName(),
+                        compression.getLevel(parser.getName()) != EntryCompression.STORED);
                 builder.visitLeafElement(fileSnapshot);
             }
         }
@@ -315,7 +439,90 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         }
     }
 
-    private static class PackingVisitor implements RelativePathTrackingFileSystemSnapshotHierarchyVisitor {
+    /**
+     * An entry waiting to be written to the archive, so that files can be compressed
+     * ahead of the one being written while keeping the order of the entries.
+     */
+    private interface PendingEntry {
+        void write() throws IOException;
+
+        /**
+         * Releases the resources of an entry that will not be written.
+         */
+        default void discard() {
+        }
+    }
+
+    /**
+     * The compressed contents of a file, either in memory or in a temporary file.
+     */
+    private static class CompressedFile {
+        @Nullable
+        private final byte[] bytes;
+        @Nullable
+        private final File file;
+        private final long size;
+
+        CompressedFile(@Nullable byte[] bytes, @Nullable File file, long size) {
+            this.bytes = bytes;
+            this.file = file;
+            this.size = size;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            if (bytes != null) {
+                output.write(bytes);
+                return;
+            }
+            try (FileInputStream input = new FileInputStream(file)) {
+                IOUtils.copyLarge(input, output, COPY_BUFFERS.get());
+            }
+        }
+
+        void release() {
+            if (file != null) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+
+    private CompressedFile compress(File file, int level) throws IOException {
+        Deflater deflater = new Deflater(level);
+        try {
+            if (file.length() <= MAX_IN_MEMORY_SIZE) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) (file.length() / 2 + 64));
+                try (FileInputStream input = new FileInputStream(file);
+                     DeflaterOutputStream output = new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE)) {
+                    IOUtils.copyLarge(input, output, COPY_BUFFERS.get());
+                }
+                return new CompressedFile(bytes.toByteArray(), null, bytes.size());
+            }
+
+            File compressed = temporaryFileProvider != null
+                    ? temporaryFileProvider.createTemporaryFile("build-cache-entry", ".deflate")
+                    : File.createTempFile("build-cache-entry", ".deflate");
+            try {
+                CountingOutputStream counting = new CountingOutputStream(new FileOutputStream(compressed));
+                try (FileInputStream input = new FileInputStream(file);
+                     DeflaterOutputStream output = new DeflaterOutputStream(counting, deflater, BUFFER_SIZE)) {
+                    IOUtils.copyLarge(input, output, COPY_BUFFERS.get());
+                }
+                return new CompressedFile(null, compressed, counting.getCount());
+            } catch (IOException | RuntimeException e) {
+                FileUtils.deleteQuietly(compressed);
+                throw e;
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private class PackingVisitor implements RelativePathTrackingFileSystemSnapshotHierarchyVisitor {
+        private final Deque<PendingEntry> pendingEntries = new ArrayDeque<>();
         private final TarArchiveOutputStream tarOutput;
         private final String treePath;
         private final String treeRoot;
@@ -369,6 +576,31 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             return packedEntryCount;
         }
 
+        /**
+         * Writes the oldest pending entries until at most the given amount is left.
+         */
+        private void writePendingEntries(int maxPending) {
+            try {
+                while (pendingEntries.size() > maxPending) {
+                    pendingEntries.poll().write();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void discardPendingEntries() {
+            PendingEntry entry;
+            while ((entry = pendingEntries.poll()) != null) {
+                entry.discard();
+            }
+        }
+
+        private void addPendingEntry(PendingEntry entry) {
+            pendingEntries.add(entry);
+            writePendingEntries(maxPendingEntries);
+        }
+
         private void assertCorrectType(boolean root, FileSystemLocationSnapshot snapshot) {
             if (root) {
                 switch (type) {
@@ -395,33 +627,69 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         }
 
         private void storeMissingTree(String treePath, TarArchiveOutputStream tarOutput) {
-            try {
+            addPendingEntry(() -> {
                 createTarEntry("missing-" + treePath, 0, UnixPermissions.FILE_FLAG | UnixPermissions.DEFAULT_FILE_PERM, tarOutput);
                 tarOutput.closeArchiveEntry();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+            });
         }
 
         private void storeDirectoryEntry(String path, int mode, TarArchiveOutputStream tarOutput) {
-            try {
+            addPendingEntry(() -> {
                 createTarEntry(path + "/", 0, UnixPermissions.DIR_FLAG | mode, tarOutput);
                 tarOutput.closeArchiveEntry();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+            });
         }
 
         private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
-            try {
-                createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
-                try (FileInputStream input = new FileInputStream(inputFile)) {
-                    IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
-                }
-                tarOutput.closeArchiveEntry();
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
+            int level = compression.getLevel(inputFile.getName());
+            if (level == EntryCompression.STORED) {
+                addPendingEntry(() -> {
+                    createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
+                    try (FileInputStream input = new FileInputStream(inputFile)) {
+                        IOUtils.copyLarge(input, tarOutput, COPY_BUFFERS.get());
+                    }
+                    tarOutput.closeArchiveEntry();
+                });
+                return;
             }
+
+            CompletableFuture<CompressedFile> compressed = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    compressed.complete(compress(inputFile, level));
+                } catch (Throwable e) {
+                    compressed.completeExceptionally(e);
+                }
+            });
+            addPendingEntry(new PendingEntry() {
+                @Override
+                public void write() throws IOException {
+                    CompressedFile data;
+                    try {
+                        data = compressed.join();
+                    } catch (CompletionException e) {
+                        Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+                        Throwables.throwIfUnchecked(e.getCause());
+                        throw new IOException(e.getCause());
+                    }
+                    try {
+                        createTarEntry(path, data.getSize(), UnixPermissions.FILE_FLAG | mode, tarOutput);
+                        data.writeTo(tarOutput);
+                        tarOutput.closeArchiveEntry();
+                    } finally {
+                        data.release();
+                    }
+                }
+
+                @Override
+                public void discard() {
+                    compressed.whenComplete((data, e) -> {
+                        if (data != null) {
+                            data.release();
+                        }
+                    });
+                }
+            });
         }
     }
 }
\ No newline at end of file
@@ -114,7 +114,26 @@ public class Aapt2Jni {
     public static int compile(List<String> args) {
         Aapt2Jni instance = Aapt2Jni.getInstance();
         instance.clearLogs();
+        return compile(instance, args);
+    }
+
+    /**
+     * Compile resources with Aapt2, unlike {@link #compile(List)} the diagnostics are added to
+     * the given list instead of the shared logs so this can be called from multiple threads
+     *
+     * @param args the arguments to pass to aapt2
+     * @param logs the list to add the diagnostics of this invocation to
+     * @return exit code, non zero if theres an error
+     */
+    public static int compile(List<String> args, List<DiagnosticWrapper> logs) {
+        Aapt2Jni instance = new Aapt2Jni();
+        instance.mFailureString = getInstance().mFailureString;
+        int result = compile(instance, args);
+        logs.addAll(instance.mDiagnostics);
+        return result;
+    }
 
+    private static int compile(Aapt2Jni instance, List<String> args) {
         // aapt2 has failed to load, fail early
         if (instance.mFailureString != null) {
             instance.log(LOG_LEVEL_ERROR, null, -1, instance.mFailureString);
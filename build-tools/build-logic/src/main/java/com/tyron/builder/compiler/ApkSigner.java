@@ -2,13 +2,45 @@ package com.tyron.builder.compiler;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.android.apksig.ApkSignerEngine;
+import com.android.apksig.DefaultApkSignerEngine;
+import com.android.apksig.apk.ApkFormatException;
+import com.android.apksig.util.DataSource;
+import com.android.apksig.util.RunnablesExecutor;
 import com.tyron.builder.BuildModule;
 import com.tyron.common.util.Decompress;
 
+import org.apache.commons.io.IOUtils;
+
 import java.io.File;
-import java.util.ArrayList;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SignatureException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 
+/**
+ * Signs an APK in process with the test key using the v1, v2 and v3 schemes.
+ *
+ * <p>The v1 scheme needs the digest of every entry, these are taken from the manifest of
+ * the APK signed by the previous build for the entries whose CRC and size did not change so
+ * only the changed entries are read and digested again.</p>
+ */
 public class ApkSigner {
 
     public static class Mode {
@@ -16,35 +48,234 @@ public class ApkSigner {
         //ToDo add more modes
     }
 
+    private static final int MIN_SDK_VERSION = 21;
+
+    private static final String MANIFEST_ENTRY_NAME = "META-INF/MANIFEST.MF";
+    private static final String ANDROID_MANIFEST_ENTRY_NAME = "AndroidManifest.xml";
 
-    private final ArrayList<String> commands ;
     private final String mApkInputPath ;
     private final String mApkOutputPath;
 
     public ApkSigner(String inputPath ,String outputPath,int mode){
-        commands = new ArrayList<>();
         mApkInputPath = inputPath;
         mApkOutputPath = outputPath;
     }
 
-    //TODO: Adjust min and max sdk
     public void sign() throws Exception {
-        commands.add("sign");
-        commands.add("--key");
-        commands.add(getTestKeyFilePath());
-        commands.add("--cert");
-        commands.add(getTestCertFilePath());
-        commands.add("--min-sdk-version");
-        commands.add("21");
-        commands.add("--max-sdk-version");
-        commands.add("30");
-        commands.add("--out");
-        commands.add(mApkOutputPath);
-        commands.add("--in");
-        commands.add(mApkInputPath);
-        com.android.apksigner.ApkSignerTool.main(commands.toArray(new String[0]));
+        File inputApk = new File(mApkInputPath);
+        File outputApk = new File(mApkOutputPath);
+
+        DefaultApkSignerEngine engine = new DefaultApkSignerEngine.Builder(
+                Collections.singletonList(getSignerConfig()), MIN_SDK_VERSION)
+                .setV1SigningEnabled(true)
+                .setV2SigningEnabled(true)
+                .setV3SigningEnabled(true)
+                .setDebuggableApkPermitted(true)
+                .setOtherSignersSignaturesPreserved(false)
+                .build();
+
+        // must be read before the output apk is overwritten
+        Set<String> unchangedEntries = getUnchangedEntries(inputApk, outputApk, engine);
+
+        com.android.apksig.ApkSigner signer =
+                new com.android.apksig.ApkSigner.Builder(
+                        new IncrementalSignerEngine(engine, unchangedEntries))
+                        .setInputApk(inputApk)
+                        .setOutputApk(outputApk)
+                        .build();
+        signer.sign();
+    }
+
+    /**
+     * Seeds the engine with the entry digests of the previously signed apk.
+     *
+     * @return the entries whose digests were taken from the previous apk and do not need
+     * to be digested again
+     */
+    private static Set<String> getUnchangedEntries(File inputApk,
+                                                   File previousApk,
+                                                   ApkSignerEngine engine) {
+        if (!previousApk.exists()) {
+            return Collections.emptySet();
+        }
+
+        try (ZipFile input = new ZipFile(inputApk);
+             ZipFile previous = new ZipFile(previousApk)) {
+            ZipEntry manifestEntry = previous.getEntry(MANIFEST_ENTRY_NAME);
+            if (manifestEntry == null) {
+                return Collections.emptySet();
+            }
+
+            Map<String, ZipEntry> previousEntries = new HashMap<>();
+            Enumeration<? extends ZipEntry> entries = previous.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                previousEntries.put(entry.getName(), entry);
+            }
+
+            Set<String> candidates = new HashSet<>();
+            entries = input.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                ZipEntry previousEntry = previousEntries.get(entry.getName());
+                // the engine reads the android manifest to check whether the apk is debuggable
+                if (previousEntry != null &&
+                    !ANDROID_MANIFEST_ENTRY_NAME.equals(entry.getName()) &&
+                    entry.getCrc() != -1 && entry.getCrc() == previousEntry.getCrc() &&
+                    entry.getSize() == previousEntry.getSize()) {
+                    candidates.add(entry.getName());
+                }
+            }
+
+            byte[] manifest;
+            try (InputStream inputStream = previous.getInputStream(manifestEntry)) {
+                manifest = IOUtils.toByteArray(inputStream);
+            }
+            // the engine is seeded with every section of the manifest, the entries that are
+            // no longer in the apk would otherwise be kept in the new manifest
+            Set<String> seeded = new HashSet<>(engine.initWith(manifest, candidates));
+            Set<String> unchanged = new HashSet<>();
+            for (String name : seeded) {
+                if (candidates.contains(name)) {
+                    unchanged.add(name);
+                } else if (input.getEntry(name) == null) {
+                    engine.outputJarEntryRemoved(name);
+                }
+            }
+            return unchanged;
+        } catch (IOException | RuntimeException e) {
+            // the previous apk cannot be used, every entry will be digested
+            return Collections.emptySet();
+        }
     }
 
+    private DefaultApkSignerEngine.SignerConfig getSignerConfig() throws Exception {
+        PrivateKey privateKey;
+        try (InputStream inputStream = new FileInputStream(getTestKeyFilePath())) {
+            privateKey = KeyFactory.getInstance("RSA")
+                    .generatePrivate(new PKCS8EncodedKeySpec(IOUtils.toByteArray(inputStream)));
+        }
+
+        X509Certificate certificate;
+        try (InputStream inputStream = new FileInputStream(getTestCertFilePath())) {
+            certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(inputStream);
+        }
+
+        return new DefaultApkSignerEngine.SignerConfig.Builder("CERT", privateKey,
+                Collections.singletonList(certificate)).build();
+    }
+
+    /**
+     * Skips the inspection of the entries whose digests are already known by the engine,
+     * the entries are still copied to the output apk as is.
+     */
+    private static class IncrementalSignerEngine implements ApkSignerEngine {
+
+        private final ApkSignerEngine mDelegate;
+        private final Set<String> mUnchangedEntries;
+
+        IncrementalSignerEngine(ApkSignerEngine delegate, Set<String> unchangedEntries) {
+            mDelegate = delegate;
+            mUnchangedEntries = unchangedEntries;
+        }
+
+        @Override
+        public void setExecutor(RunnablesExecutor executor) {
+            mDelegate.setExecutor(executor);
+        }
+
+        @Override
+        public Set<String> initWith(byte[] manifestBytes, Set<String> entryNames) {
+            return mDelegate.initWith(manifestBytes, entryNames);
+        }
+
+        @Override
+        public void inputApkSigningBlock(DataSource apkSigningBlock)
+                throws IOException, ApkFormatException {
+            mDelegate.inputApkSigningBlock(apkSigningBlock);
+        }
+
+        @Override
+        public InputJarEntryInstructions inputJarEntry(String entryName) {
+            if (mUnchangedEntries.contains(entryName)) {
+                return new InputJarEntryInstructions(
+                        InputJarEntryInstructions.OutputPolicy.OUTPUT);
+            }
+            return mDelegate.inputJarEntry(entryName);
+        }
+
+        @Override
+        public InspectJarEntryRequest outputJarEntry(String entryName) {
+            if (mUnchangedEntries.contains(entryName)) {
+                return null;
+            }
+            return mDelegate.outputJarEntry(entryName);
+        }
+
+        @Override
+        public InputJarEntryInstructions.OutputPolicy inputJarEntryRemoved(String entryName) {
+            return mDelegate.inputJarEntryRemoved(entryName);
+        }
+
+        @Override
+        public void outputJarEntryRemoved(String entryName) {
+            mDelegate.outputJarEntryRemoved(entryName);
+        }
+
+        @Override
+        public OutputJarSignatureRequest outputJarEntries()
+                throws ApkFormatException, NoSuchAlgorithmException, InvalidKeyException,
+                SignatureException {
+            return mDelegate.outputJarEntries();
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public OutputApkSigningBlockRequest outputZipSections(DataSource zipEntries,
+                                                              DataSource zipCentralDirectory,
+                                                              DataSource zipEocd)
+                throws IOException, ApkFormatException, NoSuchAlgorithmException,
+                InvalidKeyException, SignatureException {
+            return mDelegate.outputZipSections(zipEntries, zipCentralDirectory, zipEocd);
+        }
+
+        @Override
+        public OutputApkSigningBlockRequest2 outputZipSections2(DataSource zipEntries,
+                                                                DataSource zipCentralDirectory,
+                                                                DataSource zipEocd)
+                throws IOException, ApkFormatException, NoSuchAlgorithmException,
+                InvalidKeyException, SignatureException {
+            return mDelegate.outputZipSections2(zipEntries, zipCentralDirectory, zipEocd);
+        }
+
+        @Override
+        public void outputDone() {
+            mDelegate.outputDone();
+        }
+
+        @Override
+        public void signV4(DataSource dataSource, File outputFile, boolean ignoreFailures)
+                throws InvalidKeyException, NoSuchAlgorithmException, SignatureException,
+                IOException {
+            mDelegate.signV4(dataSource, outputFile, ignoreFailures);
+        }
+
+        @Override
+        public boolean isEligibleForSourceStamp() {
+            return mDelegate.isEligibleForSourceStamp();
+        }
+
+        @Override
+        public byte[] generateSourceStampCertificateDigest() throws SignatureException {
+            return mDelegate.generateSourceStampCertificateDigest();
+        }
+
+        @Override
+        public void close() {
+            mDelegate.close();
+        }
+    }
 
     private String getTestKeyFilePath() {
         if (sTestKeyFile != null) {
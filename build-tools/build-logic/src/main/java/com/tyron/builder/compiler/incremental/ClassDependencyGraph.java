@@ -0,0 +1,563 @@
+package com.tyron.builder.compiler.incremental;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import com.tyron.builder.project.api.Module;
+
+import org.apache.commons.io.FileUtils;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The classes compiled from the Java and Kotlin sources of a module and the project classes
+ * each of them references, persisted between builds under {@code build/intermediate}.
+ *
+ * <p>The graph is read from the class files so it is the same for both compilers. When the
+ * ABI of a class changes, only the Java sources that reference it have to be compiled again
+ * and the Kotlin compiler only has to run when a changed Java source produced a class that
+ * Kotlin code references. Constants are inlined by both compilers without referencing the
+ * class they come from, so a change to a constant is treated as a change to every class.</p>
+ */
+public class ClassDependencyGraph {
+
+    /**
+     * Bumped whenever the format of the file or the way classes are analyzed changes so
+     * that previously saved graphs are not read.
+     */
+    private static final int VERSION = 1;
+
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+
+    private static class ClassInfo {
+        /**
+         * The Java source file the class was compiled from, null for Kotlin classes
+         */
+        @SerializedName("source")
+        String source;
+
+        /**
+         * The size and modification time of the class file when it was analyzed
+         */
+        @SerializedName("stamp")
+        String stamp;
+
+        @SerializedName("abi")
+        String abi;
+
+        /**
+         * The hash of the values of the constants declared by the class, null if it has none
+         */
+        @SerializedName("constants")
+        String constants;
+
+        @SerializedName("dependencies")
+        Set<String> dependencies;
+
+        /**
+         * The superclass and interfaces of the class that are compiled from the module
+         */
+        @SerializedName("supertypes")
+        Set<String> supertypes;
+    }
+
+    @SerializedName("version")
+    private int version = VERSION;
+
+    /**
+     * The classes keyed by their internal name
+     */
+    @SerializedName("classes")
+    private Map<String, ClassInfo> classes = new HashMap<>();
+
+    /**
+     * The classes whose ABI changed since javac last compiled the sources that depend on them
+     */
+    @SerializedName("changedClasses")
+    private Set<String> changedClasses = new HashSet<>();
+
+    @SerializedName("constantsChanged")
+    private boolean constantsChanged;
+
+    /**
+     * The stamps of the inputs of the Kotlin compiler when it last ran
+     */
+    @SerializedName("kotlinInputs")
+    private Map<String, String> kotlinInputs;
+
+    public static File getFile(Module module) {
+        return new File(module.getBuildDirectory(), "intermediate/dependencies/graph.json");
+    }
+
+    public static ClassDependencyGraph load(File file) {
+        if (file.exists()) {
+            try {
+                ClassDependencyGraph graph = new Gson().fromJson(
+                        FileUtils.readFileToString(file, StandardCharsets.UTF_8),
+                        ClassDependencyGraph.class);
+                if (graph != null && graph.version == VERSION && graph.classes != null &&
+                    graph.changedClasses != null) {
+                    return graph;
+                }
+            } catch (Exception ignored) {
+                // the graph is built again from the classes that are compiled
+            }
+        }
+        return new ClassDependencyGraph();
+    }
+
+    public void save(File file) throws IOException {
+        FileUtils.writeStringToFile(file, new Gson().toJson(this), StandardCharsets.UTF_8);
+    }
+
+    public static String getStamp(File file) {
+        return file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * @return The internal names of the classes compiled from the given Java source
+     */
+    public Set<String> getClasses(File source) {
+        String path = source.getAbsolutePath();
+        Set<String> names = new HashSet<>();
+        classes.forEach((name, info) -> {
+            if (path.equals(info.source)) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * Removes the classes of a Java source that has been deleted, they are recorded as changed
+     *
+     * @return The internal names of the removed classes
+     */
+    public Set<String> removeSource(File source) {
+        Set<String> names = getClasses(source);
+        for (String name : names) {
+            recordChange(classes.remove(name), null, name);
+        }
+        return names;
+    }
+
+    /**
+     * Analyzes the classes javac generated from the given sources. Classes that were
+     * previously compiled from those sources but are no longer generated are removed.
+     *
+     * @param outputDir     The directory javac wrote the classes to
+     * @param generated     The internal names of the generated classes and their sources
+     * @param sources       The sources that were compiled
+     * @param sourceClasses The internal names of the top level classes of the module sources
+     * @return The internal names of the classes whose ABI changed
+     */
+    public Set<String> updateJavaClasses(File outputDir,
+                                         Map<String, File> generated,
+                                         Collection<File> sources,
+                                         Set<String> sourceClasses) throws IOException {
+        Set<String> changed = new HashSet<>();
+
+        Set<String> paths = new HashSet<>();
+        for (File source : sources) {
+            paths.add(source.getAbsolutePath());
+        }
+        Iterator<Map.Entry<String, ClassInfo>> iterator = classes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ClassInfo> entry = iterator.next();
+            ClassInfo info = entry.getValue();
+            if (info.source != null && paths.contains(info.source) &&
+                !generated.containsKey(entry.getKey())) {
+                iterator.remove();
+                recordChange(info, null, entry.getKey());
+                changed.add(entry.getKey());
+            }
+        }
+
+        for (Map.Entry<String, File> entry : generated.entrySet()) {
+            File classFile = new File(outputDir, entry.getKey() + ".class");
+            ClassInfo info = analyze(classFile);
+            info.source = entry.getValue().getAbsolutePath();
+            if (recordChange(classes.put(entry.getKey(), info), info, entry.getKey())) {
+                changed.add(entry.getKey());
+            }
+        }
+
+        retainProjectDependencies(generated.keySet(), sourceClasses);
+        return changed;
+    }
+
+    /**
+     * Analyzes the classes written by the Kotlin compiler that changed since they were last
+     * analyzed, Kotlin classes that no longer exist are removed.
+     *
+     * @param outputDir     The class output directory of the Kotlin compiler
+     * @param sourceClasses The internal names of the top level classes of the module sources
+     * @return The internal names of the classes whose ABI changed
+     */
+    public Set<String> updateKotlinClasses(File outputDir,
+                                           Set<String> sourceClasses) throws IOException {
+        Map<String, File> classFiles = new HashMap<>();
+        String root = outputDir.getAbsolutePath() + File.separator;
+        for (File file : FileUtils.listFiles(outputDir, new String[]{"class"}, true)) {
+            String path = file.getAbsolutePath();
+            String name = path.substring(root.length(), path.length() - ".class".length())
+                    .replace(File.separatorChar, '/');
+            classFiles.put(name, file);
+        }
+
+        Set<String> changed = new HashSet<>();
+        Iterator<Map.Entry<String, ClassInfo>> iterator = classes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ClassInfo> entry = iterator.next();
+            ClassInfo info = entry.getValue();
+            if (info.source == null && !classFiles.containsKey(entry.getKey())) {
+                iterator.remove();
+                recordChange(info, null, entry.getKey());
+                changed.add(entry.getKey());
+            }
+        }
+
+        Set<String> analyzed = new HashSet<>();
+        for (Map.Entry<String, File> entry : classFiles.entrySet()) {
+            ClassInfo old = classes.get(entry.getKey());
+            if (old != null && old.source == null &&
+                old.stamp.equals(getStamp(entry.getValue()))) {
+                continue;
+            }
+            ClassInfo info = analyze(entry.getValue());
+            classes.put(entry.getKey(), info);
+            analyzed.add(entry.getKey());
+            if (recordChange(old, info, entry.getKey())) {
+                changed.add(entry.getKey());
+            }
+        }
+
+        retainProjectDependencies(analyzed, sourceClasses);
+        return changed;
+    }
+
+    /**
+     * @return The classes whose ABI changed since {@link #clearChanges()} was last called
+     */
+    public Set<String> getChangedClasses() {
+        return Collections.unmodifiableSet(changedClasses);
+    }
+
+    /**
+     * @return Whether a constant was added, removed or changed since {@link #clearChanges()}
+     * was last called, the classes using it cannot be found since its value is inlined
+     */
+    public boolean isConstantsChanged() {
+        return constantsChanged;
+    }
+
+    /**
+     * Called once javac compiled every source that depends on the changed classes
+     */
+    public void clearChanges() {
+        changedClasses.clear();
+        constantsChanged = false;
+    }
+
+    /**
+     * @return The Java sources of the classes that reference any of the given classes
+     */
+    public Set<File> getDependentSources(Collection<String> names) {
+        Set<String> affected = getSubtypes(names);
+        Set<File> sources = new HashSet<>();
+        for (ClassInfo info : classes.values()) {
+            if (info.source != null && !Collections.disjoint(info.dependencies, affected)) {
+                sources.add(new File(info.source));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @return Whether a Kotlin class references any of the given classes
+     */
+    public boolean hasKotlinDependents(Collection<String> names) {
+        Set<String> affected = getSubtypes(names);
+        for (ClassInfo info : classes.values()) {
+            if (info.source == null && !Collections.disjoint(info.dependencies, affected)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Members that are inherited are referenced through the class they are used from, so a
+     * change to a class also affects the classes that reference its subtypes
+     *
+     * @return The given classes and all of their subtypes
+     */
+    private Set<String> getSubtypes(Collection<String> names) {
+        Set<String> subtypes = new HashSet<>(names);
+        if (subtypes.isEmpty()) {
+            return subtypes;
+        }
+        Map<String, Set<String>> directSubtypes = new HashMap<>();
+        classes.forEach((name, info) -> {
+            for (String supertype : info.supertypes) {
+                directSubtypes.computeIfAbsent(supertype, k -> new HashSet<>()).add(name);
+            }
+        });
+        Deque<String> queue = new ArrayDeque<>(subtypes);
+        while (!queue.isEmpty()) {
+            for (String subtype : directSubtypes.getOrDefault(queue.poll(),
+                                                              Collections.emptySet())) {
+                if (subtypes.add(subtype)) {
+                    queue.add(subtype);
+                }
+            }
+        }
+        return subtypes;
+    }
+
+    /**
+     * @return Whether any of the given classes declares a constant
+     */
+    public boolean hasConstants(Collection<String> names) {
+        for (String name : names) {
+            ClassInfo info = classes.get(name);
+            if (info != null && info.constants != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Map<String, String> getKotlinInputs() {
+        return kotlinInputs;
+    }
+
+    public void setKotlinInputs(Map<String, String> kotlinInputs) {
+        this.kotlinInputs = kotlinInputs;
+    }
+
+    /**
+     * Records the class as changed if its ABI differs from the previous one, a null info
+     * means that the class did not exist
+     *
+     * @return whether the class was recorded as changed
+     */
+    private boolean recordChange(ClassInfo old, ClassInfo info, String name) {
+        // the constants of a new class cannot have been inlined anywhere yet
+        String newConstants = info == null ? null : info.constants;
+        if (old != null && !Objects.equals(old.constants, newConstants)) {
+            constantsChanged = true;
+        }
+
+        String oldAbi = old == null ? null : old.abi;
+        String newAbi = info == null ? null : info.abi;
+        if (Objects.equals(oldAbi, newAbi)) {
+            return false;
+        }
+        changedClasses.add(name);
+        return true;
+    }
+
+    /**
+     * The classes of libraries and the platform are not compiled from the module, drop the
+     * dependencies on them to keep the graph small
+     */
+    private void retainProjectDependencies(Collection<String> names, Set<String> sourceClasses) {
+        Predicate<String> isLibraryClass = name -> !classes.containsKey(name) &&
+                                                   !sourceClasses.contains(getTopLevelName(name));
+        for (String name : names) {
+            ClassInfo info = classes.get(name);
+            info.dependencies.removeIf(isLibraryClass);
+            info.supertypes.removeIf(isLibraryClass);
+        }
+    }
+
+    private static String getTopLevelName(String name) {
+        int index = name.indexOf('$', name.lastIndexOf('/') + 1);
+        return index == -1 ? name : name.substring(0, index);
+    }
+
+    private static ClassInfo analyze(File classFile) throws IOException {
+        ClassReader reader = new ClassReader(Files.readAllBytes(classFile.toPath()));
+        AbiVisitor visitor = new AbiVisitor();
+        reader.accept(visitor,
+                      ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+        // the classes used in the method bodies are only found in the constant pool
+        Set<String> dependencies = visitor.mDependencies;
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset == 0) {
+                // the second slot of a long or a double
+                continue;
+            }
+            switch (reader.readByte(offset - 1)) {
+                case CONSTANT_CLASS:
+                    addClass(dependencies, reader.readUTF8(offset, buffer));
+                    break;
+                case CONSTANT_NAME_AND_TYPE:
+                    addDescriptor(dependencies, reader.readUTF8(offset + 2, buffer));
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                    addDescriptor(dependencies, reader.readUTF8(offset, buffer));
+                    break;
+            }
+        }
+        dependencies.remove(reader.getClassName());
+
+        ClassInfo info = new ClassInfo();
+        info.stamp = getStamp(classFile);
+        info.abi = hash(visitor.mHeader, visitor.mMembers);
+        info.constants = visitor.mConstants.isEmpty()
+                ? null
+                : hash(Collections.emptyList(), visitor.mConstants);
+        info.dependencies = dependencies;
+        info.supertypes = visitor.mSupertypes;
+        return info;
+    }
+
+    private static String hash(List<String> header, List<String> members) {
+        // members are sorted so that reordering them in the source does not change the hash
+        Collections.sort(members);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String value : header) {
+            hasher.putString(value, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        for (String value : members) {
+            hasher.putString(value, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void addClass(Set<String> dependencies, String name) {
+        if (name.startsWith("[")) {
+            addDescriptor(dependencies, name);
+        } else {
+            dependencies.add(name);
+        }
+    }
+
+    private static void addDescriptor(Set<String> dependencies, String descriptor) {
+        if (descriptor == null) {
+            return;
+        }
+        int start = descriptor.indexOf('L');
+        while (start != -1) {
+            int end = descriptor.indexOf(';', start);
+            if (end == -1) {
+                break;
+            }
+            dependencies.add(descriptor.substring(start + 1, end));
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * Collects the parts of a class that other classes can be compiled against, private and
+     * synthetic members and the code of the methods are left out.
+     */
+    private static class AbiVisitor extends ClassVisitor {
+
+        private final List<String> mHeader = new ArrayList<>();
+        private final List<String> mMembers = new ArrayList<>();
+        private final List<String> mConstants = new ArrayList<>();
+        private final Set<String> mDependencies = new HashSet<>();
+        private final Set<String> mSupertypes = new HashSet<>();
+
+        private String mName;
+
+        AbiVisitor() {
+            super(Opcodes.ASM9);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature,
+                          String superName, String[] interfaces) {
+            mName = name;
+            mHeader.add("class " + (access & ~Opcodes.ACC_SUPER) + " " + name + " " +
+                        signature + " " + superName + " " + Arrays.toString(interfaces));
+            if (superName != null) {
+                mSupertypes.add(superName);
+            }
+            if (interfaces != null) {
+                Collections.addAll(mSupertypes, interfaces);
+            }
+            mDependencies.addAll(mSupertypes);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            mMembers.add("annotation " + descriptor);
+            addDescriptor(mDependencies, descriptor);
+            return null;
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName,
+                                    int access) {
+            if (mName.equals(outerName)) {
+                mMembers.add("inner " + access + " " + name);
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor,
+                                       String signature, Object value) {
+            addDescriptor(mDependencies, descriptor);
+            if (isApi(access)) {
+                mMembers.add("field " + access + " " + name + " " + descriptor + " " +
+                             signature);
+                int constant = Opcodes.ACC_STATIC | Opcodes.ACC_FINAL;
+                if ((access & constant) == constant && value != null) {
+                    mConstants.add(name + " " + descriptor + " " + value);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                         String signature, String[] exceptions) {
+            addDescriptor(mDependencies, descriptor);
+            if (exceptions != null) {
+                Collections.addAll(mDependencies, exceptions);
+            }
+            if (isApi(access)) {
+                mMembers.add("method " + access + " " + name + " " + descriptor + " " +
+                             signature + " " + Arrays.toString(exceptions));
+            }
+            return null;
+        }
+
+        private static boolean isApi(int access) {
+            return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+        }
+    }
+}
@@ -3,11 +3,13 @@ package com.tyron.builder.compiler.incremental.java;
 import androidx.annotation.VisibleForTesting;
 
 import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
-import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
+import com.tyron.builder.compiler.incremental.ClassDependencyGraph;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
@@ -29,10 +31,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
+import javax.lang.model.element.TypeElement;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import javax.tools.SimpleJavaFileObject;
@@ -48,6 +54,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     private List<File> mJavaFiles;
     private List<File> mFilesToCompile;
     private Cache<String, List<File>> mClassCache;
+    private ClassDependencyGraph mGraph;
 
     public IncrementalJavaTask(Project project, JavaModule module, ILogger logger) {
         super(project, module, logger);
@@ -67,16 +74,22 @@ public class IncrementalJavaTask extends Task<JavaModule> {
 
         mFilesToCompile = new ArrayList<>();
         mClassCache = getModule().getCache(CACHE_KEY, new Cache<>());
+        mGraph = ClassDependencyGraph.load(ClassDependencyGraph.getFile(getModule()));
 
         mJavaFiles = new ArrayList<>(getModule().getJavaFiles().values());
         if (getModule() instanceof AndroidModule) {
-            mJavaFiles.addAll(((AndroidModule) getModule()).getResourceClasses().values());
+            // library R classes are now compiled directly to a jar by MergeSymbolsTask,
+            // their old sources are deleted so their classes are removed below
+            ((AndroidModule) getModule()).getResourceClasses().values().stream()
+                    .filter(File::exists)
+                    .forEach(mJavaFiles::add);
         }
         for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
             if (!mJavaFiles.contains(key.file.toFile())) {
                 File file = mClassCache.get(key.file, "class").iterator().next();
                 deleteAllFiles(file, ".class");
                 mClassCache.remove(key.file, "class", "dex");
+                mGraph.removeSource(key.file.toFile());
             }
         }
 
@@ -93,10 +106,58 @@ public class IncrementalJavaTask extends Task<JavaModule> {
 
     @Override
     public void run() throws IOException, CompilationFailedException {
-        if (mFilesToCompile.isEmpty()) {
+        // the sources that use a class whose ABI changed since they were last compiled,
+        // e.g. because a kotlin source changed, have to be compiled even if they did not change
+        Set<File> filesToCompile = new LinkedHashSet<>(mFilesToCompile);
+        filesToCompile.addAll(getDependentFiles(mGraph.getChangedClasses()));
+        if (filesToCompile.isEmpty() && mGraph.getChangedClasses().isEmpty() &&
+            !mGraph.isConstantsChanged()) {
             return;
         }
 
+        Set<File> compiled = new HashSet<>();
+        try {
+            while (!filesToCompile.isEmpty()) {
+                Set<String> changed = compile(filesToCompile);
+                compiled.addAll(filesToCompile);
+
+                // compile the sources that depend on the classes whose ABI just changed
+                filesToCompile = getDependentFiles(changed);
+                filesToCompile.removeAll(compiled);
+            }
+            mGraph.clearChanges();
+        } finally {
+            // the changes are kept on failure so the dependents are compiled on the next build
+            mGraph.save(ClassDependencyGraph.getFile(getModule()));
+        }
+        mFilesToCompile = new ArrayList<>(compiled);
+    }
+
+    /**
+     * Returns the source files that have to be compiled again because of the given changes,
+     * all of them if a constant changed since it could have been inlined anywhere
+     */
+    private Set<File> getDependentFiles(Set<String> changedClasses) {
+        Set<File> files = new LinkedHashSet<>();
+        if (mGraph.isConstantsChanged()) {
+            files.addAll(mJavaFiles);
+        } else if (!changedClasses.isEmpty()) {
+            for (File file : mGraph.getDependentSources(changedClasses)) {
+                if (mJavaFiles.contains(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Compiles the given files and records the classes generated from them in the graph
+     *
+     * @return The classes whose ABI changed
+     */
+    private Set<String> compile(Set<File> filesToCompile) throws IOException,
+            CompilationFailedException {
         getLogger().debug("Compiling java files");
 
         DiagnosticListener<JavaFileObject> diagnosticCollector = diagnostic -> {
@@ -136,7 +197,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         }
 
         List<JavaFileObject> javaFileObjects = new ArrayList<>();
-        for (File file : mFilesToCompile) {
+        for (File file : filesToCompile) {
             javaFileObjects.add(new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
                 @Override
                 public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
@@ -153,26 +214,31 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         JavacTask task = tool.getTask(null, standardJavaFileManager, diagnosticCollector,
                 options, null, javaFileObjects);
 
+        // javac reports every class it generates, including nested and anonymous classes,
+        // together with the source it was compiled from
+        Map<String, File> generatedClasses = new HashMap<>();
+        task.addTaskListener(new TaskListener() {
+            @Override
+            public void finished(TaskEvent e) {
+                TypeElement element = e.getTypeElement();
+                if (e.getKind() == TaskEvent.Kind.GENERATE && element != null) {
+                    String name = task.getElements().getBinaryName(element).toString();
+                    generatedClasses.put(name.replace('.', '/'),
+                                         new File(e.getSourceFile().toUri()));
+                }
+            }
+        });
+
         HashMap<String, List<File>> compiledFiles = new HashMap<>();
         try {
 
             task.parse();
             task.analyze();
-            Iterable<? extends JavaFileObject> generate = task.generate();
-            for (JavaFileObject fileObject : generate) {
-                String path = fileObject.getName();
-                File classFile = new File(path);
-                if (classFile. exists()) {
-                    String classPath = classFile.getAbsolutePath().replace("build/bin/classes/",
-                            "src/main/java/").replace(".class", ".java");
-                    if (classFile.getName().indexOf('$') != -1) {
-                        classPath = classPath.substring(0, classPath.indexOf('$')) + ".java";
-                    }
-                    File file = new File(classPath);
-                    if (!file.exists()) {
-                        file = new File(classPath.replace("src/main/java", "build/gen"));
-                    }
-
+            task.generate();
+            for (Map.Entry<String, File> entry : generatedClasses.entrySet()) {
+                File classFile = new File(mOutputDir, entry.getKey() + ".class");
+                if (classFile.exists()) {
+                    File file = entry.getValue();
                     if (!compiledFiles.containsKey(file.getAbsolutePath())) {
                         ArrayList<File> list = new ArrayList<>();
                         list.add(classFile);
@@ -180,14 +246,20 @@ public class IncrementalJavaTask extends Task<JavaModule> {
                     } else {
                         Objects.requireNonNull(compiledFiles.get(file.getAbsolutePath())).add(classFile);
                     }
-                    mClassCache.load(file.toPath(), "class", Collections.singletonList(classFile));
                 }
             }
 
             compiledFiles.forEach((key, values) -> {
-                File sourceFile = new File(key);
-                String name = sourceFile.getName().replace(".java", "");
-                File first = values.iterator().next();
+                // classes that contain a '$' are nested classes, the top level class
+                // of the source is the one that does not
+                File first = values.stream()
+                        .filter(it -> !it.getName().contains("$"))
+                        .findFirst()
+                        .orElse(values.iterator().next());
+                mClassCache.load(new File(key).toPath(), "class",
+                        Collections.singletonList(first));
+
+                String name = first.getName().replace(".class", "");
                 File parent = first.getParentFile();
                 if (parent != null) {
                     File[] children = parent.listFiles(c -> {
@@ -215,6 +287,25 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         if (mHasErrors) {
             throw new CompilationFailedException("Compilation failed, check logs for more details");
         }
+
+        return mGraph.updateJavaClasses(mOutputDir, generatedClasses, filesToCompile,
+                                        getSourceClasses(getModule()));
+    }
+
+    /**
+     * @return The internal names of the top level classes of the Java sources of the module
+     */
+    public static Set<String> getSourceClasses(JavaModule module) {
+        Set<String> names = new HashSet<>();
+        for (String name : module.getJavaFiles().keySet()) {
+            names.add(name.replace('.', '/'));
+        }
+        if (module instanceof AndroidModule) {
+            for (String name : ((AndroidModule) module).getResourceClasses().keySet()) {
+                names.add(name.replace('.', '/'));
+            }
+        }
+        return names;
     }
 
     @VisibleForTesting
@@ -7,6 +7,8 @@ import androidx.annotation.NonNull;
 import com.google.common.base.Throwables;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.incremental.ClassDependencyGraph;
+import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
@@ -31,8 +33,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import kotlin.jvm.functions.Function0;
@@ -90,6 +96,20 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
                         .collect(Collectors.joining(File.pathSeparator)));
 
         List<File> javaSourceRoots = new ArrayList<>(getModule().getJavaFiles().values());
+        List<File> sourceRoots = Arrays.asList(getModule().getJavaDirectory(),
+                new File(getModule().getBuildDirectory(), "gen"));
+
+        File graphFile = ClassDependencyGraph.getFile(getModule());
+        ClassDependencyGraph graph = ClassDependencyGraph.load(graphFile);
+        List<File> plugins = getPlugins();
+        String[] pluginOptions = getPluginOptions();
+        Map<String, String> inputs = getInputs(sourceRoots, classpath, plugins, pluginOptions);
+        if (isUpToDate(graph, inputs)) {
+            getLogger().debug("Kotlin classes are up to date, skipping compilation.");
+            graph.setKotlinInputs(inputs);
+            graph.save(graphFile);
+            return;
+        }
 
         try {
             K2JVMCompiler compiler = new K2JVMCompiler();
@@ -110,19 +130,16 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
            // args.setKotlinHome(mKotlinHome.getAbsolutePath());
             args.setDestination(mClassOutput.getAbsolutePath());
 
-            List<File> plugins = getPlugins();
             getLogger().debug("Loading kotlin compiler plugins: " + plugins);
 
             args.setPluginClasspaths(plugins.stream()
                     .map(File::getAbsolutePath)
                     .toArray(String[]::new));
-            args.setPluginOptions(getPluginOptions());
+            args.setPluginOptions(pluginOptions);
 
             File cacheDir = new File(getModule().getBuildDirectory(), "intermediate/kotlin");
 
-            IncrementalJvmCompilerRunnerKt.makeIncrementally(cacheDir,
-                    Arrays.asList(getModule().getJavaDirectory(),
-                            new File(getModule().getBuildDirectory(), "gen")),
+            IncrementalJvmCompilerRunnerKt.makeIncrementally(cacheDir, sourceRoots,
                     args, mCollector, new ICReporterBase() {
                         @Override
                         public void report(@NonNull Function0<String> function0) {
@@ -147,6 +164,68 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
         if (mCollector.hasErrors()) {
             throw new CompilationFailedException("Compilation failed, see logs for more details");
         }
+
+        // the java sources that use the kotlin classes whose ABI changed are compiled
+        // again by IncrementalJavaTask
+        Set<String> changed = graph.updateKotlinClasses(mClassOutput,
+                IncrementalJavaTask.getSourceClasses(getModule()));
+        getLogger().debug("Kotlin classes with ABI changes: " + changed.size());
+        graph.setKotlinInputs(inputs);
+        graph.save(graphFile);
+    }
+
+    /**
+     * Returns the stamps of everything the output of the compiler depends on, the sources
+     * are keyed by their path and the other inputs by what they are
+     */
+    private Map<String, String> getInputs(List<File> sourceRoots, List<File> classpath,
+                                          List<File> plugins, String[] pluginOptions) {
+        Map<String, String> inputs = new HashMap<>();
+        for (File root : sourceRoots) {
+            if (!root.isDirectory()) {
+                continue;
+            }
+            for (File file : FileUtils.listFiles(root, new String[]{"kt", "kts", "java"}, true)) {
+                inputs.put(file.getAbsolutePath(), ClassDependencyGraph.getStamp(file));
+            }
+        }
+        for (File file : classpath) {
+            inputs.put("classpath:" + file.getAbsolutePath(), ClassDependencyGraph.getStamp(file));
+        }
+        for (File file : plugins) {
+            inputs.put("plugin:" + file.getAbsolutePath(), ClassDependencyGraph.getStamp(file));
+        }
+        inputs.put("pluginOptions", String.join(" ", pluginOptions));
+        return inputs;
+    }
+
+    /**
+     * The kotlin classes only have to be compiled again if a kotlin source or the classpath
+     * changed, or if a changed java source is used by kotlin code. Java sources that were
+     * added or removed are passed to the compiler since they may change how names resolve.
+     */
+    private boolean isUpToDate(ClassDependencyGraph graph, Map<String, String> inputs) {
+        Map<String, String> previous = graph.getKotlinInputs();
+        if (previous == null || !previous.keySet().equals(inputs.keySet())) {
+            return false;
+        }
+
+        Set<String> changedClasses = new HashSet<>();
+        for (Map.Entry<String, String> entry : inputs.entrySet()) {
+            if (entry.getValue().equals(previous.get(entry.getKey()))) {
+                continue;
+            }
+            if (!entry.getKey().endsWith(".java")) {
+                return false;
+            }
+            Set<String> classes = graph.getClasses(new File(entry.getKey()));
+            if (classes.isEmpty()) {
+                // not compiled by javac yet, the classes kotlin may use are unknown
+                return false;
+            }
+            changedClasses.addAll(classes);
+        }
+        return !graph.hasKotlinDependents(changedClasses) && !graph.hasConstants(changedClasses);
     }
 
     private List<File> getSourceFiles(File dir) {
@@ -21,9 +21,17 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class IncrementalAapt2Task extends Task<AndroidModule> {
@@ -55,8 +63,10 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
                 getFiles(getModule(), getOutputDirectory(getModule()));
         List<File> librariesToCompile = getLibraries();
 
-        compileProject(filesToCompile);
-        compileLibraries(librariesToCompile);
+        List<CompileShard> shards = new ArrayList<>();
+        shards.addAll(createProjectShards(filesToCompile));
+        shards.addAll(createLibraryShards(librariesToCompile));
+        compile(shards);
 
         link();
 
@@ -72,40 +82,81 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
     }
 
-    private void compileProject(Map<String, List<File>> files) throws IOException,
-            CompilationFailedException {
-        List<String> args = new ArrayList<>();
+    /**
+     * Splits the resource files that need to be compiled into one shard per core, aapt2
+     * compiles each file to its own flat file so the output does not depend on how the files
+     * are split. Resource files whose flat file is missing are compiled again and the flat
+     * files of deleted resources are removed.
+     */
+    private List<CompileShard> createProjectShards(Map<String, List<File>> files)
+            throws IOException {
+        File outputCompiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
+        if (!outputCompiled.exists() && !outputCompiled.mkdirs()) {
+            throw new IOException("Failed to create compiled directory");
+        }
+
+        Set<File> filesToCompile = new HashSet<>();
+        for (List<File> value : files.values()) {
+            filesToCompile.addAll(value);
+        }
 
-        for (String resourceType : files.keySet()) {
-            List<File> filesToCompile = files.get(resourceType);
-            if (filesToCompile != null && !filesToCompile.isEmpty()) {
-                for (File fileToCompile : filesToCompile) {
-                    args.add(fileToCompile.getAbsolutePath());
+        Set<String> compiledNames = new HashSet<>();
+        for (List<ResourceFile> resourceFiles :
+                findFiles(getModule().getAndroidResourcesDirectory()).values()) {
+            for (File file : resourceFiles) {
+                if (!file.isFile()) {
+                    continue;
+                }
+                String compiledName = getCompiledName(file);
+                compiledNames.add(compiledName);
+                if (!new File(outputCompiled, compiledName).exists()) {
+                    filesToCompile.add(file);
                 }
             }
         }
-        args.add("-o");
 
-        File outputCompiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
-        if (!outputCompiled.exists() && !outputCompiled.mkdirs()) {
-            throw new IOException("Failed to create compiled directory");
+        File[] compiledFiles = outputCompiled.listFiles();
+        if (compiledFiles != null) {
+            for (File compiledFile : compiledFiles) {
+                if (!compiledNames.contains(compiledFile.getName())) {
+                    FileUtils.deleteQuietly(compiledFile);
+                }
+            }
         }
-        args.add(outputCompiled.getAbsolutePath());
 
-        int compile = Aapt2Jni.compile(args);
-        List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
-        LogUtils.log(logs, getLogger());
-
-        if (compile != 0) {
-            throw new CompilationFailedException(
-                    "Compilation failed, check logs for more details.");
+        if (filesToCompile.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        copyMapToDir(files);
+        // give the largest files out first, each to the shard with the least bytes to compile
+        List<File> sorted = new ArrayList<>(filesToCompile);
+        sorted.sort(Comparator.comparingLong(File::length).reversed()
+                            .thenComparing(File::getAbsolutePath));
+        int count = Math.min(sorted.size(), Runtime.getRuntime().availableProcessors());
+        List<CompileShard> shards = new ArrayList<>(count);
+        long[] sizes = new long[count];
+        for (int i = 0; i < count; i++) {
+            shards.add(new CompileShard(null));
+        }
+        for (File file : sorted) {
+            int smallest = 0;
+            for (int i = 1; i < count; i++) {
+                if (sizes[i] < sizes[smallest]) {
+                    smallest = i;
+                }
+            }
+            sizes[smallest] += file.length();
+            shards.get(smallest).files.add(file);
+            shards.get(smallest).args.add(file.getAbsolutePath());
+        }
+        for (CompileShard shard : shards) {
+            shard.args.add("-o");
+            shard.args.add(outputCompiled.getAbsolutePath());
+        }
+        return shards;
     }
 
-    private void compileLibraries(List<File> libraries) throws IOException,
-            CompilationFailedException {
+    private List<CompileShard> createLibraryShards(List<File> libraries) throws IOException {
         getLogger().debug("Compiling libraries.");
 
         File output = new File(getModule().getBuildDirectory(), "bin/res");
@@ -115,6 +166,7 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
             }
         }
 
+        List<CompileShard> shards = new ArrayList<>();
         for (File file : libraries) {
             File parent = file.getParentFile();
             if (parent == null) {
@@ -127,23 +179,101 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
 
             for (File inside : files) {
                 if (inside.isDirectory() && inside.getName().equals("res")) {
-                    List<String> args = new ArrayList<>();
-                    args.add("--dir");
-                    args.add(inside.getAbsolutePath());
-                    args.add("-o");
-                    args.add(createNewFile(output, parent.getName() + ".zip").getAbsolutePath());
-
-                    int compile = Aapt2Jni.compile(args);
-                    List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
-                    LogUtils.log(logs, getLogger());
-
-                    if (compile != 0) {
-                        throw new CompilationFailedException(
-                                "Compilation failed, check logs for more details.");
-                    }
+                    CompileShard shard =
+                            new CompileShard(createNewFile(output, parent.getName() + ".zip"));
+                    shard.args.add("--dir");
+                    shard.args.add(inside.getAbsolutePath());
+                    shard.args.add("-o");
+                    shard.args.add(shard.output.getAbsolutePath());
+                    shards.add(shard);
+                }
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Runs the shards in parallel on a pool with a thread for each shard, since every shard
+     * blocks while it waits for its aapt2 process. The diagnostics of each shard are logged in
+     * order once all of them are finished. The project files of the shards that succeeded are cached
+     * even if another shard failed so they are not compiled again.
+     */
+    private void compile(List<CompileShard> shards) throws IOException,
+            CompilationFailedException {
+        if (shards.size() == 1) {
+            shards.get(0).run();
+        } else if (!shards.isEmpty()) {
+            List<Callable<Object>> tasks = new ArrayList<>();
+            for (CompileShard shard : shards) {
+                tasks.add(Executors.callable(shard::run));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+            try {
+                for (Future<Object> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        boolean failed = false;
+        List<File> compiled = new ArrayList<>();
+        for (CompileShard shard : shards) {
+            LogUtils.log(shard.logs, getLogger());
+
+            if (shard.result == 0) {
+                compiled.addAll(shard.files);
+            } else {
+                failed = true;
+                if (shard.output != null) {
+                    // the library is only compiled again if its zip file does not exist
+                    FileUtils.deleteQuietly(shard.output);
                 }
             }
         }
+
+        copyToDir(compiled);
+
+        if (failed) {
+            throw new CompilationFailedException(
+                    "Compilation failed, check logs for more details.");
+        }
+    }
+
+    /**
+     * A single invocation of aapt2 compile with its own diagnostics
+     */
+    private static class CompileShard {
+
+        private final List<String> args = new ArrayList<>();
+
+        /**
+         * The project resource files compiled by this shard
+         */
+        private final List<File> files = new ArrayList<>();
+
+        /**
+         * The zip file a library is compiled to, null for project resources
+         */
+        private final File output;
+
+        private final List<DiagnosticWrapper> logs = new ArrayList<>();
+
+        private int result;
+
+        private CompileShard(File output) {
+            this.output = output;
+        }
+
+        private void run() {
+            result = Aapt2Jni.compile(args, logs);
+        }
     }
 
     private void link() throws IOException, CompilationFailedException {
@@ -333,7 +463,7 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         map.put(key, mapValues);
     }
 
-    private void copyMapToDir(Map<String, List<File>> map) throws IOException {
+    private void copyToDir(List<File> files) throws IOException {
         File output = new File(getModule().getBuildDirectory(), "intermediate/resources");
         if (!output.exists()) {
             if (!output.mkdirs()) {
@@ -341,27 +471,49 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
             }
         }
 
-        for (String resourceType : map.keySet()) {
-            File outputDir = new File(output, resourceType);
+        for (File file : files) {
+            // the resource type is the name of the directory of the file
+            File outputDir = new File(output, file.getParentFile().getName());
             if (!outputDir.exists()) {
                 if (!outputDir.mkdir()) {
                     throw new IOException("Failed to create output directory for " + outputDir);
                 }
             }
 
-            List<File> files = map.get(resourceType);
-            if (files != null) {
-                for (File file : files) {
-                    File copy = new File(outputDir, file.getName());
-                    if (copy.exists()) {
-                        FileUtils.deleteQuietly(copy);
-                    }
-                    FileUtils.copyFileToDirectory(file, outputDir, false);
-                }
+            File copy = new File(outputDir, file.getName());
+            if (copy.exists()) {
+                FileUtils.deleteQuietly(copy);
             }
+            FileUtils.copyFileToDirectory(file, outputDir, false);
         }
     }
 
+    /**
+     * Returns the name of the flat file aapt2 compiles a resource file to, e.g.
+     * {@code values-en/strings.xml} is compiled to {@code values-en_strings.arsc.flat} and
+     * {@code layout/main.xml} to {@code layout_main.xml.flat}
+     */
+    public static String getCompiledName(File resourceFile) {
+        String directory = resourceFile.getParentFile().getName();
+        String name = resourceFile.getName();
+        String extension = "";
+        int dot = name.indexOf('.');
+        if (dot != -1) {
+            extension = name.substring(dot + 1);
+            name = name.substring(0, dot);
+        }
+        boolean isValues = directory.equals("values") || directory.startsWith("values-");
+        if (isValues && extension.equals("xml")) {
+            extension = "arsc";
+        }
+
+        StringBuilder builder = new StringBuilder(directory).append('_').append(name);
+        if (!extension.isEmpty()) {
+            builder.append('.').append(extension);
+        }
+        return builder.append(".flat").toString();
+    }
+
     /**
      * Utility method to compare to list of files
      */
@@ -454,6 +606,7 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
 
         List<File> libraries = new ArrayList<>();
+        Set<String> zipNames = new HashSet<>();
 
         for (File library : getModule().getLibraries()) {
             File parent = library.getParentFile();
@@ -465,12 +618,23 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
                 }
 
                 File check = new File(resDir, parent.getName() + ".zip");
+                zipNames.add(check.getName());
                 if (!check.exists()) {
                     libraries.add(library);
                 }
             }
         }
 
+        // every zip file in the directory is linked, remove the ones of removed libraries
+        File[] zipFiles = resDir.listFiles((dir, name) -> name.endsWith(".zip"));
+        if (zipFiles != null) {
+            for (File zipFile : zipFiles) {
+                if (!zipNames.contains(zipFile.getName())) {
+                    FileUtils.deleteQuietly(zipFile);
+                }
+            }
+        }
+
         return libraries;
     }
 
@@ -24,13 +24,13 @@ import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipFile;
 
 /**
  * Task responsible for copying aars/jars from libraries to build/libs
@@ -59,22 +59,13 @@ public class CheckLibrariesTask extends Task<JavaModule> {
     private void checkLibraries(JavaModule project, ILogger logger, List<File> newLibraries) throws IOException {
         Set<Library> libraries = new HashSet<>();
 
-        Map<String, Library> fileLibsHashes = new HashMap<>();
+        File fingerprintsFile = new File(project.getBuildDirectory(), "libs/fingerprints.json");
+        LibraryFingerprints fingerprints = LibraryFingerprints.load(fingerprintsFile);
+
         File[] fileLibraries = project.getLibraryDirectory().listFiles(c ->
                 c.getName().endsWith(".aar") || c.getName().endsWith(".jar"));
-        if (fileLibraries != null) {
-            for (File fileLibrary : fileLibraries) {
-                try {
-                    ZipFile zipFile = new ZipFile(fileLibrary);
-                    Library library = new Library();
-                    library.setSourceFile(fileLibrary);
-                    fileLibsHashes.put(calculateMD5(fileLibrary), library);
-                } catch (IOException e) {
-                    String message = "File " + fileLibrary +
-                            " is corrupt! Ignoring.";
-                    logger.warning(message);
-                }
-            }
+        if (fileLibraries == null) {
+            fileLibraries = new File[0];
         }
 
 
@@ -94,9 +85,36 @@ public class CheckLibrariesTask extends Task<JavaModule> {
 
         }
 
+        Set<File> files = new HashSet<>(Arrays.asList(fileLibraries));
+        libraries.forEach(it -> files.add(it.getSourceFile()));
+        Map<File, String> hashes = fingerprints.hash(files, logger);
+
+        Map<String, Library> fileLibsHashes = new HashMap<>();
+        for (File fileLibrary : fileLibraries) {
+            String hash = hashes.get(fileLibrary);
+            if (hash != null) {
+                Library library = new Library();
+                library.setSourceFile(fileLibrary);
+                fileLibsHashes.put(hash, library);
+            }
+        }
+
         Map<String, Library> md5Map = new HashMap<>();
-        libraries.forEach(it ->
-                md5Map.put(calculateMD5(it.getSourceFile()), it));
+        libraries.forEach(it -> {
+            String hash = hashes.get(it.getSourceFile());
+            if (hash != null) {
+                md5Map.put(hash, it);
+            }
+        });
+
+        if (isUpToDate(project, fingerprints, librariesString, md5Map, fileLibsHashes)) {
+            getModule().putLibraryHashes(combine(md5Map, fileLibsHashes));
+            if (fingerprints.isModified()) {
+                fingerprints.save(fingerprintsFile);
+            }
+            return;
+        }
+
         File buildLibs = new File(project.getBuildDirectory(), "libs");
         File[] buildLibraryDirs = buildLibs.listFiles(File::isDirectory);
         if (buildLibraryDirs != null) {
@@ -109,13 +127,47 @@ public class CheckLibrariesTask extends Task<JavaModule> {
             }
         }
 
-        saveLibraryToProject(project, md5Map, fileLibsHashes);
+        fingerprints.libraries = saveLibraryToProject(project, md5Map, fileLibsHashes);
+        fingerprints.hashes = new HashSet<>(combine(md5Map, fileLibsHashes).keySet());
+        fingerprints.save(fingerprintsFile);
     }
 
-    private void saveLibraryToProject(Module module, Map<String, Library> libraries, Map<String, Library> fileLibraries) throws IOException {
+    /**
+     * @return whether the libraries are the same as the ones saved by the last build and
+     * they are all still extracted, so there is nothing to copy or delete
+     */
+    private static boolean isUpToDate(Module module,
+                                      LibraryFingerprints fingerprints,
+                                      String librariesString,
+                                      Map<String, Library> libraries,
+                                      Map<String, Library> fileLibraries) {
+        if (!librariesString.equals(fingerprints.libraries)) {
+            return false;
+        }
+        Set<String> hashes = combine(libraries, fileLibraries).keySet();
+        if (!hashes.equals(fingerprints.hashes)) {
+            return false;
+        }
+        for (String hash : hashes) {
+            if (!new File(module.getBuildDirectory(), "libs/" + hash).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Library> combine(Map<String, Library> libraries, Map<String, Library> fileLibraries) {
         Map<String, Library> combined = new HashMap<>();
         combined.putAll(libraries);
         combined.putAll(fileLibraries);
+        return combined;
+    }
+
+    /**
+     * @return the value saved to the libraries setting
+     */
+    private String saveLibraryToProject(Module module, Map<String, Library> libraries, Map<String, Library> fileLibraries) throws IOException {
+        Map<String, Library> combined = combine(libraries, fileLibraries);
 
         getModule().putLibraryHashes(combined);
 
@@ -145,6 +197,7 @@ public class CheckLibrariesTask extends Task<JavaModule> {
         module.getSettings().edit()
                 .putString("libraries", librariesString)
                 .apply();
+        return librariesString;
     }
 
     public static String calculateMD5(File updateFile) {
@@ -0,0 +1,137 @@
+package com.tyron.builder.compiler.java;
+
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import com.tyron.builder.log.ILogger;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipFile;
+
+/**
+ * The MD5 hashes of the library files of a module, persisted between builds and keyed by
+ * path. A file is only hashed again when its size or modification time changed.
+ */
+class LibraryFingerprints {
+
+    /**
+     * Bumped whenever the format of the file changes so that
+     * previously saved fingerprints are not read.
+     */
+    private static final int VERSION = 1;
+
+    private static class Fingerprint {
+        @SerializedName("size")
+        long size;
+
+        @SerializedName("lastModified")
+        long lastModified;
+
+        @SerializedName("hash")
+        String hash;
+    }
+
+    @SerializedName("version")
+    private int version = VERSION;
+
+    @SerializedName("files")
+    private Map<String, Fingerprint> files = new HashMap<>();
+
+    /**
+     * The value of the libraries setting when the hashes were last saved.
+     */
+    @SerializedName("libraries")
+    String libraries;
+
+    /**
+     * The hashes of all the libraries when they were last saved.
+     */
+    @SerializedName("hashes")
+    Set<String> hashes = new HashSet<>();
+
+    private transient boolean mModified;
+
+    static LibraryFingerprints load(File file) {
+        if (file.exists()) {
+            try {
+                LibraryFingerprints fingerprints = new Gson().fromJson(
+                        FileUtils.readFileToString(file, StandardCharsets.UTF_8),
+                        LibraryFingerprints.class);
+                if (fingerprints != null && fingerprints.version == VERSION &&
+                    fingerprints.files != null && fingerprints.hashes != null) {
+                    return fingerprints;
+                }
+            } catch (Exception ignored) {
+                // the fingerprints will be computed again
+            }
+        }
+        return new LibraryFingerprints();
+    }
+
+    /**
+     * @return whether files were hashed or removed since the fingerprints were loaded
+     */
+    boolean isModified() {
+        return mModified;
+    }
+
+    void save(File file) throws IOException {
+        FileUtils.writeStringToFile(file, new Gson().toJson(this), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the hashes of the given files, files that changed since they were last hashed
+     * are hashed in parallel. Files that are not valid zip files are reported and left out.
+     */
+    Map<File, String> hash(Collection<File> libraries, ILogger logger) {
+        Map<File, String> hashes = new ConcurrentHashMap<>();
+        List<File> changed = new ArrayList<>();
+        for (File library : libraries) {
+            Fingerprint fingerprint = files.get(library.getAbsolutePath());
+            if (fingerprint != null && fingerprint.size == library.length() &&
+                fingerprint.lastModified == library.lastModified()) {
+                hashes.put(library, fingerprint.hash);
+            } else {
+                changed.add(library);
+            }
+        }
+
+        Map<File, Fingerprint> computed = new ConcurrentHashMap<>();
+        changed.parallelStream().forEach(library -> {
+            Fingerprint fingerprint = new Fingerprint();
+            fingerprint.size = library.length();
+            fingerprint.lastModified = library.lastModified();
+            //noinspection EmptyTryBlock
+            try (ZipFile ignored = new ZipFile(library)) {
+            } catch (IOException e) {
+                logger.warning("File " + library + " is corrupt! Ignoring.");
+                return;
+            }
+            fingerprint.hash = CheckLibrariesTask.calculateMD5(library);
+            if (fingerprint.hash != null) {
+                hashes.put(library, fingerprint.hash);
+                computed.put(library, fingerprint);
+            }
+        });
+
+        Set<String> paths = new HashSet<>();
+        for (File library : libraries) {
+            paths.add(library.getAbsolutePath());
+        }
+        mModified |= files.keySet().retainAll(paths) || !computed.isEmpty();
+        computed.forEach((library, fingerprint) ->
+                files.put(library.getAbsolutePath(), fingerprint));
+        return hashes;
+    }
+}
@@ -1,5 +1,7 @@
 package com.tyron.builder.compiler.manifest;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.manifest.ManifestMerger2.SystemProperty;
@@ -18,12 +20,26 @@ import org.w3c.dom.Document;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Merges the manifest of the module with the manifests of its libraries. The merge is skipped
+ * when the manifests and the overridden values are the same as the last merge and the merged
+ * manifest was not modified since.
+ */
 public class ManifestMergeTask extends Task<AndroidModule> {
 
+    /**
+     * Bumped whenever the merged output changes for the same inputs so that
+     * previously merged manifests are not reused.
+     */
+    private static final int MERGE_VERSION = 1;
+
     private File mOutputFile;
+    private File mHashFile;
     private File mMainManifest;
     private File[] mLibraryManifestFiles;
     private String mPackageName;
@@ -54,6 +70,8 @@ public class ManifestMergeTask extends Task<AndroidModule> {
             }
         }
 
+        mHashFile = new File(getModule().getBuildDirectory(), "intermediate/manifest/manifest.sha256");
+
         mMainManifest = getModule().getManifestFile();
         if (!mMainManifest.exists()) {
             throw new IOException("Unable to find the main manifest file");
@@ -85,18 +103,26 @@ public class ManifestMergeTask extends Task<AndroidModule> {
     @Override
     public void run() throws IOException, CompilationFailedException {
         ModuleSettings settings = getModule().getSettings();
+        String minSdkVersion = String.valueOf(settings.getInt(ModuleSettings.MIN_SDK_VERSION, 21));
+        String targetSdkVersion =
+                String.valueOf(settings.getInt(ModuleSettings.TARGET_SDK_VERSION, 30));
+        String versionCode = String.valueOf(settings.getInt(ModuleSettings.VERSION_CODE, 1));
+        String versionName = settings.getString(ModuleSettings.VERSION_NAME, "1.0");
+
+        String inputsHash = hashInputs(mPackageName, minSdkVersion, targetSdkVersion,
+                versionCode, versionName);
+        if (isUpToDate(inputsHash)) {
+            getLogger().debug("Merged manifest is up to date.");
+            return;
+        }
 
         ManifestMerger2.Invoker<?> invoker = ManifestMerger2.newMerger(mMainManifest,
                 getLogger(), ManifestMerger2.MergeType.APPLICATION);
         invoker.setOverride(SystemProperty.PACKAGE, mPackageName);
-        invoker.setOverride(SystemProperty.MIN_SDK_VERSION,
-                String.valueOf(settings.getInt(ModuleSettings.MIN_SDK_VERSION, 21)));
-        invoker.setOverride(SystemProperty.TARGET_SDK_VERSION,
-                String.valueOf(settings.getInt(ModuleSettings.TARGET_SDK_VERSION, 30)));
-        invoker.setOverride(SystemProperty.VERSION_CODE,
-                String.valueOf(settings.getInt(ModuleSettings.VERSION_CODE, 1)));
-        invoker.setOverride(SystemProperty.VERSION_NAME,
-                settings.getString(ModuleSettings.VERSION_NAME, "1.0"));
+        invoker.setOverride(SystemProperty.MIN_SDK_VERSION, minSdkVersion);
+        invoker.setOverride(SystemProperty.TARGET_SDK_VERSION, targetSdkVersion);
+        invoker.setOverride(SystemProperty.VERSION_CODE, versionCode);
+        invoker.setOverride(SystemProperty.VERSION_NAME, versionName);
         if (mLibraryManifestFiles != null) {
             invoker.addLibraryManifests(mLibraryManifestFiles);
         }
@@ -123,12 +149,54 @@ public class ManifestMergeTask extends Task<AndroidModule> {
                 FileUtils.writeStringToFile(mOutputFile,
                         contents,
                         Charset.defaultCharset());
+                FileUtils.writeStringToFile(mHashFile,
+                        inputsHash + "\n" + hashOutput(),
+                        StandardCharsets.UTF_8);
             }
         } catch (ManifestMerger2.MergeFailureException e) {
             throw new CompilationFailedException(e);
         }
     }
 
+    private String hashInputs(String... overrides) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(MERGE_VERSION);
+        for (String override : overrides) {
+            hasher.putString(override, StandardCharsets.UTF_8);
+        }
+        hasher.putBytes(Files.readAllBytes(mMainManifest.toPath()));
+        if (mLibraryManifestFiles != null) {
+            // the order of the libraries is the merge priority, it is kept
+            for (File file : mLibraryManifestFiles) {
+                hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8);
+                hasher.putBytes(Files.readAllBytes(file.toPath()));
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private String hashOutput() throws IOException {
+        return Hashing.sha256().hashBytes(Files.readAllBytes(mOutputFile.toPath())).toString();
+    }
+
+    /**
+     * Other tasks may modify the merged manifest, it is only up to date if it is still the
+     * one written by the last merge.
+     */
+    private boolean isUpToDate(String inputsHash) {
+        if (!mHashFile.exists() || mOutputFile.length() == 0) {
+            return false;
+        }
+        try {
+            String[] hashes = FileUtils.readFileToString(mHashFile, StandardCharsets.UTF_8)
+                    .split("\n");
+            return hashes.length == 2 && hashes[0].equals(inputsHash) &&
+                   hashes[1].equals(hashOutput());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     private String getApplicationId() throws IOException {
         String packageName = getModule().getPackageName();
         if (packageName == null) {
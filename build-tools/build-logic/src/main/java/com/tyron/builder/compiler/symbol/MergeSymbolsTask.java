@@ -2,8 +2,8 @@ package com.tyron.builder.compiler.symbol;
 
 import android.util.Log;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.resource.AAPT2Compiler;
@@ -18,22 +18,36 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Class that loads R.txt files generated by AAPT/AAPT2  and converts them
- * to R.java class files
+ * Class that loads R.txt files generated by AAPT/AAPT2 and converts them
+ * to compiled R classes of the libraries. The classes are written to a single jar that is
+ * added to the libraries of the module, it is only written again when the hash of the
+ * symbol tables has changed.
  */
 public class MergeSymbolsTask extends Task<AndroidModule> {
 
     public static final CacheHolder.CacheKey<Void, Void> CACHE_KEY =
             new CacheHolder.CacheKey<>("mergeSymbolsCache");
 
+    /**
+     * Bumped whenever the format of the generated classes changes so that
+     * previously written jars are not reused.
+     */
+    private static final int SYMBOLS_VERSION = 1;
+
     private File mSymbolOutputDir;
     private File mFullResourceFile;
+    private File mOutputJar;
+    private File mHashFile;
 
     public MergeSymbolsTask(Project project, AndroidModule module, ILogger logger) {
         super(project, module, logger);
@@ -48,15 +62,16 @@ public class MergeSymbolsTask extends Task<AndroidModule> {
     public void prepare(BuildType type) throws IOException {
         mSymbolOutputDir = new File(getModule().getBuildDirectory(), "gen");
         mFullResourceFile = new File(getModule().getBuildDirectory(), "bin/res/R.txt");
+
+        File symbolsDir = new File(getModule().getBuildDirectory(), "intermediate/symbols");
+        mOutputJar = new File(symbolsDir, "classes.jar");
+        mHashFile = new File(symbolsDir, "symbols.sha256");
     }
 
     @Override
     public void run() throws IOException, CompilationFailedException {
         Cache<Void, Void> cache = getModule().getCache(CACHE_KEY, new Cache<>());
-        SymbolLoader fullSymbolValues = null;
-        Multimap<String, SymbolLoader> libMap = ArrayListMultimap.create();
-
-        List<File> RFiles = new ArrayList<>();
+        Map<File, String> RFiles = new LinkedHashMap<>();
         for (File library : getModule().getLibraries()) {
             File parent = library.getParentFile();
             if (parent == null) {
@@ -79,58 +94,102 @@ public class MergeSymbolsTask extends Task<AndroidModule> {
                 continue;
             }
 
-            RFiles.add(rFile);
+            RFiles.put(rFile, packageName);
+        }
+
+        if (RFiles.isEmpty() || !mFullResourceFile.exists()) {
+            FileUtils.deleteDirectory(mOutputJar.getParentFile());
+            return;
         }
 
+        boolean changed = !mOutputJar.exists() || cache.needs(mFullResourceFile.toPath(), null);
         for (Cache.Key<Void> key : new HashSet<>(cache.getKeys())) {
-            if (!RFiles.contains(key.file.toFile())) {
-                Log.d("MergeSymbolsTask", "Found deleted resource file, removing " + key.file.toFile().getName() + " on the cache.");
+            File file = key.file.toFile();
+            if (!file.equals(mFullResourceFile) && !RFiles.containsKey(file)) {
+                Log.d("MergeSymbolsTask", "Found deleted resource file, removing " + file.getName() + " on the cache.");
                 cache.remove(key.file, (Void) null);
-                FileUtils.delete(key.file.toFile());
+                changed = true;
             }
         }
-
-        for (File rFile : RFiles) {
-
-            if (!cache.needs(rFile.toPath(), null)) {
-                continue;
+        for (File rFile : RFiles.keySet()) {
+            if (cache.needs(rFile.toPath(), null)) {
+                changed = true;
             }
+        }
 
-            File parent = rFile.getParentFile();
-            if (parent == null) {
-                getLogger().error("Unable to access parent directory for " + rFile);
-                continue;
+        if (changed) {
+            String hash = hashSymbols(RFiles);
+            if (!mOutputJar.exists() || !hash.equals(readHash())) {
+                writeSymbols(RFiles);
+                FileUtils.writeStringToFile(mHashFile, hash, StandardCharsets.UTF_8);
             }
+        }
 
-            String packageName = AAPT2Compiler.getPackageName(new File(parent, "AndroidManifest.xml"));
-            if (packageName == null) {
-                continue;
-            }
+        if (mOutputJar.exists()) {
+            getModule().addLibrary(mOutputJar);
+        }
 
-            if (fullSymbolValues == null) {
-                fullSymbolValues = new SymbolLoader(mFullResourceFile, getLogger());
-                fullSymbolValues.load();
-            }
-            SymbolLoader libSymbols = new SymbolLoader(rFile, getLogger());
+        cache.load(mFullResourceFile.toPath(), null, null);
+        for (File file : RFiles.keySet()) {
+            cache.load(file.toPath(), null, null);
+        }
+    }
+
+    private void writeSymbols(Map<File, String> RFiles) throws IOException {
+        SymbolLoader fullSymbolValues = new SymbolLoader(mFullResourceFile, getLogger());
+        fullSymbolValues.load();
+
+        SymbolJarWriter writer = new SymbolJarWriter(mOutputJar, fullSymbolValues);
+        for (Map.Entry<File, String> entry : RFiles.entrySet()) {
+            SymbolLoader libSymbols = new SymbolLoader(entry.getKey(), getLogger());
             libSymbols.load();
 
-            libMap.put(packageName, libSymbols);
+            writer.addSymbolsToWrite(entry.getValue(), libSymbols);
+            deleteGeneratedSource(entry.getValue());
+        }
+        writer.write();
+
+        // the dex file of the previous symbols is now stale, it will be created again
+        // when the libraries are dexed
+        File dexFile = new File(mOutputJar.getParentFile(), "classes.dex");
+        if (dexFile.exists()) {
+            FileUtils.delete(dexFile);
         }
+    }
 
-        // now loop on all the package name, merge all the symbols to write, and write them
-        for (String packageName : libMap.keySet()) {
-            Collection<SymbolLoader> symbols = libMap.get(packageName);
+    /**
+     * Library R classes used to be written as R.java files on the gen folder, delete them
+     * so they won't be compiled along with the jar.
+     */
+    private void deleteGeneratedSource(String packageName) throws IOException {
+        File file = new File(mSymbolOutputDir, packageName.replace('.', '/') + "/R.java");
+        if (file.exists()) {
+            FileUtils.delete(file);
+        }
+    }
 
-            SymbolWriter writer = new SymbolWriter(mSymbolOutputDir.getAbsolutePath(), packageName,
-                    fullSymbolValues, getModule());
-            for (SymbolLoader loader : symbols) {
-                writer.addSymbolsToWrite(loader);
-            }
-            writer.write();
+    private String hashSymbols(Map<File, String> RFiles) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(SYMBOLS_VERSION);
+        hasher.putBytes(Files.readAllBytes(mFullResourceFile.toPath()));
+
+        List<File> sorted = new ArrayList<>(RFiles.keySet());
+        Collections.sort(sorted);
+        for (File file : sorted) {
+            hasher.putString(RFiles.get(file), StandardCharsets.UTF_8);
+            hasher.putBytes(Files.readAllBytes(file.toPath()));
         }
+        return hasher.hash().toString();
+    }
 
-        for (File file : RFiles) {
-            cache.load(file.toPath(), null, null);
+    private String readHash() {
+        if (!mHashFile.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(mHashFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
         }
     }
 }
@@ -0,0 +1,213 @@
+package com.tyron.builder.compiler.symbol;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Table;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A class to write compiled R classes of libraries directly into a jar file, skipping the
+ * generation of R.java sources that would otherwise need to be parsed and attributed by javac.
+ *
+ * <p>Like the R classes of library modules in the Android Gradle Plugin, the fields generated
+ * here are not final and are assigned in the static initializer, so their values are never
+ * inlined into the classes that reference them.</p>
+ */
+public class SymbolJarWriter {
+
+    private static final String TYPE_INT = "int";
+    private static final String TYPE_INT_ARRAY = "int[]";
+
+    private final File mOutputJar;
+    private final SymbolLoader mValues;
+    private final Map<String, List<SymbolLoader>> mSymbols = new TreeMap<>();
+
+    public SymbolJarWriter(File outputJar, SymbolLoader values) {
+        mOutputJar = outputJar;
+        mValues = values;
+    }
+
+    public void addSymbolsToWrite(String packageName, SymbolLoader symbols) {
+        mSymbols.computeIfAbsent(packageName, k -> new ArrayList<>()).add(symbols);
+    }
+
+    public void write() throws IOException {
+        File parent = mOutputJar.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(mOutputJar))) {
+            for (Map.Entry<String, List<SymbolLoader>> entry : mSymbols.entrySet()) {
+                writePackage(out, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void writePackage(JarOutputStream out, String packageName,
+                              List<SymbolLoader> loaders) throws IOException {
+        Table<String, String, SymbolLoader.SymbolEntry> symbols = HashBasedTable.create();
+        for (SymbolLoader loader : loaders) {
+            symbols.putAll(loader.getSymbols());
+        }
+
+        String internalName = String.join("/", Splitter.on('.').split(packageName)) + "/R";
+        List<String> rowList = Lists.newArrayList(symbols.rowKeySet());
+        Collections.sort(rowList);
+
+        putEntry(out, internalName, writeOuterClass(internalName, rowList));
+
+        Table<String, String, SymbolLoader.SymbolEntry> values = mValues.getSymbols();
+        for (String row : rowList) {
+            List<SymbolLoader.SymbolEntry> entries = new ArrayList<>();
+            List<String> symbolList = Lists.newArrayList(symbols.row(row).keySet());
+            Collections.sort(symbolList);
+            for (String symbolName : symbolList) {
+                // get the matching SymbolEntry from the values Table.
+                SymbolLoader.SymbolEntry value = values.get(row, symbolName);
+                if (value != null) {
+                    entries.add(value);
+                }
+            }
+            String innerName = internalName + "$" + row;
+            putEntry(out, innerName, writeInnerClass(internalName, row, entries));
+        }
+    }
+
+    private static void putEntry(JarOutputStream out, String internalName,
+                                 byte[] bytes) throws IOException {
+        JarEntry entry = new JarEntry(internalName + ".class");
+        // use a fixed time so identical symbols always produce an identical jar
+        entry.setTime(0);
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static byte[] writeOuterClass(String internalName, List<String> rows) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                internalName, null, "java/lang/Object", null);
+        for (String row : rows) {
+            cw.visitInnerClass(internalName + "$" + row, internalName, row,
+                    Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL);
+        }
+        writeConstructor(cw);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] writeInnerClass(String outerName, String row,
+                                          List<SymbolLoader.SymbolEntry> entries) {
+        String internalName = outerName + "$" + row;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER,
+                internalName, null, "java/lang/Object", null);
+        cw.visitInnerClass(internalName, outerName, row,
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL);
+
+        for (SymbolLoader.SymbolEntry entry : entries) {
+            cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, entry.getName(),
+                    getDescriptor(entry), null, null).visitEnd();
+        }
+        writeConstructor(cw);
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        for (SymbolLoader.SymbolEntry entry : entries) {
+            if (TYPE_INT_ARRAY.equals(entry.getType())) {
+                List<Integer> values = parseArray(entry.getValue());
+                pushInt(mv, values.size());
+                mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+                for (int i = 0; i < values.size(); i++) {
+                    mv.visitInsn(Opcodes.DUP);
+                    pushInt(mv, i);
+                    pushInt(mv, values.get(i));
+                    mv.visitInsn(Opcodes.IASTORE);
+                }
+            } else {
+                pushInt(mv, parseInt(entry.getValue()));
+            }
+            mv.visitFieldInsn(Opcodes.PUTSTATIC, internalName, entry.getName(),
+                    getDescriptor(entry));
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void writeConstructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PRIVATE, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static String getDescriptor(SymbolLoader.SymbolEntry entry) {
+        if (TYPE_INT.equals(entry.getType())) {
+            return "I";
+        }
+        if (TYPE_INT_ARRAY.equals(entry.getType())) {
+            return "[I";
+        }
+        throw new IllegalArgumentException("Unknown symbol type " + entry.getType() +
+                                           " for " + entry.getName());
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static List<Integer> parseArray(String value) {
+        // format is "{ 0x7f010000, 0x7f010001 }"
+        String trimmed = value.trim();
+        if (trimmed.startsWith("{")) {
+            trimmed = trimmed.substring(1);
+        }
+        if (trimmed.endsWith("}")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        List<Integer> values = new ArrayList<>();
+        for (String s : Splitter.on(',').trimResults().omitEmptyStrings().split(trimmed)) {
+            values.add(parseInt(s));
+        }
+        return values;
+    }
+
+    private static int parseInt(String value) {
+        String trimmed = value.trim();
+        if (trimmed.startsWith("0x") || trimmed.startsWith("0X")) {
+            return Integer.parseUnsignedInt(trimmed.substring(2), 16);
+        }
+        return Integer.parseInt(trimmed);
+    }
+}
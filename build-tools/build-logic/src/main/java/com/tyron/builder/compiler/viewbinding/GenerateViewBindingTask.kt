@@ -1,6 +1,7 @@
 package com.tyron.builder.compiler.viewbinding
 
 import android.util.Log
+import com.google.common.hash.HashCode
 import com.tyron.builder.compiler.BuildType
 import com.tyron.builder.compiler.Task
 import com.tyron.builder.exception.CompilationFailedException
@@ -36,6 +37,17 @@ class GenerateViewBindingTask(
 
     private lateinit var outputDirectory: File
 
+    /**
+     * The binding classes written by the last run, classes of layouts that did not change
+     * since the previous run in the same output directory are not written again
+     */
+    val writtenFiles = mutableListOf<File>()
+
+    /**
+     * All the binding classes in the output directory after the last run
+     */
+    val outputFiles = mutableListOf<File>()
+
     override fun getName() = TAG
 
     override fun prepare(type: BuildType?) {
@@ -49,8 +61,9 @@ class GenerateViewBindingTask(
     }
 
     private fun doPrepare() {
-        outputDirectory.deleteRecursively() // todo: incremental?
         outputDirectory.mkdirs()
+        writtenFiles.clear()
+        outputFiles.clear()
     }
 
     override fun run() {
@@ -71,11 +84,22 @@ class GenerateViewBindingTask(
     }
 
     private fun doRun() {
-        // generate binding classes from layouts
-        val resourceBundle = generateClassesToBundle()
+        val cache = ViewBindingCache.get(module)
+
+        // the cached bundles are modified when validated, the build and the editor
+        // must not use them at the same time
+        synchronized(cache) {
+            cache.checkPackageName(module.packageName)
+
+            // parse the layouts that changed since the last run
+            val layouts = parseLayouts(cache)
 
-        // write classes to output dir
-        writeClassesToDisk(resourceBundle)
+            // generate binding classes from layouts
+            val resourceBundle = generateClassesToBundle(layouts)
+
+            // write classes to output dir
+            writeClassesToDisk(cache, layouts, resourceBundle)
+        }
 
         // data binding will eat some errors to be able to report them later on. This is a good
         // time to report them after the processing is done.
@@ -85,39 +109,114 @@ class GenerateViewBindingTask(
         addToClasspath()
     }
 
-    private fun generateClassesToBundle(): ResourceBundle {
-        // it doesn't matter what we pass to the 2nd argument, we won't be using data binding anyways
-        val resourceBundle = ResourceBundle(module.packageName, true)
+    private fun parseLayouts(cache: ViewBindingCache): Map<String, ViewBindingCache.Layout> {
         val resDir = module.androidResourcesDirectory
 
-        resDir.walkTopDown().filter {
+        val layoutFiles = resDir.walkTopDown().filter {
             val isXmlFile = it.isFile && it.name.endsWith(".xml")
             val isLayoutFile = it.parentFile.name == "layout" || it.parentFile.name.startsWith("layout-")
             val applicable = isXmlFile && isLayoutFile
 
             applicable
-        }.forEach { file ->
-            val bundle = LayoutFileParser.parseXml(
-                RelativizableFile.fromAbsoluteFile(file),
-                module.packageName,
-                getUpToDateFileContent(module, file),
-                true
-            )
-            if (bundle != null) {
-                resourceBundle.addLayoutBundle(bundle, true)
+        }.groupBy { it.nameWithoutExtension }
+
+        cache.retainLayouts(layoutFiles.keys)
+
+        val contents = HashMap<File, String?>()
+        val layouts = HashMap<String, ViewBindingCache.Layout>()
+        val parsed = HashSet<String>()
+        val parse = { name: String, stamps: Map<File, HashCode?> ->
+            // the variants are merged into one class, parse all of them again
+            val bundles = stamps.keys.mapNotNull { file ->
+                LayoutFileParser.parseXml(
+                    RelativizableFile.fromAbsoluteFile(file),
+                    module.packageName,
+                    contents[file],
+                    true
+                )
+            }
+            val includedLayouts = bundles.flatMapTo(HashSet()) { bundle ->
+                bundle.bindingTargetBundles.mapNotNull { it.includedLayout }
+            }
+            layouts[name] = ViewBindingCache.Layout(stamps, bundles, includedLayouts)
+            parsed.add(name)
+        }
+
+        layoutFiles.forEach { (name, files) ->
+            val stamps = files.associateWith { file ->
+                val content = getUpToDateFileContent(module, file)
+                contents[file] = content
+                ViewBindingCache.stampOf(content)
+            }
+            val cached = cache.getLayout(name)
+            if (cached != null && cached.stamps == stamps) {
+                layouts[name] = cached
+            } else {
+                parse(name, stamps)
             }
         }
+
+        // the binding class of a layout does not depend on the layouts it includes,
+        // so parsing a layout again here does not affect the others
+        val bindingClasses = layouts.mapValues { it.value.bindingClass }
+        layouts.keys.toList().forEach { name ->
+            val layout = layouts.getValue(name)
+            val resolvedIncludes = HashMap<String, String>()
+            layout.includedLayouts.forEach { included ->
+                bindingClasses[included]?.let { resolvedIncludes[included] = it }
+            }
+            if (name !in parsed && layout.resolvedIncludes != resolvedIncludes) {
+                parse(name, layout.stamps)
+            }
+            layouts.getValue(name).resolvedIncludes = resolvedIncludes
+            cache.putLayout(name, layouts.getValue(name))
+        }
+        return layouts
+    }
+
+    private fun generateClassesToBundle(layouts: Map<String, ViewBindingCache.Layout>): ResourceBundle {
+        // it doesn't matter what we pass to the 2nd argument, we won't be using data binding anyways
+        val resourceBundle = ResourceBundle(module.packageName, true)
+        layouts.values.forEach { layout ->
+            layout.bundles.forEach { resourceBundle.addLayoutBundle(it, true) }
+        }
         resourceBundle.validateAndRegisterErrors()
         return resourceBundle
     }
 
-    private fun writeClassesToDisk(resourceBundle: ResourceBundle) {
+    private fun writeClassesToDisk(
+        cache: ViewBindingCache,
+        layouts: Map<String, ViewBindingCache.Layout>,
+        resourceBundle: ResourceBundle
+    ) {
         val writer = GradleFileWriter(outputDirectory.absolutePath)
+        val writtenLayouts = cache.getWrittenLayouts(outputDirectory)
 
         val layoutBindings = resourceBundle.allLayoutFileBundlesInSource
             .groupBy(ResourceBundle.LayoutFileBundle::getFileName)
 
-        layoutBindings.forEach { (_, variations) ->
+        if (writtenLayouts.isEmpty()) {
+            // the classes in the directory were not written by this cache
+            outputDirectory.deleteRecursively()
+            outputDirectory.mkdirs()
+        }
+
+        // remove the classes of deleted layouts
+        writtenLayouts.keys.filterNot(layoutBindings::containsKey).forEach { name ->
+            writtenLayouts.remove(name)?.bindingClass?.let(writer::deleteFile)
+        }
+
+        layoutBindings.forEach { (name, variations) ->
+            val layout = layouts[name]
+            val outputFile = File(outputDirectory,
+                variations.first().fullBindingClass.replace('.', File.separatorChar) + ".java")
+            outputFiles.add(outputFile)
+            val written = writtenLayouts[name]
+            if (layout != null && written === layout && outputFile.exists()) {
+                return@forEach
+            }
+            written?.bindingClass?.takeIf { it != layout?.bindingClass }?.let(writer::deleteFile)
+
             val layoutModel = BaseLayoutModel(variations)
             val viewBinder = layoutModel.toViewBinder()
             val javaFile = viewBinder.toJavaFile(
@@ -127,14 +226,16 @@ class GenerateViewBindingTask(
                 useLegacyAnnotations = false
             )
             writer.writeToFile(javaFile)
+            writtenFiles.add(outputFile)
+            if (layout != null) {
+                writtenLayouts[name] = layout
+            }
         }
     }
 
     private fun addToClasspath() {
         if (addToClasspath) {
-            outputDirectory.walkTopDown().filter {
-                it.isFile && it.name.endsWith(".java")
-            }.forEach(module::addResourceClass)
+            outputFiles.forEach(module::addResourceClass)
         }
     }
 
@@ -0,0 +1,90 @@
+package com.tyron.builder.compiler.viewbinding
+
+import com.google.common.hash.HashCode
+import com.google.common.hash.Hashing
+import com.tyron.builder.project.api.AndroidModule
+import com.tyron.viewbinding.tool.store.ResourceBundle.LayoutFileBundle
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key
+import java.io.File
+import java.nio.charset.StandardCharsets
+
+/**
+ * The parsed layouts of a module, kept in memory between runs of [GenerateViewBindingTask] so
+ * that only the layouts that changed are parsed again and only their binding classes are
+ * written again.
+ */
+class ViewBindingCache {
+
+    /**
+     * All the variants of a layout, e.g. `layout/main.xml` and `layout-land/main.xml`. The
+     * variants are merged into a single binding class so they are always parsed together.
+     *
+     * @param stamps the hash of the contents each variant was parsed from, `null` when the
+     * variant could not be read
+     * @param includedLayouts the layouts included by any of the variants
+     */
+    internal class Layout(
+        val stamps: Map<File, HashCode?>,
+        val bundles: List<LayoutFileBundle>,
+        val includedLayouts: Set<String>
+    ) {
+        val bindingClass: String? get() = bundles.firstOrNull()?.fullBindingClass
+
+        /**
+         * The binding classes of the included layouts when the variants were validated,
+         * validating the bundles drops or retypes the includes so the variants have to be
+         * parsed again when this changes
+         */
+        var resolvedIncludes: Map<String, String> = emptyMap()
+    }
+
+    private var packageName: String? = null
+
+    private val layouts = HashMap<String, Layout>()
+
+    /**
+     * The layouts whose binding classes were last written to each output directory, a binding
+     * class is only written again when its layout is no longer the same instance
+     */
+    private val writtenLayouts = HashMap<File, MutableMap<String, Layout>>()
+
+    /**
+     * Clears the cache if the package of the module changed since the binding classes depend on it
+     */
+    @Synchronized
+    internal fun checkPackageName(packageName: String) {
+        if (this.packageName != packageName) {
+            this.packageName = packageName
+            layouts.clear()
+            writtenLayouts.clear()
+        }
+    }
+
+    @Synchronized
+    internal fun getLayout(name: String): Layout? = layouts[name]
+
+    @Synchronized
+    internal fun putLayout(name: String, layout: Layout) {
+        layouts[name] = layout
+    }
+
+    @Synchronized
+    internal fun retainLayouts(names: Set<String>) {
+        layouts.keys.retainAll(names)
+    }
+
+    @Synchronized
+    internal fun getWrittenLayouts(outputDirectory: File): MutableMap<String, Layout> =
+        writtenLayouts.getOrPut(outputDirectory.absoluteFile) { HashMap() }
+
+    companion object {
+        private val KEY = Key.create<ViewBindingCache>("viewBindingCache")
+
+        @JvmStatic
+        fun get(module: AndroidModule): ViewBindingCache =
+            module.putUserDataIfAbsent(KEY, ViewBindingCache())
+
+        internal fun stampOf(contents: String?): HashCode? =
+            contents?.let { Hashing.murmur3_128().hashString(it, StandardCharsets.UTF_8) }
+    }
+}
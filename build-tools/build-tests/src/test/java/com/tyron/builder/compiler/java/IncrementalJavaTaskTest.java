@@ -0,0 +1,138 @@
+package com.tyron.builder.compiler.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.incremental.ClassDependencyGraph;
+import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.TestUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+@RunWith(RobolectricTestRunner.class)
+public class IncrementalJavaTaskTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private MockAndroidModule mModule;
+
+    @Before
+    public void setup() throws Exception {
+        File resourcesDirectory = TestUtil.getResourcesDirectory();
+        File root = mFolder.newFolder("project");
+
+        mModule = new MockAndroidModule(root, new MockFileManager(root));
+        mModule.setLambdaStubsJarFile(new File(resourcesDirectory,
+                "bootstraps/core-lambda-stubs.jar"));
+        mModule.setBootstrapFile(new File(resourcesDirectory, "bootstraps/rt.jar"));
+
+        writeJavaFile("A", "public class A { public int foo() { return 1; } }");
+        writeJavaFile("B", "public class B { int x = new A().foo(); }");
+        writeJavaFile("C", "public class C { }");
+        writeJavaFile("D", "public class D extends A { }");
+        writeJavaFile("E", "public class E { int y = new D().foo(); }");
+        writeJavaFile("U", "public class U { int z = new K().bar(); }");
+        writeKotlinClass("public class K { public int bar() { return 1; } }");
+    }
+
+    @Test
+    public void testOnlyDependentsAreCompiled() throws Exception {
+        assertThat(build()).containsExactly("A", "B", "C", "D", "E", "U");
+        assertThat(build()).isEmpty();
+
+        writeJavaFile("A", "public class A { public int foo() { return 2; } }");
+        assertThat(build()).containsExactly("A");
+
+        // E only references D, but D inherits the members of A
+        writeJavaFile("A", "public class A { public int foo() { return 2; } public void bar() {} }");
+        assertThat(build()).containsExactly("A", "B", "D", "E");
+
+        writeJavaFile("A", "public class A { public int foo() { return 2; } public void bar() {} " +
+                           "private void baz() {} }");
+        assertThat(build()).containsExactly("A");
+    }
+
+    @Test
+    public void testKotlinAbiChange() throws Exception {
+        assertThat(build()).containsExactly("A", "B", "C", "D", "E", "U");
+
+        writeKotlinClass("public class K { public int bar() { return 2; } }");
+        assertThat(build()).isEmpty();
+
+        writeKotlinClass("public class K { public int bar() { return 2; } public void baz() {} }");
+        assertThat(build()).containsExactly("U");
+    }
+
+    @Test
+    public void testConstantChange() throws Exception {
+        writeJavaFile("C", "public class C { public static final int VALUE = 1; }");
+        assertThat(build()).containsExactly("A", "B", "C", "D", "E", "U");
+
+        // the value is inlined, the classes that use it cannot be found
+        writeJavaFile("C", "public class C { public static final int VALUE = 2; }");
+        assertThat(build()).containsExactly("A", "B", "C", "D", "E", "U");
+    }
+
+    private List<String> build() throws Exception {
+        IncrementalJavaTask task = new IncrementalJavaTask(null, mModule, ILogger.STD_OUT);
+        task.prepare(BuildType.DEBUG);
+        task.run();
+
+        List<String> names = new ArrayList<>();
+        for (File file : task.getCompiledFiles()) {
+            names.add(file.getName().replace(".java", ""));
+        }
+        return names;
+    }
+
+    private void writeJavaFile(String name, String contents) throws Exception {
+        // the modification time has to be after the last build
+        Thread.sleep(10);
+        File file = new File(mModule.getJavaDirectory(), "com/test/" + name + ".java");
+        FileUtils.writeStringToFile(file, "package com.test;\n" + contents,
+                                    StandardCharsets.UTF_8);
+        assertThat(file.setLastModified(System.currentTimeMillis())).isTrue();
+        mModule.addJavaFile(file);
+    }
+
+    /**
+     * Compiles the given class to the output directory of the kotlin compiler and updates the
+     * graph like {@link com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler}
+     */
+    private void writeKotlinClass(String contents) throws IOException {
+        File source = new File(mFolder.getRoot(), "kotlin/com/test/K.java");
+        FileUtils.writeStringToFile(source, "package com.test;\n" + contents,
+                                    StandardCharsets.UTF_8);
+        File output = new File(mModule.getBuildDirectory(), "bin/kotlin/classes");
+        assertThat(output.exists() || output.mkdirs()).isTrue();
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertThat(compiler.run(null, null, null, "--release", "8", "-d",
+                                output.getAbsolutePath(), source.getAbsolutePath()))
+                .isEqualTo(0);
+
+        File graphFile = ClassDependencyGraph.getFile(mModule);
+        ClassDependencyGraph graph = ClassDependencyGraph.load(graphFile);
+        graph.updateKotlinClasses(output, IncrementalJavaTask.getSourceClasses(mModule));
+        graph.save(graphFile);
+    }
+}
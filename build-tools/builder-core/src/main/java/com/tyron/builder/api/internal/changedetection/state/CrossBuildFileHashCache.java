@@ -9,6 +9,7 @@ import com.tyron.builder.cache.PersistentIndexedCache;
 import com.tyron.builder.cache.PersistentIndexedCacheParameters;
 import com.tyron.builder.cache.internal.InMemoryCacheDecoratorFactory;
 import com.tyron.builder.cache.scopes.ScopedCache;
+import com.tyron.builder.internal.hash.Hashes;
 
 import java.io.Closeable;
 
@@ -21,6 +22,7 @@ public class CrossBuildFileHashCache implements Closeable {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
         cache = scopedCache.cache(cacheKind.cacheId)
                 .withDisplayName(cacheKind.description)
+                .withProperties(Hashes.getCacheProperties())
                 .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
                 .open();
     }
@@ -28,6 +30,7 @@ public class CrossBuildFileHashCache implements Closeable {
     public <K, V> PersistentIndexedCache<K, V> createCache(PersistentIndexedCacheParameters<K, V> parameters, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         return cache.createCache(parameters
                 .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
+                .withMemoryMappedStore()
         );
     }
 
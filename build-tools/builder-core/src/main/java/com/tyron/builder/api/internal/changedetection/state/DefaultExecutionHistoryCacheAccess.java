@@ -7,6 +7,7 @@ import com.tyron.builder.cache.FileLockManager;
 import com.tyron.builder.cache.PersistentCache;
 import com.tyron.builder.cache.internal.filelock.LockOptionsBuilder;
 import com.tyron.builder.cache.scopes.ScopedCache;
+import com.tyron.builder.internal.hash.Hashes;
 
 import java.io.Closeable;
 
@@ -17,6 +18,7 @@ public class DefaultExecutionHistoryCacheAccess implements ExecutionHistoryCache
         this.cache = cacheRepository
                 .cache("executionHistory")
                 .withDisplayName("execution history cache")
+                .withProperties(Hashes.getCacheProperties())
                 .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
                 .open();
     }
@@ -9,6 +9,7 @@ import com.tyron.builder.cache.scopes.ScopedCache;
 import com.tyron.builder.internal.Cast;
 import com.tyron.builder.internal.event.ListenerManager;
 import com.tyron.builder.internal.execution.OutputChangeListener;
+import com.tyron.builder.internal.hash.Hashes;
 import com.tyron.builder.internal.serialize.HashCodeSerializer;
 import com.tyron.builder.internal.serialize.Serializer;
 import com.tyron.builder.internal.vfs.FileSystemAccess;
@@ -37,6 +38,7 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
         cache = cacheRepository
             .cache("fileContent")
             .withDisplayName("file content cache")
+            .withProperties(Hashes.getCacheProperties())
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
     }
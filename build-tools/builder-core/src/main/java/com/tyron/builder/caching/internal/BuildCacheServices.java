@@ -16,7 +16,8 @@ import com.tyron.builder.caching.internal.origin.OriginMetadataFactory;
 import com.tyron.builder.caching.internal.packaging.BuildCacheEntryPacker;
 import com.tyron.builder.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import com.tyron.builder.caching.internal.packaging.impl.FilePermissionAccess;
-import com.tyron.builder.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
+import com.tyron.builder.caching.internal.packaging.impl.EntryCompression;
+import com.tyron.builder.caching.internal.packaging.impl.FastBuildCacheEntryPacker;
 import com.tyron.builder.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import com.tyron.builder.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import com.tyron.builder.caching.internal.services.BuildCacheControllerFactory;
@@ -24,6 +25,8 @@ import com.tyron.builder.caching.local.DirectoryBuildCache;
 import com.tyron.builder.caching.local.internal.DirectoryBuildCacheFileStoreFactory;
 import com.tyron.builder.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import com.tyron.builder.internal.SystemProperties;
+import com.tyron.builder.internal.concurrent.ExecutorFactory;
+import com.tyron.builder.internal.concurrent.ManagedExecutor;
 import com.tyron.builder.internal.file.Deleter;
 import com.tyron.builder.internal.file.FileException;
 import com.tyron.builder.internal.hash.ChecksumService;
@@ -96,12 +99,26 @@ public class BuildCacheServices extends AbstractPluginServiceRegistry {
                 return new DefaultTarPackerFileSystemSupport(deleter);
             }
 
+            ManagedExecutor createBuildCacheEntryCompressionExecutor(ExecutorFactory executorFactory) {
+                // compressing reads and writes files, so it gets its own threads instead of
+                // blocking a shared pool
+                return executorFactory.create("Build cache entry compression",
+                        Runtime.getRuntime().availableProcessors());
+            }
+
             BuildCacheEntryPacker createResultPacker(TarPackerFileSystemSupport fileSystemSupport,
                                                      FileSystem fileSystem,
                                                      StreamHasher fileHasher,
-                                                     StringInterner stringInterner) {
-                return new GZipBuildCacheEntryPacker(new TarBuildCacheEntryPacker(fileSystemSupport,
-                        new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                                                     StringInterner stringInterner,
+                                                     ManagedExecutor compressionExecutor,
+                                                     TemporaryFileProvider temporaryFileProvider) {
+                // files are compressed in parallel with the fastest level, deflating the whole
+                // entry at once was the bottleneck of storing and loading entries on phones
+                int processors = Runtime.getRuntime().availableProcessors();
+                return new FastBuildCacheEntryPacker(new TarBuildCacheEntryPacker(fileSystemSupport,
+                        new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner,
+                        EntryCompression.FAST, compressionExecutor, processors * 2,
+                        temporaryFileProvider));
             }
 
             OriginMetadataFactory createOriginMetadataFactory(BuildInvocationScopeId buildInvocationScopeId,
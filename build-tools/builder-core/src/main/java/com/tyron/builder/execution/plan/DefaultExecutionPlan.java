@@ -21,6 +21,9 @@ import com.tyron.builder.internal.graph.DirectedGraphRenderer;
 import com.tyron.builder.internal.logging.text.StyledTextOutput;
 import com.tyron.builder.internal.resources.ResourceLock;
 import com.tyron.builder.internal.resources.ResourceLockState;
+import com.tyron.builder.internal.time.Time;
+import com.tyron.builder.internal.time.TimeFormatting;
+import com.tyron.builder.internal.time.Timer;
 import com.tyron.builder.internal.work.WorkerLeaseRegistry;
 import com.tyron.builder.util.Predicates;
 
@@ -36,10 +39,12 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -66,6 +71,8 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final NodeValidator nodeValidator;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
+    @Nullable
+    private final TaskDurationHistory durationHistory;
     private Predicate<? super Task> filter = Predicates.satisfyAll();
 
     private boolean invalidNodeRunning;
@@ -76,6 +83,8 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final Set<Node> producedButNotYetConsumed = newIdentityHashSet();
     private final Map<Pair<Node, Node>, Boolean> reachableCache = new HashMap<>();
     private final List<Node> dependenciesWhichRequireMonitoring = new ArrayList<>();
+    private final Map<Node, Timer> executionTimers = new IdentityHashMap<>();
+    private final Map<Node, Long> criticalPathPriorities = new IdentityHashMap<>();
     private boolean maybeNodesReady;
 
     private boolean buildCancelled;
@@ -86,12 +95,27 @@ public class DefaultExecutionPlan implements ExecutionPlan {
                                 NodeValidator nodeValidator,
                                 ExecutionNodeAccessHierarchy outputHierarchy,
                                 ExecutionNodeAccessHierarchy destroyableHierarchy) {
+        this(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy, null);
+    }
+
+    /**
+     * @param durationHistory when present, ready nodes are selected by the longest expected chain
+     * of work that depends on them rather than in queue order
+     */
+    public DefaultExecutionPlan(String displayName,
+                                TaskNodeFactory taskNodeFactory,
+                                TaskDependencyResolver dependencyResolver,
+                                NodeValidator nodeValidator,
+                                ExecutionNodeAccessHierarchy outputHierarchy,
+                                ExecutionNodeAccessHierarchy destroyableHierarchy,
+                                @Nullable TaskDurationHistory durationHistory) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
         this.dependencyResolver = dependencyResolver;
         this.nodeValidator = nodeValidator;
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
+        this.durationHistory = durationHistory;
     }
 
     @Override
@@ -343,12 +367,79 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         dependencyResolver.clear();
         nodeMapping.removeIf(Node::requiresMonitoring);
         executionQueue.addAll(nodeMapping);
+        criticalPathPriorities.clear();
+        if (durationHistory != null) {
+            calculateCriticalPathPriorities(durationHistory);
+        }
         for (Node node : executionQueue) {
             maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    /**
+     * Calculates the expected duration of the longest chain of nodes that has to or should run
+     * after each node, so that when there are more ready nodes than workers {@link #selectNext}
+     * starts the ones holding up the most work first. The queue itself keeps its order, and a node
+     * that another node should run after is always given the higher priority, so shouldRunAfter
+     * ordering between ready nodes is kept. Tasks that have not run before are expected to take
+     * the average time.
+     */
+    private void calculateCriticalPathPriorities(TaskDurationHistory history) {
+        Map<Node, Long> expected = new IdentityHashMap<>();
+        long knownTotal = 0;
+        for (Node node : executionQueue) {
+            Long duration = history.getDuration(node);
+            if (duration != null) {
+                expected.put(node, duration);
+                knownTotal += duration;
+            }
+        }
+        long unknownDuration = expected.isEmpty() ? 0 : knownTotal / expected.size();
+
+        // The queue has dependencies before the nodes that depend on them, so walk it backwards
+        Map<Node, Long> shouldRunAfter = new IdentityHashMap<>();
+        long criticalPath = 0;
+        ListIterator<Node> iterator = executionQueue.listIterator(executionQueue.size());
+        while (iterator.hasPrevious()) {
+            Node node = iterator.previous();
+            long longestDependent = shouldRunAfter.getOrDefault(node, 0L);
+            for (Node dependent : node.getAllPredecessors()) {
+                Long path = criticalPathPriorities.get(dependent);
+                if (path != null && path > longestDependent) {
+                    longestDependent = path;
+                }
+            }
+            long duration = expected.getOrDefault(node, node instanceof LocalTaskNode ? unknownDuration : 0L);
+            long path = duration + longestDependent;
+            criticalPathPriorities.put(node, path);
+            criticalPath = Math.max(criticalPath, path);
+            if (node instanceof TaskNode) {
+                for (Node successor : ((TaskNode) node).getShouldSuccessors()) {
+                    shouldRunAfter.merge(successor, path, Math::max);
+                }
+            }
+        }
+        LOGGER.info("Expected critical path of {}: {}", displayName, TimeFormatting.formatDurationVerbose(criticalPath));
+    }
+
+    /**
+     * @return the ready nodes, the ones with the longest chain of work after them first. Nodes with
+     * the same priority stay in queue order.
+     */
+    private List<Node> readyNodesByCriticalPath() {
+        List<Node> readyNodes = new ArrayList<>();
+        for (Node node : executionQueue) {
+            if (node.isReady() && node.allDependenciesComplete()) {
+                readyNodes.add(node);
+            }
+        }
+        readyNodes.sort((left, right) -> Long.compare(
+                criticalPathPriorities.getOrDefault(right, 0L),
+                criticalPathPriorities.getOrDefault(left, 0L)));
+        return readyNodes;
+    }
+
     private void maybeRemoveProcessedShouldRunAfterEdge(Deque<GraphEdge> walkedShouldRunAfterEdges,
                                                         Node node) {
         GraphEdge edge = walkedShouldRunAfterEdges.peek();
@@ -571,7 +662,8 @@ public class DefaultExecutionPlan implements ExecutionPlan {
         if (!maybeNodesReady) {
             return null;
         }
-        Iterator<Node> iterator = executionQueue.iterator();
+        List<Node> candidates = durationHistory == null ? executionQueue : readyNodesByCriticalPath();
+        Iterator<Node> iterator = candidates.iterator();
         boolean foundReadyNode = false;
         while (iterator.hasNext()) {
             Node node = iterator.next();
@@ -606,6 +698,9 @@ public class DefaultExecutionPlan implements ExecutionPlan {
                     node.skipExecution(this::recordNodeCompleted);
                 }
                 iterator.remove();
+                if (candidates != executionQueue) {
+                    executionQueue.remove(node);
+                }
                 return node;
             }
         }
@@ -781,6 +876,9 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        if (durationHistory != null) {
+            executionTimers.put(node, Time.startTimer());
+        }
     }
 
     private void recordNodeCompleted(Node node) {
@@ -815,6 +913,10 @@ public class DefaultExecutionPlan implements ExecutionPlan {
                 }
 
                 runningNodes.remove(node);
+                Timer timer = executionTimers.remove(node);
+                if (timer != null && !node.isFailed()) {
+                    durationHistory.recordDuration(node, timer.getElapsedMillis());
+                }
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -19,7 +19,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.tyron.builder.internal.resources.ResourceLockState.Disposition.FINISHED;
@@ -50,10 +54,11 @@ public class DefaultPlanExecutor implements PlanExecutor {
     @Override
     public void process(ExecutionPlan executionPlan, Collection<? super Throwable> failures, Action<Node> nodeExecutor) {
         ManagedExecutor executor = executorFactory.create("Execution worker for '" + executionPlan.getDisplayName() + "'");
+        ExecutionStatistics statistics = new ExecutionStatistics(executionPlan.getDisplayName(), executorCount);
         try {
             WorkerLease currentWorkerLease = workerLeaseService.getCurrentWorkerLease();
-            startAdditionalWorkers(executionPlan, nodeExecutor, executor);
-            new ExecutorWorker(executionPlan, nodeExecutor, currentWorkerLease, cancellationToken, coordinationService, workerLeaseService).run();
+            startAdditionalWorkers(executionPlan, nodeExecutor, executor, statistics);
+            new ExecutorWorker(executionPlan, nodeExecutor, currentWorkerLease, cancellationToken, coordinationService, workerLeaseService, statistics).run();
             awaitCompletion(executionPlan, failures);
         } finally {
             executor.stop();
@@ -74,11 +79,74 @@ public class DefaultPlanExecutor implements PlanExecutor {
         });
     }
 
-    private void startAdditionalWorkers(ExecutionPlan executionPlan, Action<? super Node> nodeExecutor, Executor executor) {
+    private void startAdditionalWorkers(ExecutionPlan executionPlan, Action<? super Node> nodeExecutor, Executor executor, ExecutionStatistics statistics) {
         LOGGER.debug("Using {} parallel executor threads", executorCount);
 
         for (int i = 1; i < executorCount; i++) {
-            executor.execute(new ExecutorWorker(executionPlan, nodeExecutor, null, cancellationToken, coordinationService, workerLeaseService));
+            executor.execute(new ExecutorWorker(executionPlan, nodeExecutor, null, cancellationToken, coordinationService, workerLeaseService, statistics));
+        }
+    }
+
+    /**
+     * Collects the busy and idle time of the workers of a plan and the duration of each node, and
+     * reports them together with the critical path once the last worker has finished. The
+     * critical path is the longest chain of executed nodes that depend on each other, it is the
+     * shortest time the plan could have taken with an unlimited number of workers.
+     */
+    private static class ExecutionStatistics {
+        private final String displayName;
+        private final int workerCount;
+        private final AtomicInteger activeWorkers;
+        private final AtomicLong busy = new AtomicLong();
+        private final AtomicLong idle = new AtomicLong();
+        private final Timer wallTimer = Time.startTimer();
+        private final Map<Node, Long> nodeDurations = new ConcurrentHashMap<>();
+
+        private ExecutionStatistics(String displayName, int workerCount) {
+            this.displayName = displayName;
+            this.workerCount = workerCount;
+            this.activeWorkers = new AtomicInteger(workerCount);
+        }
+
+        void nodeExecuted(Node node, long durationMillis) {
+            nodeDurations.put(node, durationMillis);
+        }
+
+        void workerFinished(long busyMillis, long totalMillis) {
+            busy.addAndGet(busyMillis);
+            idle.addAndGet(totalMillis - busyMillis);
+            if (activeWorkers.decrementAndGet() == 0 && LOGGER.isInfoEnabled()) {
+                LOGGER.info("Executed '{}' with {} workers in {}, critical path: {}, busy: {}, idle: {}",
+                        displayName,
+                        workerCount,
+                        TimeFormatting.formatDurationVerbose(wallTimer.getElapsedMillis()),
+                        TimeFormatting.formatDurationVerbose(getCriticalPath()),
+                        TimeFormatting.formatDurationVerbose(busy.get()),
+                        TimeFormatting.formatDurationVerbose(idle.get()));
+            }
+        }
+
+        private long getCriticalPath() {
+            Map<Node, Long> paths = new IdentityHashMap<>();
+            long criticalPath = 0;
+            for (Node node : nodeDurations.keySet()) {
+                criticalPath = Math.max(criticalPath, pathTo(node, paths));
+            }
+            return criticalPath;
+        }
+
+        private long pathTo(Node node, Map<Node, Long> paths) {
+            Long path = paths.get(node);
+            if (path != null) {
+                return path;
+            }
+            long longestDependency = 0;
+            for (Node dependency : node.getDependencySuccessors()) {
+                longestDependency = Math.max(longestDependency, pathTo(dependency, paths));
+            }
+            long result = nodeDurations.getOrDefault(node, 0L) + longestDependency;
+            paths.put(node, result);
+            return result;
         }
     }
 
@@ -89,6 +157,7 @@ public class DefaultPlanExecutor implements PlanExecutor {
         private final BuildCancellationToken cancellationToken;
         private final ResourceLockCoordinationService coordinationService;
         private final WorkerLeaseService workerLeaseService;
+        private final ExecutionStatistics statistics;
 
         private ExecutorWorker(
                 ExecutionPlan executionPlan,
@@ -96,7 +165,8 @@ public class DefaultPlanExecutor implements PlanExecutor {
                 @Nullable WorkerLease workerLease,
                 BuildCancellationToken cancellationToken,
                 ResourceLockCoordinationService coordinationService,
-                WorkerLeaseService workerLeaseService
+                WorkerLeaseService workerLeaseService,
+                ExecutionStatistics statistics
         ) {
             this.executionPlan = executionPlan;
             this.nodeExecutor = nodeExecutor;
@@ -104,6 +174,7 @@ public class DefaultPlanExecutor implements PlanExecutor {
             this.cancellationToken = cancellationToken;
             this.coordinationService = coordinationService;
             this.workerLeaseService = workerLeaseService;
+            this.statistics = statistics;
         }
 
         @Override
@@ -127,6 +198,7 @@ public class DefaultPlanExecutor implements PlanExecutor {
                     nodeExecutor.execute(work);
                     long duration = executionTimer.getElapsedMillis();
                     busy.addAndGet(duration);
+                    statistics.nodeExecuted(work, duration);
                     if (LOGGER.isInfoEnabled()) {
                         LOGGER.info("{} ({}) completed. Took {}.", work, Thread.currentThread(), TimeFormatting.formatDurationVerbose(duration));
                     }
@@ -152,6 +224,7 @@ public class DefaultPlanExecutor implements PlanExecutor {
             });
 
             long total = totalTimer.getElapsedMillis();
+            statistics.workerFinished(busy.get(), total);
 
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Execution worker [{}] finished, busy: {}, idle: {}", Thread.currentThread(), TimeFormatting.formatDurationVerbose(busy.get()), TimeFormatting.formatDurationVerbose(total - busy.get()));
@@ -2,6 +2,8 @@ package com.tyron.builder.execution.plan;
 import com.tyron.builder.internal.service.scopes.Scopes;
 import com.tyron.builder.internal.service.scopes.ServiceScope;
 
+import javax.annotation.Nullable;
+
 @ServiceScope(Scopes.Build.class)
 public class ExecutionPlanFactory {
     private final String displayName;
@@ -10,6 +12,8 @@ public class ExecutionPlanFactory {
     private final NodeValidator nodeValidator;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
+    @Nullable
+    private final TaskDurationHistory durationHistory;
 
     public ExecutionPlanFactory(
             String displayName,
@@ -17,7 +21,8 @@ public class ExecutionPlanFactory {
             TaskDependencyResolver dependencyResolver,
             NodeValidator nodeValidator,
             ExecutionNodeAccessHierarchy outputHierarchy,
-            ExecutionNodeAccessHierarchy destroyableHierarchy
+            ExecutionNodeAccessHierarchy destroyableHierarchy,
+            @Nullable TaskDurationHistory durationHistory
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -25,9 +30,10 @@ public class ExecutionPlanFactory {
         this.nodeValidator = nodeValidator;
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
+        this.durationHistory = durationHistory;
     }
 
     public ExecutionPlan createPlan() {
-        return new DefaultExecutionPlan(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy);
+        return new DefaultExecutionPlan(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy, durationHistory);
     }
 }
@@ -0,0 +1,128 @@
+package com.tyron.builder.execution.plan;
+
+import com.tyron.builder.StartParameter;
+import com.tyron.builder.api.internal.tasks.TaskExecutionOutcome;
+import com.tyron.builder.api.internal.tasks.TaskStateInternal;
+import com.tyron.builder.cache.FileLockManager;
+import com.tyron.builder.cache.PersistentCache;
+import com.tyron.builder.cache.PersistentIndexedCache;
+import com.tyron.builder.cache.PersistentIndexedCacheParameters;
+import com.tyron.builder.cache.internal.InMemoryCacheDecoratorFactory;
+import com.tyron.builder.cache.scopes.BuildScopedCache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import static com.tyron.builder.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Remembers how long the tasks of a build took to execute in previous builds, so that the
+ * execution plan can start the tasks on the longest remaining chain of work first.
+ *
+ * <p>The underlying cache is only opened once it is first used. Durations recorded while the
+ * plan is executing are kept in memory and written to the cache when the build finishes, so
+ * that the execution plan does not access the cache while holding its lock.
+ */
+public class TaskDurationHistory implements Closeable {
+
+    /**
+     * Enables critical path first scheduling of the execution plan.
+     */
+    public static final String CRITICAL_PATH_FIRST_PROPERTY = "org.gradle.execution.critical-path-first";
+
+    private final BuildScopedCache buildScopedCache;
+    private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
+    private PersistentCache cacheAccess;
+    private PersistentIndexedCache<String, Long> durations;
+    // guarded by this
+    private final Map<String, Long> pendingDurations = new LinkedHashMap<>();
+
+    public TaskDurationHistory(BuildScopedCache buildScopedCache, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        this.buildScopedCache = buildScopedCache;
+        this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
+    }
+
+    public static boolean isCriticalPathFirst(StartParameter startParameter) {
+        String value = startParameter.getSystemPropertiesArgs().getOrDefault(CRITICAL_PATH_FIRST_PROPERTY, System.getProperty(CRITICAL_PATH_FIRST_PROPERTY));
+        return value != null && !"false".equalsIgnoreCase(value);
+    }
+
+    /**
+     * @return the expected duration of the given node in milliseconds, or {@code null} when the
+     * node is not a task or has not been executed before
+     */
+    @Nullable
+    public Long getDuration(Node node) {
+        String key = keyOf(node);
+        return key == null ? null : getDurations().getIfPresent(key);
+    }
+
+    /**
+     * Records the duration of an execution of the given node. Only tasks that executed their
+     * actions are recorded, an up-to-date, from cache or skipped task says nothing about how
+     * long it takes when it does run.
+     */
+    public void recordDuration(Node node, long durationMillis) {
+        String key = keyOf(node);
+        if (key == null) {
+            return;
+        }
+        TaskStateInternal state = ((LocalTaskNode) node).getTask().getState();
+        if (state.getOutcome() != TaskExecutionOutcome.EXECUTED || state.getFailure() != null) {
+            return;
+        }
+        synchronized (this) {
+            pendingDurations.put(key, durationMillis);
+        }
+    }
+
+    /**
+     * Writes the recorded durations to the cache. The previous duration is averaged in, so a
+     * single unusually fast or slow execution does not change the expected duration much.
+     */
+    private synchronized void flush() {
+        if (pendingDurations.isEmpty()) {
+            return;
+        }
+        PersistentIndexedCache<String, Long> durations = getDurations();
+        for (Map.Entry<String, Long> entry : pendingDurations.entrySet()) {
+            Long previous = durations.getIfPresent(entry.getKey());
+            long duration = entry.getValue();
+            durations.put(entry.getKey(), previous == null ? duration : (previous + duration) / 2);
+        }
+        pendingDurations.clear();
+    }
+
+    private synchronized PersistentIndexedCache<String, Long> getDurations() {
+        if (durations == null) {
+            cacheAccess = buildScopedCache
+                    .cache("taskDurations")
+                    .withDisplayName("Task duration history")
+                    .withLockOptions(mode(FileLockManager.LockMode.OnDemand))
+                    .open();
+            durations = cacheAccess.createCache(PersistentIndexedCacheParameters.of("taskDurations", String.class, Long.class)
+                    .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(10000, true)));
+        }
+        return durations;
+    }
+
+    @Nullable
+    private static String keyOf(Node node) {
+        if (node instanceof LocalTaskNode) {
+            return ((LocalTaskNode) node).getTask().getIdentityPath().toString();
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        if (cacheAccess != null) {
+            cacheAccess.close();
+        }
+    }
+}
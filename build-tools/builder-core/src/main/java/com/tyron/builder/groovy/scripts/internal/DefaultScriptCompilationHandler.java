@@ -277,6 +277,8 @@ public class DefaultScriptCompilationHandler implements ScriptCompilationHandler
 
 
     private static class ClassesDirCompiledScript<T extends Script, M> implements CompiledScript<T, M> {
+        private static final Logger LOGGER = LoggerFactory.getLogger(ClassesDirCompiledScript.class);
+
         private final boolean isEmpty;
         private final boolean hasMethods;
         private final Class<T> scriptBaseClass;
@@ -329,6 +331,7 @@ public class DefaultScriptCompilationHandler implements ScriptCompilationHandler
                 if (isEmpty && !hasMethods) {
                     throw new UnsupportedOperationException("Cannot load script that does nothing.");
                 }
+                Timer clock = Time.startTimer();
                 try {
                     scope = prepareClassLoaderScope();
                     ClassLoader loader = scope.getLocalClassLoader();
@@ -339,6 +342,8 @@ public class DefaultScriptCompilationHandler implements ScriptCompilationHandler
                     }
                     throw new BuildException(String.format("Could not load compiled classes for %s from cache.", source.getDisplayName()), e);
                 }
+                // on Android this includes dexing the script classes, or finding them in the dex cache
+                LOGGER.info("Timing: Loading script classes of {} took: {}", source.getDisplayName(), clock.getElapsed());
             }
             return scriptClass;
         }
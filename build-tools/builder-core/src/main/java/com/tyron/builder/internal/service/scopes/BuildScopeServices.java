@@ -55,6 +55,7 @@ import com.tyron.builder.api.model.ObjectFactory;
 import com.tyron.builder.api.provider.ProviderFactory;
 import com.tyron.builder.cache.CacheRepository;
 import com.tyron.builder.cache.internal.BuildScopeCacheDir;
+import com.tyron.builder.cache.internal.InMemoryCacheDecoratorFactory;
 import com.tyron.builder.cache.internal.scopes.DefaultBuildScopedCache;
 import com.tyron.builder.cache.scopes.BuildScopedCache;
 import com.tyron.builder.cache.scopes.GlobalScopedCache;
@@ -81,6 +82,7 @@ import com.tyron.builder.execution.plan.ExecutionNodeAccessHierarchies;
 import com.tyron.builder.execution.plan.ExecutionPlanFactory;
 import com.tyron.builder.execution.plan.TaskDependencyResolver;
 import com.tyron.builder.execution.plan.TaskNodeDependencyResolver;
+import com.tyron.builder.execution.plan.TaskDurationHistory;
 import com.tyron.builder.execution.plan.TaskNodeFactory;
 import com.tyron.builder.groovy.scripts.DefaultScriptCompilerFactory;
 import com.tyron.builder.groovy.scripts.ScriptCompilerFactory;
@@ -556,7 +558,9 @@ public class BuildScopeServices extends DefaultServiceRegistry {
             GradleInternal gradleInternal,
             TaskNodeFactory taskNodeFactory,
             TaskDependencyResolver dependencyResolver,
-            ExecutionNodeAccessHierarchies executionNodeAccessHierarchies
+            ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
+            StartParameter startParameter,
+            TaskDurationHistory taskDurationHistory
     ) {
         return new ExecutionPlanFactory(
                 gradleInternal.getIdentityPath().toString(),
@@ -564,10 +568,15 @@ public class BuildScopeServices extends DefaultServiceRegistry {
                 dependencyResolver,
                 new DefaultNodeValidator(),
                 executionNodeAccessHierarchies.getOutputHierarchy(),
-                executionNodeAccessHierarchies.getDestroyableHierarchy()
+                executionNodeAccessHierarchies.getDestroyableHierarchy(),
+                TaskDurationHistory.isCriticalPathFirst(startParameter) ? taskDurationHistory : null
         );
     }
 
+    TaskDurationHistory createTaskDurationHistory(BuildScopedCache buildScopedCache, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
+        return new TaskDurationHistory(buildScopedCache, inMemoryCacheDecoratorFactory);
+    }
+
     ExecutionNodeAccessHierarchies createExecutionNodeAccessHierarchies() {
         return new ExecutionNodeAccessHierarchies(CaseSensitivity.CASE_INSENSITIVE, FileSystems.getDefault());
     }
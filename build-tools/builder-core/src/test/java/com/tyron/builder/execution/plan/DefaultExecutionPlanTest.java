@@ -0,0 +1,249 @@
+package com.tyron.builder.execution.plan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.builder.api.Action;
+import com.tyron.builder.api.Task;
+import com.tyron.builder.api.internal.TaskInternal;
+import com.tyron.builder.api.internal.project.ProjectInternal;
+import com.tyron.builder.internal.resources.ResourceLock;
+import com.tyron.builder.internal.resources.ResourceLockState;
+import com.tyron.builder.internal.snapshot.CaseSensitivity;
+import com.tyron.builder.internal.work.WorkerLeaseRegistry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DefaultExecutionPlanTest {
+
+    private final Map<Node, Long> durations = new HashMap<>();
+
+    @Test
+    public void testSelectsReadyNodesInQueueOrderWithoutHistory() {
+        TestNode first = node("first");
+        TestNode second = node("second");
+        TestNode third = node("third");
+        third.addDependencySuccessor(first);
+
+        DefaultExecutionPlan plan = newPlan(null, first, second, third);
+
+        assertEquals(ImmutableList.of(first, second, third), plan.getScheduledNodes());
+        assertEquals(first, selectNext(plan));
+        assertEquals(second, selectNext(plan));
+        assertNull(selectNext(plan));
+        plan.finishedExecuting(first);
+        assertEquals(third, selectNext(plan));
+    }
+
+    @Test
+    public void testSelectsReadyNodeWithLongestChainFirst() {
+        TestNode shortTask = node("short");
+        TestNode longTask = node("long");
+        TestNode dependent = node("dependent");
+        dependent.addDependencySuccessor(longTask);
+        durations.put(shortTask, 50L);
+        durations.put(longTask, 10L);
+        durations.put(dependent, 100L);
+
+        DefaultExecutionPlan plan = newPlan(new TestDurationHistory(), shortTask, longTask, dependent);
+
+        // the queue keeps its order, only the choice between ready nodes changes
+        assertEquals(ImmutableList.of(shortTask, longTask, dependent), plan.getScheduledNodes());
+        assertEquals(longTask, selectNext(plan));
+        assertEquals(shortTask, selectNext(plan));
+        assertNull(selectNext(plan));
+        plan.finishedExecuting(longTask);
+        assertEquals(dependent, selectNext(plan));
+    }
+
+    @Test
+    public void testKeepsShouldRunAfterOrderingWhenLaterNodeHasLongerChain() {
+        TestNode compile = node("compile");
+        TestNode lint = node("lint");
+        TestNode assemble = node("assemble");
+        TestNode docs = node("docs");
+        lint.addShouldSuccessor(compile);
+        assemble.addDependencySuccessor(lint);
+        durations.put(compile, 1L);
+        durations.put(lint, 1L);
+        durations.put(assemble, 100L);
+        durations.put(docs, 50L);
+
+        DefaultExecutionPlan plan = newPlan(new TestDurationHistory(), docs, lint, assemble, compile);
+
+        assertEquals(ImmutableList.of(docs, compile, lint, assemble), plan.getScheduledNodes());
+        // lint holds up the longest chain, but should run after compile
+        assertEquals(compile, selectNext(plan));
+        assertEquals(lint, selectNext(plan));
+        assertEquals(docs, selectNext(plan));
+        assertNull(selectNext(plan));
+        plan.finishedExecuting(compile);
+        plan.finishedExecuting(lint);
+        assertEquals(assemble, selectNext(plan));
+    }
+
+    private DefaultExecutionPlan newPlan(TaskDurationHistory history, TestNode... nodes) {
+        ExecutionNodeAccessHierarchy outputHierarchy = new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, null);
+        ExecutionNodeAccessHierarchy destroyableHierarchy = new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, null);
+        DefaultExecutionPlan plan = new DefaultExecutionPlan("test", null,
+                new TaskDependencyResolver(Collections.emptyList()), node -> false,
+                outputHierarchy, destroyableHierarchy, history);
+        List<Node> entryNodes = new ArrayList<>();
+        for (TestNode node : nodes) {
+            node.require();
+            node.dependenciesProcessed();
+            entryNodes.add(node);
+        }
+        plan.addNodes(entryNodes);
+        plan.determineExecutionPlan();
+        return plan;
+    }
+
+    private static Node selectNext(DefaultExecutionPlan plan) {
+        return plan.selectNext(new TestWorkerLease(), new TestResourceLockState());
+    }
+
+    private static TestNode node(String name) {
+        return new TestNode(name);
+    }
+
+    private class TestDurationHistory extends TaskDurationHistory {
+        TestDurationHistory() {
+            super(null, null);
+        }
+
+        @Override
+        public Long getDuration(Node node) {
+            return durations.get(node);
+        }
+
+        @Override
+        public void recordDuration(Node node, long durationMillis) {
+        }
+    }
+
+    private static class TestNode extends TaskNode {
+        private final String name;
+
+        TestNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void rethrowNodeFailure() {
+        }
+
+        @Override
+        public void prepareForExecution() {
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver, Action<Node> processHardSuccessor) {
+        }
+
+        @Override
+        public void resolveMutations() {
+        }
+
+        @Override
+        public boolean isPublicNode() {
+            return true;
+        }
+
+        @Override
+        public boolean requiresMonitoring() {
+            return false;
+        }
+
+        @Override
+        public ResourceLock getProjectToLock() {
+            return null;
+        }
+
+        @Override
+        public ProjectInternal getOwningProject() {
+            return null;
+        }
+
+        @Override
+        public List<? extends ResourceLock> getResourcesToLock() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void appendPostAction(Action<? super Task> action) {
+        }
+
+        @Override
+        public Action<? super Task> getPostAction() {
+            return null;
+        }
+
+        @Override
+        public TaskInternal getTask() {
+            return null;
+        }
+
+        @Override
+        public int compareTo(Node other) {
+            return name.compareTo(((TestNode) other).name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static class TestWorkerLease implements WorkerLeaseRegistry.WorkerLease {
+        @Override
+        public boolean isLocked() {
+            return true;
+        }
+
+        @Override
+        public boolean isLockedByCurrentThread() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "worker lease";
+        }
+    }
+
+    private static class TestResourceLockState implements ResourceLockState {
+        @Override
+        public void registerLocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void registerUnlocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void releaseLocks() {
+        }
+    }
+}
@@ -26,6 +26,10 @@ public class DefaultCachingStateFactory implements CachingStateFactory {
     public final CachingState createCachingState(BeforeExecutionState beforeExecutionState, ImmutableList<CachingDisabledReason> cachingDisabledReasons) {
         Hasher cacheKeyHasher = Hashing.md5().newHasher();
 
+        // the fingerprints below are created with the configured hash strategy, entries stored
+        // under another strategy must never be found with the same key
+        cacheKeyHasher.putString(Hashes.getStrategy().getId(), StandardCharsets.UTF_8);
+
         logger.warn("Appending implementation to build cache key: " +
                        beforeExecutionState.getImplementation());
         beforeExecutionState.getImplementation().appendToHasher(cacheKeyHasher);
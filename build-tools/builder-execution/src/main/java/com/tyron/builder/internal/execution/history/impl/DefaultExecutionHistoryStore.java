@@ -35,7 +35,8 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
                 inMemoryCacheDecoratorFactory.decorator(10000, false);
         this.store = cache.get().createCache(
                 PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
-                        .withCacheDecorator(inMemoryCacheDecorator));
+                        .withCacheDecorator(inMemoryCacheDecorator)
+                        .withMemoryMappedStore());
     }
 
     @Override
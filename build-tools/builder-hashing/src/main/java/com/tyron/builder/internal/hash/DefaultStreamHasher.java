@@ -1,7 +1,6 @@
 package com.tyron.builder.internal.hash;
 
 import com.google.common.hash.HashCode;
-import com.google.common.hash.Hashing;
 import com.google.common.io.ByteStreams;
 
 import java.io.IOException;
@@ -14,6 +13,9 @@ import java.util.concurrent.ArrayBlockingQueue;
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashes.signature(DefaultStreamHasher.class);
 
+    // larger reads mean fewer calls into the file system for the large jars on the classpath
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
 
     @Override
@@ -21,7 +23,7 @@ public class DefaultStreamHasher implements StreamHasher {
         try {
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
+            throw new UncheckedIOException("Failed to create hash for file content.", e);
         }
     }
 
@@ -57,7 +59,7 @@ public class DefaultStreamHasher implements StreamHasher {
     private byte[] takeBuffer() {
         byte[] buffer = buffers.poll();
         if (buffer == null) {
-            buffer = new byte[8192];
+            buffer = new byte[BUFFER_SIZE];
         }
         return buffer;
     }
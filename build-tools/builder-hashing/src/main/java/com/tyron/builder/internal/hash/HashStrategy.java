@@ -0,0 +1,52 @@
+package com.tyron.builder.internal.hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * The hash functions that can be used by {@link Hashes} for snapshots, fingerprints and
+ * signatures. These hashes never leave the build, so they do not need to be cryptographic.
+ */
+public enum HashStrategy {
+    /**
+     * A fast non-cryptographic 128-bit hash, several times faster than MD5 on large inputs.
+     */
+    MURMUR3_128("murmur3-128", Hashing.murmur3_128()),
+
+    /**
+     * The hash function used before {@link #MURMUR3_128}.
+     */
+    MD5("md5", Hashing.md5());
+
+    private final String id;
+    private final HashFunction function;
+
+    HashStrategy(String id, HashFunction function) {
+        this.id = id;
+        this.function = function;
+    }
+
+    /**
+     * @return The identifier stored with persisted hashes, it changes whenever hashes created
+     * with this strategy can no longer be compared with hashes created with another one.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public HashFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * @return The strategy with the given identifier, or the default one if there is none
+     */
+    public static HashStrategy forId(String id) {
+        for (HashStrategy strategy : values()) {
+            if (strategy.id.equals(id)) {
+                return strategy;
+            }
+        }
+        return MURMUR3_128;
+    }
+}
@@ -9,6 +9,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
 
 public class Hashes {
     
@@ -16,7 +18,18 @@ public class Hashes {
 
     }
 
-    private static final HashFunction MD5 = Hashing.md5();
+    /**
+     * The system property that selects the {@link HashStrategy} by its id.
+     */
+    public static final String STRATEGY_PROPERTY = "com.tyron.builder.hash.strategy";
+
+    /**
+     * The key of the cache property that holds the id of the strategy.
+     */
+    private static final String STRATEGY_CACHE_PROPERTY = "hash.strategy";
+
+    private static final HashStrategy STRATEGY =
+            HashStrategy.forId(System.getProperty(STRATEGY_PROPERTY));
 
     private static final HashFunction SHA1 = Hashing.sha1();
 
@@ -25,7 +38,7 @@ public class Hashes {
     private static final HashFunction SHA512 = Hashing.sha512();
 
 
-    private static final HashFunction DEFAULT = MD5;
+    private static final HashFunction DEFAULT = STRATEGY.getFunction();
 
     public static HashCode signature(String signature) {
         Hasher hasher = DEFAULT.newHasher();
@@ -46,6 +59,19 @@ public class Hashes {
         return SHA1;
     }
 
+    public static HashStrategy getStrategy() {
+        return STRATEGY;
+    }
+
+    /**
+     * Returns the properties of a persistent cache that stores hashes created by this class,
+     * the cache is invalidated when they change so that hashes created with another
+     * strategy are never compared with the current ones.
+     */
+    public static Map<String, String> getCacheProperties() {
+        return Collections.singletonMap(STRATEGY_CACHE_PROPERTY, STRATEGY.getId());
+    }
+
     /**
      * Returns a new {@link PrimitiveHasher} based on the default hashing implementation.
      */
@@ -15,6 +15,7 @@ import com.tyron.builder.api.internal.cache.StringInterner;
 import com.tyron.builder.cache.internal.InMemoryCacheDecoratorFactory;
 import com.tyron.builder.cache.internal.MinimalPersistentCache;
 import com.tyron.builder.cache.scopes.GlobalScopedCache;
+import com.tyron.builder.internal.hash.Hashes;
 
 import java.io.Closeable;
 
@@ -27,6 +28,7 @@ public class UserHomeScopedCompileCaches implements GeneralCompileCaches, Closea
         cache = cacheRepository
                 .cache("javaCompile")
                 .withDisplayName("Java compile cache")
+                .withProperties(Hashes.getCacheProperties())
                 .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
                 .open();
         PersistentIndexedCacheParameters<HashCode, ClassSetAnalysisData> jarCacheParameters = PersistentIndexedCacheParameters.of(
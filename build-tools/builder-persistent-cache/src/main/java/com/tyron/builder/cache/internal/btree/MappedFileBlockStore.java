@@ -0,0 +1,534 @@
+package com.tyron.builder.cache.internal.btree;
+
+import com.tyron.builder.api.UncheckedIOException;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+/**
+ * A {@link BlockStore} which reads and writes blocks through a memory mapped region of the
+ * cache file instead of seeking a {@link RandomAccessFile}. Uses the same block format as
+ * {@link FileBackedBlockStore}, so a cache file can be opened by either store.
+ *
+ * <p>The mapped region starts at {@link #CHUNK_SIZE} bytes and doubles whenever a block does
+ * not fit, the file is truncated back to the size of the written blocks when the store is
+ * closed. Once the file no longer fits in a single mapping, blocks are read and written
+ * through the {@link RandomAccessFile} like {@link FileBackedBlockStore} does.
+ *
+ * <p>The store is closed whenever the cache lock is released, so only the regions written
+ * since the store was opened are forced to disk, and nothing is forced when no block was
+ * written.
+ */
+public class MappedFileBlockStore implements BlockStore {
+    static final int CHUNK_SIZE = 1024 * 1024;
+    static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+    static final int DIRTY_REGION_SIZE = 64 * 1024;
+
+    private final File cacheFile;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean readOnly;
+    private MappedByteBuffer buffer;
+    private final BufferOutputStream output = new BufferOutputStream();
+    private final BufferInputStream input = new BufferInputStream();
+    private ByteOutput fileOutput;
+    private ByteInput fileInput;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+    /**
+     * The regions of {@link #DIRTY_REGION_SIZE} bytes written through the mapping that have not
+     * been forced to disk yet.
+     */
+    private final BitSet dirtyRegions = new BitSet();
+
+    public MappedFileBlockStore(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            file = openRandomAccessFile();
+            channel = file.getChannel();
+            fileOutput = null;
+            fileInput = null;
+            currentFileSize = findEndOfBlocks(file.length());
+            nextBlock = currentFileSize;
+            map(currentFileSize);
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RandomAccessFile openRandomAccessFile() throws IOException {
+        try {
+            readOnly = false;
+            return new RandomAccessFile(cacheFile, "rw");
+        } catch (IOException e) {
+            readOnly = true;
+            return new RandomAccessFile(cacheFile, "r");
+        }
+    }
+
+    /**
+     * Returns the end of the last block in the file. The mapping pads the file with zeros, which
+     * is normally truncated on close but is left behind when the process dies or the platform
+     * refuses to shrink a mapped file. No block type is zero, so the blocks are walked from the
+     * start of the file until the padding is reached. This only happens when the file ends with
+     * a zero byte, a file that was closed cleanly ends with a non zero byte most of the time.
+     */
+    private long findEndOfBlocks(long length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        file.seek(length - 1);
+        if (file.readByte() != 0) {
+            return length;
+        }
+        long pos = 0;
+        while (pos + BlockImpl.HEADER_SIZE + BlockImpl.TAIL_SIZE <= length) {
+            file.seek(pos);
+            if (file.readByte() == 0) {
+                break;
+            }
+            int payloadSize = file.readInt();
+            long end = pos + BlockImpl.HEADER_SIZE + BlockImpl.TAIL_SIZE + payloadSize;
+            if (payloadSize < 0 || end > length) {
+                break;
+            }
+            pos = end;
+        }
+        return pos;
+    }
+
+    /**
+     * Maps the file so that at least the given number of bytes can be accessed, doubling the
+     * current mapping until it does. Falls back to unmapped access when that is not possible.
+     */
+    private void map(long size) throws IOException {
+        if (readOnly) {
+            if (size > MAX_MAPPED_SIZE) {
+                unmap();
+            } else {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return;
+        }
+        long capacity = buffer == null ? CHUNK_SIZE : Math.max(CHUNK_SIZE, buffer.capacity());
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        if (capacity > MAX_MAPPED_SIZE) {
+            if (size > MAX_MAPPED_SIZE) {
+                unmap();
+                return;
+            }
+            capacity = MAX_MAPPED_SIZE;
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Switches to reading and writing through the {@link RandomAccessFile}.
+     */
+    private void unmap() throws IOException {
+        forceDirtyRegions();
+        buffer = null;
+        fileOutput = new ByteOutput(file);
+        fileInput = new ByteInput(file);
+        if (!readOnly) {
+            try {
+                file.setLength(currentFileSize);
+            } catch (IOException e) {
+                // see close(), reads never go past currentFileSize
+            }
+        }
+    }
+
+    private void ensureCapacity(long size) throws IOException {
+        if (buffer != null && size > buffer.capacity()) {
+            map(size);
+        }
+    }
+
+    /**
+     * Forces the regions written through the mapping to disk. Mapped buffers can only be forced
+     * as a whole before Java 13, so each run of dirty regions is mapped on its own and forced,
+     * which writes back the pages of the file that the main mapping has changed.
+     */
+    private void forceDirtyRegions() throws IOException {
+        if (buffer == null || readOnly) {
+            dirtyRegions.clear();
+            return;
+        }
+        int start = dirtyRegions.nextSetBit(0);
+        while (start >= 0) {
+            int end = dirtyRegions.nextClearBit(start);
+            long offset = (long) start * DIRTY_REGION_SIZE;
+            long length = Math.min((long) end * DIRTY_REGION_SIZE, buffer.capacity()) - offset;
+            if (length > 0) {
+                channel.map(FileChannel.MapMode.READ_WRITE, offset, length).force();
+            }
+            start = dirtyRegions.nextSetBit(end);
+        }
+        dirtyRegions.clear();
+    }
+
+    private void markDirty(long start, long end) {
+        dirtyRegions.set((int) (start / DIRTY_REGION_SIZE), (int) ((end - 1) / DIRTY_REGION_SIZE) + 1);
+    }
+
+    @Override
+    public void close() {
+        try {
+            forceDirtyRegions();
+            buffer = null;
+            if (!readOnly) {
+                try {
+                    file.setLength(currentFileSize);
+                } catch (IOException e) {
+                    // the file cannot be shrunk while mapped on some platforms, the padding is
+                    // found by findEndOfBlocks() and reused when the store is reopened
+                }
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            file.setLength(0);
+            currentFileSize = 0;
+            dirtyRegions.clear();
+            buffer = null;
+            fileOutput = null;
+            fileInput = null;
+            map(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            if (readOnly) {
+                throw new IOException("Cannot write to read-only " + MappedFileBlockStore.this + ".");
+            }
+            long pos = getPos().getPos();
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+            ensureCapacity(finalSize);
+
+            boolean mapped = buffer != null;
+            DataOutputStream outputStream = mapped ? output.start(pos) : fileOutput.start(pos);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            long bytesWritten = mapped ? output.getBytesWritten() : fileOutput.getBytesWritten();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+            if (mapped) {
+                output.done();
+                markDirty(pos, finalSize);
+            } else {
+                fileOutput.done();
+            }
+
+            if (currentFileSize < finalSize) {
+                if (!mapped) {
+                    file.setLength(finalSize);
+                }
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            boolean mapped = buffer != null;
+            DataInputStream inputStream = mapped ? input.start(pos) : fileInput.start(pos);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify count
+            long actualCount = mapped ? input.getBytesRead() : fileInput.getBytesRead();
+            long count = inputStream.readInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+            if (mapped) {
+                input.done();
+            } else {
+                fileInput.done();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    /**
+     * Writes directly into the mapped buffer, counting the bytes written since {@link #start(long)}.
+     * The buffer is large enough for the whole block before writing starts.
+     */
+    private final class BufferOutputStream extends OutputStream {
+        private ByteBuffer view;
+        private int start;
+
+        DataOutputStream start(long offset) {
+            view = buffer.duplicate();
+            view.clear();
+            view.position((int) offset);
+            start = (int) offset;
+            return new DataOutputStream(this);
+        }
+
+        long getBytesWritten() {
+            return view.position() - start;
+        }
+
+        void done() {
+            view = null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            try {
+                view.put((byte) b);
+            } catch (RuntimeException e) {
+                throw new IOException("Block exceeds its allocated size in " + MappedFileBlockStore.this + ".", e);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            try {
+                view.put(bytes, offset, length);
+            } catch (RuntimeException e) {
+                throw new IOException("Block exceeds its allocated size in " + MappedFileBlockStore.this + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Reads directly from the mapped buffer, counting the bytes read since {@link #start(long)}.
+     */
+    private final class BufferInputStream extends InputStream {
+        private ByteBuffer view;
+        private int start;
+
+        DataInputStream start(long offset) {
+            view = buffer.duplicate();
+            view.clear();
+            view.limit((int) Math.min(currentFileSize, view.capacity()));
+            view.position((int) offset);
+            start = (int) offset;
+            return new DataInputStream(this);
+        }
+
+        long getBytesRead() {
+            return view.position() - start;
+        }
+
+        void done() {
+            view = null;
+        }
+
+        @Override
+        public int read() {
+            if (!view.hasRemaining()) {
+                return -1;
+            }
+            return view.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int count = Math.min(length, view.remaining());
+            if (count == 0) {
+                return -1;
+            }
+            try {
+                view.get(bytes, offset, count);
+            } catch (BufferUnderflowException e) {
+                return -1;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, view.remaining()));
+            view.position(view.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return view.remaining();
+        }
+    }
+}
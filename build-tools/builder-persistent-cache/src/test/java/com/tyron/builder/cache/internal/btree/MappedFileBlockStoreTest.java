@@ -0,0 +1,271 @@
+package com.tyron.builder.cache.internal.btree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.internal.serialize.BaseSerializerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MappedFileBlockStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger initCount = new AtomicInteger();
+    private File cacheFile;
+    private BlockStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheFile = new File(folder.getRoot(), "cache.bin");
+    }
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    public void testWritesAndReadsBlocks() {
+        store = open(new MappedFileBlockStore(cacheFile));
+        assertEquals(1, initCount.get());
+
+        List<BlockPointer> positions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            positions.add(write(store, "value " + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value " + i, read(store, positions.get(i)));
+        }
+        // blocks are allocated one after the other
+        assertEquals(0, positions.get(0).getPos());
+        assertTrue(positions.get(1).getPos() > positions.get(0).getPos());
+    }
+
+    @Test
+    public void testGrowsTheMappingAndTruncatesOnClose() {
+        store = open(new MappedFileBlockStore(cacheFile));
+
+        String large = repeat('x', MappedFileBlockStore.CHUNK_SIZE / 2);
+        List<BlockPointer> positions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            positions.add(write(store, large + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(large + i, read(store, positions.get(i)));
+        }
+        BlockPointer last = positions.get(positions.size() - 1);
+        long end = last.getPos() + blockSize(large + 4);
+
+        store.close();
+        store = null;
+        assertEquals(end, cacheFile.length());
+    }
+
+    @Test
+    public void testReopensAfterClose() {
+        store = open(new MappedFileBlockStore(cacheFile));
+        List<BlockPointer> positions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            positions.add(write(store, "value " + i));
+        }
+        store.close();
+        long length = cacheFile.length();
+
+        store = open(new MappedFileBlockStore(cacheFile));
+        assertEquals(1, initCount.get());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value " + i, read(store, positions.get(i)));
+        }
+        // new blocks go after the existing ones
+        assertEquals(length, write(store, "new value").getPos());
+    }
+
+    @Test
+    public void testIgnoresPaddingLeftBehindByTheMapping() throws IOException {
+        store = open(new MappedFileBlockStore(cacheFile));
+        BlockPointer first = write(store, "first");
+        store.close();
+        long length = cacheFile.length();
+
+        // as left behind when the process dies before the store is closed
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(length + MappedFileBlockStore.CHUNK_SIZE);
+        }
+
+        store = open(new MappedFileBlockStore(cacheFile));
+        assertEquals("first", read(store, first));
+        assertEquals(length, write(store, "second").getPos());
+    }
+
+    @Test
+    public void testReadsBlocksWrittenByFileBackedStore() {
+        store = open(new FileBackedBlockStore(cacheFile));
+        List<BlockPointer> positions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            positions.add(write(store, "value " + i));
+        }
+        store.close();
+
+        store = open(new MappedFileBlockStore(cacheFile));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value " + i, read(store, positions.get(i)));
+        }
+        store.close();
+
+        store = open(new FileBackedBlockStore(cacheFile));
+        assertEquals("value 0", read(store, positions.get(0)));
+    }
+
+    @Test
+    public void testReusesFreedBlocks() {
+        store = open(newFreeListStore());
+
+        TestPayload removed = new TestPayload("removed");
+        store.write(removed);
+        BlockPointer freedPos = removed.getPos();
+        write(store, "kept");
+        store.remove(removed);
+        store.flush();
+
+        TestPayload reused = new TestPayload("reused!");
+        store.write(reused);
+        assertEquals(freedPos, reused.getPos());
+        store.close();
+
+        store = open(newFreeListStore());
+        assertEquals("reused!", read(store, freedPos));
+    }
+
+    @Test
+    public void testIndexedCacheRoundTrip() {
+        BTreePersistentIndexedCache<String, Integer> cache = newCache();
+        for (int i = 0; i < 2000; i++) {
+            cache.put("key" + i, i);
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            cache.remove("key" + i);
+        }
+        cache.close();
+
+        cache = newCache();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                if (i % 2 == 0) {
+                    assertNull(cache.get("key" + i));
+                } else {
+                    assertEquals(Integer.valueOf(i), cache.get("key" + i));
+                }
+            }
+            // the freed blocks are reused, the file does not grow
+            long length = cacheFile.length();
+            for (int i = 0; i < 2000; i += 2) {
+                cache.put("key" + i, -i);
+            }
+            cache.close();
+            assertFalse(cacheFile.length() > length);
+
+            cache = newCache();
+            assertEquals(Integer.valueOf(-10), cache.get("key10"));
+            assertEquals(Integer.valueOf(11), cache.get("key11"));
+            cache.verify();
+        } finally {
+            cache.close();
+        }
+    }
+
+    private BlockStore newFreeListStore() {
+        // stacked the same way as in the indexed cache, which attaches the blocks it writes
+        BlockStore cachingStore = new CachingBlockStore(new MappedFileBlockStore(cacheFile),
+                Collections.singleton(FreeListBlockStore.FreeListBlock.class));
+        return new FreeListBlockStore(cachingStore, 4);
+    }
+
+    private BTreePersistentIndexedCache<String, Integer> newCache() {
+        return new BTreePersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER,
+                BaseSerializerFactory.INTEGER_SERIALIZER, (short) 16, 512, true);
+    }
+
+    private BlockStore open(BlockStore blockStore) {
+        blockStore.open(initCount::incrementAndGet, type -> new TestPayload());
+        return blockStore;
+    }
+
+    private static BlockPointer write(BlockStore store, String value) {
+        TestPayload payload = new TestPayload(value);
+        store.attach(payload);
+        store.write(payload);
+        return payload.getPos();
+    }
+
+    private static String read(BlockStore store, BlockPointer pos) {
+        return store.read(pos, TestPayload.class).value;
+    }
+
+    private static int blockSize(String value) {
+        // type, payload size, payload and byte count
+        return 1 + Block.INT_SIZE + new TestPayload(value).getSize() + Block.INT_SIZE;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static class TestPayload extends BlockPayload {
+        private String value;
+
+        TestPayload() {
+        }
+
+        TestPayload(String value) {
+            this.value = value;
+        }
+
+        @Override
+        protected int getSize() {
+            // only ascii values are used, written with a length prefix
+            return Block.INT_SIZE + value.length();
+        }
+
+        @Override
+        protected byte getType() {
+            return 0x55;
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            byte[] bytes = new byte[inputStream.readInt()];
+            inputStream.readFully(bytes);
+            value = new String(bytes, "US-ASCII");
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeInt(value.length());
+            outputStream.writeBytes(value);
+        }
+    }
+}
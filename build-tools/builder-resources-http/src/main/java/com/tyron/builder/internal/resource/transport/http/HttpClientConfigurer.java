@@ -63,6 +63,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -70,7 +71,8 @@ import javax.net.ssl.SSLContext;
 public class HttpClientConfigurer {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientConfigurer.class);
     private static final String HTTPS_PROTOCOLS = "https.protocols";
-    private static final int MAX_HTTP_CONNECTIONS = 20;
+    private static final int MAX_HTTP_CONNECTIONS = 64;
+    private static final long MAX_IDLE_CONNECTION_SECONDS = 30;
 
     /**
      * Determines the HTTPS protocols to support for the client.
@@ -137,7 +139,10 @@ public class HttpClientConfigurer {
         configureRedirectStrategy(builder);
         builder.setDefaultCredentialsProvider(credentialsProvider);
         builder.setMaxConnTotal(MAX_HTTP_CONNECTIONS);
-        builder.setMaxConnPerRoute(MAX_HTTP_CONNECTIONS);
+        builder.setMaxConnPerRoute(HttpTransferTracker.MAX_REQUESTS_PER_HOST);
+        // keep connections alive between resolutions, but don't hold on to ones the server dropped
+        builder.evictExpiredConnections();
+        builder.evictIdleConnections(MAX_IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS);
     }
 
     private void configureSslSocketConnectionFactory(HttpClientBuilder builder,
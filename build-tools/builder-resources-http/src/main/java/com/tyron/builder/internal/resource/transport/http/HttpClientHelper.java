@@ -40,6 +40,7 @@ public class HttpClientHelper implements Closeable {
     private CloseableHttpClient client;
     private final DocumentationRegistry documentationRegistry;
     private final HttpSettings settings;
+    private final HttpTransferTracker transferTracker;
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -55,8 +56,14 @@ public class HttpClientHelper implements Closeable {
      */
     @VisibleForTesting
     HttpClientHelper(DocumentationRegistry documentationRegistry, HttpSettings settings) {
+        this(documentationRegistry, settings, new HttpTransferTracker());
+    }
+
+    @VisibleForTesting
+    HttpClientHelper(DocumentationRegistry documentationRegistry, HttpSettings settings, HttpTransferTracker transferTracker) {
         this.documentationRegistry = documentationRegistry;
         this.settings = settings;
+        this.transferTracker = transferTracker;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -150,21 +157,26 @@ public class HttpClientHelper implements Closeable {
         httpContext.removeAttribute(REDIRECT_LOCATIONS);
         LOGGER.debug("Performing HTTP {}: {}", request.getMethod(), stripUserCredentials(request.getURI()));
 
+        HttpTransferTracker.Request trackedRequest = transferTracker.start(request.getURI());
         try {
             CloseableHttpResponse response = getClient().execute(request, httpContext);
-            return toHttpClientResponse(request, httpContext, response);
+            return toHttpClientResponse(request, httpContext, response, trackedRequest);
         } catch (IOException e) {
+            trackedRequest.finish();
             validateRedirectChain(httpContext);
             URI lastRedirectLocation = stripUserCredentials(getLastRedirectLocation(httpContext));
             throw (lastRedirectLocation == null) ? e : new FailureFromRedirectLocation(lastRedirectLocation, e);
+        } catch (RuntimeException e) {
+            trackedRequest.finish();
+            throw e;
         }
     }
 
-    private HttpClientResponse toHttpClientResponse(HttpRequestBase request, HttpContext httpContext, CloseableHttpResponse response) {
+    private HttpClientResponse toHttpClientResponse(HttpRequestBase request, HttpContext httpContext, CloseableHttpResponse response, HttpTransferTracker.Request trackedRequest) {
         validateRedirectChain(httpContext);
         URI lastRedirectLocation = getLastRedirectLocation(httpContext);
         URI effectiveUri = lastRedirectLocation == null ? request.getURI() : lastRedirectLocation;
-        return new HttpClientResponse(request.getMethod(), effectiveUri, response);
+        return new HttpClientResponse(request.getMethod(), effectiveUri, response, trackedRequest);
     }
 
     /**
@@ -263,7 +275,15 @@ public class HttpClientHelper implements Closeable {
          * For other uses of {@link HttpClientHelper}, inject an instance of {@link Factory} to create one.
          */
         static Factory createFactory(DocumentationRegistry documentationRegistry) {
-            return settings -> new HttpClientHelper(documentationRegistry, settings);
+            return createFactory(documentationRegistry, new HttpTransferTracker());
+        }
+
+        /**
+         * Creates clients which share the given tracker, so that the per host request limit
+         * applies to all repositories pointing to the same host.
+         */
+        static Factory createFactory(DocumentationRegistry documentationRegistry, HttpTransferTracker transferTracker) {
+            return settings -> new HttpClientHelper(documentationRegistry, settings, transferTracker);
         }
     }
 
@@ -11,17 +11,22 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 
+import javax.annotation.Nullable;
+
 public class HttpClientResponse implements Closeable {
 
     private final String method;
     private final URI effectiveUri;
     private final CloseableHttpResponse httpResponse;
+    @Nullable
+    private final HttpTransferTracker.Request trackedRequest;
     private boolean closed;
 
-    HttpClientResponse(String method, URI effectiveUri, CloseableHttpResponse httpResponse) {
+    HttpClientResponse(String method, URI effectiveUri, CloseableHttpResponse httpResponse, @Nullable HttpTransferTracker.Request trackedRequest) {
         this.method = method;
         this.effectiveUri = effectiveUri;
         this.httpResponse = httpResponse;
+        this.trackedRequest = trackedRequest;
     }
 
     public String getHeader(String name) {
@@ -34,7 +39,8 @@ public class HttpClientResponse implements Closeable {
         if (entity == null) {
             throw new IOException(String.format("Response %d: %s has no content!", getStatusLine().getStatusCode(), getStatusLine().getReasonPhrase()));
         }
-        return entity.getContent();
+        InputStream content = entity.getContent();
+        return trackedRequest == null ? content : trackedRequest.track(content);
     }
 
     public StatusLine getStatusLine() {
@@ -46,6 +52,9 @@ public class HttpClientResponse implements Closeable {
         if (!closed) {
             closed = true;
             HttpClientUtils.closeQuietly(httpResponse);
+            if (trackedRequest != null) {
+                trackedRequest.finish();
+            }
         }
     }
 
@@ -8,6 +8,7 @@ import com.tyron.builder.internal.authentication.AuthenticationSchemeRegistry;
 import com.tyron.builder.internal.authentication.DefaultBasicAuthentication;
 import com.tyron.builder.internal.authentication.DefaultDigestAuthentication;
 import com.tyron.builder.internal.authentication.DefaultHttpHeaderAuthentication;
+import com.tyron.builder.internal.logging.progress.ProgressLoggerFactory;
 import com.tyron.builder.internal.resource.connector.ResourceConnectorFactory;
 import com.tyron.builder.internal.service.ServiceRegistration;
 import com.tyron.builder.internal.service.scopes.AbstractPluginServiceRegistry;
@@ -28,8 +29,12 @@ public class HttpResourcesPluginServiceRegistry extends AbstractPluginServiceReg
             return new DefaultSslContextFactory();
         }
 
-        HttpClientHelper.Factory createHttpClientHelperFactory(DocumentationRegistry documentationRegistry) {
-            return HttpClientHelper.Factory.createFactory(documentationRegistry);
+        HttpTransferTracker createHttpTransferTracker(ProgressLoggerFactory progressLoggerFactory) {
+            return new HttpTransferTracker(progressLoggerFactory);
+        }
+
+        HttpClientHelper.Factory createHttpClientHelperFactory(DocumentationRegistry documentationRegistry, HttpTransferTracker transferTracker) {
+            return HttpClientHelper.Factory.createFactory(documentationRegistry, transferTracker);
         }
 
         ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory, HttpClientHelper.Factory httpClientHelperFactory) {
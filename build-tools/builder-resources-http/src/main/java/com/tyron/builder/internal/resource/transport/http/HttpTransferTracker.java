@@ -0,0 +1,187 @@
+package com.tyron.builder.internal.resource.transport.http;
+
+import com.tyron.builder.internal.logging.progress.ProgressLogger;
+import com.tyron.builder.internal.logging.progress.ProgressLoggerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Limits the number of concurrent requests made to a single host and keeps track of the
+ * requests in flight and the bytes they have received. While any request is in flight these
+ * are shown as the status of a progress operation, so that the progress of a resolution that
+ * downloads many small files in parallel can be seen.
+ *
+ * <p>A request holds a permit of its host from the moment it is sent until its response is
+ * closed, since the connection cannot be reused before that.
+ */
+public class HttpTransferTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpTransferTracker.class);
+
+    /**
+     * Matches the number of pooled connections per route, see {@link HttpClientConfigurer}.
+     */
+    public static final int MAX_REQUESTS_PER_HOST = 16;
+
+    /**
+     * A leaked response must not block every later request to its host forever.
+     */
+    private static final long MAX_PERMIT_WAIT_SECONDS = 60;
+
+    private final int maxRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong requestsCompleted = new AtomicLong();
+
+    @Nullable
+    private final ProgressLoggerFactory progressLoggerFactory;
+    // guarded by this
+    private ProgressLogger progressLogger;
+    private long requestsCompletedAtStart;
+    private long bytesReceivedAtStart;
+
+    public HttpTransferTracker() {
+        this(MAX_REQUESTS_PER_HOST, null);
+    }
+
+    public HttpTransferTracker(@Nullable ProgressLoggerFactory progressLoggerFactory) {
+        this(MAX_REQUESTS_PER_HOST, progressLoggerFactory);
+    }
+
+    public HttpTransferTracker(int maxRequestsPerHost, @Nullable ProgressLoggerFactory progressLoggerFactory) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.progressLoggerFactory = progressLoggerFactory;
+    }
+
+    /**
+     * Waits until a request to the host of the given uri may be sent.
+     *
+     * @return the request, to be finished once its response has been closed
+     */
+    Request start(URI uri) {
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        Semaphore semaphore = hosts.computeIfAbsent(host, h -> new Semaphore(maxRequestsPerHost));
+        boolean acquired;
+        try {
+            acquired = semaphore.tryAcquire(MAX_PERMIT_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            LOGGER.debug("Timed out waiting for a request slot for {}, sending anyway.", host);
+        }
+        requestsInFlight.incrementAndGet();
+        updateProgress();
+        return new Request(acquired ? semaphore : null);
+    }
+
+    /**
+     * Starts the progress operation with the first request in flight, updates it as requests
+     * start and finish and completes it once no request is left.
+     */
+    private void updateProgress() {
+        if (progressLoggerFactory == null) {
+            return;
+        }
+        synchronized (this) {
+            int inFlight = getRequestsInFlight();
+            if (progressLogger == null) {
+                if (inFlight == 0) {
+                    return;
+                }
+                requestsCompletedAtStart = getRequestsCompleted();
+                bytesReceivedAtStart = getBytesReceived();
+                progressLogger = progressLoggerFactory.newOperation(HttpTransferTracker.class);
+                progressLogger.start("Download", getStatus(inFlight));
+            } else if (inFlight == 0) {
+                progressLogger.completed();
+                progressLogger = null;
+            } else {
+                progressLogger.progress(getStatus(inFlight));
+            }
+        }
+    }
+
+    private String getStatus(int inFlight) {
+        long completed = getRequestsCompleted() - requestsCompletedAtStart;
+        long kilobytes = (getBytesReceived() - bytesReceivedAtStart) / 1024;
+        return inFlight + " requests in flight, " + completed + " completed, " + kilobytes + " KB received";
+    }
+
+    public int getRequestsInFlight() {
+        return requestsInFlight.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getRequestsCompleted() {
+        return requestsCompleted.get();
+    }
+
+    @Override
+    public String toString() {
+        return getRequestsInFlight() + " requests in flight, " + getRequestsCompleted() + " completed, "
+               + getBytesReceived() + " bytes received";
+    }
+
+    class Request {
+        private final Semaphore semaphore;
+        private final AtomicInteger finished = new AtomicInteger();
+
+        private Request(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        InputStream track(InputStream content) {
+            return new FilterInputStream(content) {
+                @Override
+                public int read() throws IOException {
+                    int read = super.read();
+                    if (read != -1) {
+                        bytesReceived.incrementAndGet();
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        bytesReceived.addAndGet(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        void finish() {
+            if (finished.getAndIncrement() != 0) {
+                return;
+            }
+            requestsCompleted.incrementAndGet();
+            requestsInFlight.decrementAndGet();
+            if (semaphore != null) {
+                semaphore.release();
+            }
+            updateProgress();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tyron.builder.internal.resource.transport.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import com.tyron.builder.api.internal.DocumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpTransferTrackerTest {
+
+    private static final int REQUEST_COUNT = 48;
+    private static final long RESPONSE_DELAY_MILLIS = 300;
+    private static final byte[] BODY = "artifact contents".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ExecutorService clientExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), REQUEST_COUNT);
+        server.createContext("/", exchange -> {
+            int current = active.incrementAndGet();
+            maxActive.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(RESPONSE_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(BODY);
+            }
+        });
+        serverExecutor = Executors.newFixedThreadPool(REQUEST_COUNT);
+        server.setExecutor(serverExecutor);
+        server.start();
+        clientExecutor = Executors.newFixedThreadPool(REQUEST_COUNT);
+    }
+
+    @After
+    public void tearDown() {
+        clientExecutor.shutdownNow();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void limitsConcurrentRequestsPerHost() throws Exception {
+        HttpTransferTracker tracker = new HttpTransferTracker();
+
+        downloadAll(tracker);
+
+        assertEquals(HttpTransferTracker.MAX_REQUESTS_PER_HOST, maxActive.get());
+        assertTrackerFinished(tracker);
+    }
+
+    @Test
+    public void usesTheGivenLimit() throws Exception {
+        HttpTransferTracker tracker = new HttpTransferTracker(4, null);
+
+        downloadAll(tracker);
+
+        assertEquals(4, maxActive.get());
+        assertTrackerFinished(tracker);
+    }
+
+    private void assertTrackerFinished(HttpTransferTracker tracker) {
+        assertEquals(0, tracker.getRequestsInFlight());
+        assertEquals(REQUEST_COUNT, tracker.getRequestsCompleted());
+        assertEquals((long) REQUEST_COUNT * BODY.length, tracker.getBytesReceived());
+    }
+
+    private void downloadAll(HttpTransferTracker tracker) throws Exception {
+        HttpSettings settings = DefaultHttpSettings.builder()
+                .withAuthenticationSettings(Collections.emptyList())
+                .withRedirectVerifier(redirects -> {})
+                .allowUntrustedConnections()
+                .build();
+        String uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/artifact";
+        try (HttpClientHelper client = new HttpClientHelper(new DocumentationRegistry(), settings, tracker)) {
+            List<Future<byte[]>> downloads = new ArrayList<>();
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                downloads.add(clientExecutor.submit(() -> {
+                    try (HttpClientResponse response = client.performGet(uri + "?" + System.nanoTime(), false);
+                         InputStream content = response.getContent()) {
+                        return ByteStreams.toByteArray(content);
+                    }
+                }));
+            }
+            for (Future<byte[]> download : downloads) {
+                assertArrayEquals(BODY, download.get(30, TimeUnit.SECONDS));
+            }
+        }
+    }
+}
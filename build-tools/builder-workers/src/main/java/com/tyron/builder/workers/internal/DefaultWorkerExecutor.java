@@ -30,6 +30,8 @@ import com.tyron.builder.workers.WorkerExecutionException;
 import com.tyron.builder.workers.WorkerExecutor;
 import com.tyron.builder.workers.WorkerSpec;
 
+import org.codehaus.groovy.reflection.android.AndroidSupport;
+
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.File;
 import java.util.List;
@@ -117,6 +119,10 @@ public class DefaultWorkerExecutor implements WorkerExecutor {
             spec.getForkOptions().setWorkingDir(workingDirectory);
         }
 
+        if (AndroidSupport.isRunningAndroid()) {
+            // worker daemons cannot be forked, isolate the work in a class loader instead
+            return instantiator.newInstance(DefaultWorkQueue.class, this, spec, isolatedClassloaderWorkerFactory);
+        }
         return instantiator.newInstance(DefaultWorkQueue.class, this, spec, daemonWorkerFactory);
     }
 
@@ -255,7 +261,10 @@ public class DefaultWorkerExecutor implements WorkerExecutor {
     }
 
     WorkerRequirement getWorkerRequirement(Class<?> executionClass, WorkerSpec configuration, WorkParameters parameters) {
-        if (configuration instanceof ProcessWorkerSpec) {
+        if (configuration instanceof ProcessWorkerSpec && AndroidSupport.isRunningAndroid()) {
+            ProcessWorkerSpec processConfiguration = (ProcessWorkerSpec) configuration;
+            return new IsolatedClassLoaderWorkerRequirement(baseDir, classLoaderStructureProvider.getInProcessClassLoaderStructure(processConfiguration.getClasspath(), getParamClasses(executionClass, parameters)));
+        } else if (configuration instanceof ProcessWorkerSpec) {
             DaemonForkOptionsBuilder builder = new DaemonForkOptionsBuilder(forkOptionsFactory)
                 .keepAliveMode(KeepAliveMode.DAEMON);
             ProcessWorkerSpec processConfiguration = (ProcessWorkerSpec) configuration;
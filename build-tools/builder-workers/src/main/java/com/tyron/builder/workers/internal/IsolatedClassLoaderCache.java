@@ -0,0 +1,193 @@
+package com.tyron.builder.workers.internal;
+
+import com.google.common.base.Objects;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.tyron.builder.api.internal.classloading.GroovySystemLoaderFactory;
+import com.tyron.builder.initialization.LegacyTypesSupport;
+import com.tyron.builder.internal.classloader.ClassLoaderSpec;
+import com.tyron.builder.internal.classloader.VisitableURLClassLoader;
+import com.tyron.builder.internal.concurrent.CompositeStoppable;
+import com.tyron.builder.internal.concurrent.Stoppable;
+import com.tyron.builder.internal.hash.Hashes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the class loaders of isolated workers alive so that work items with the same class path
+ * reuse the classes that have already been loaded, which on Android also avoids dexing the class
+ * path again for every work item. Class loaders are keyed by their structure and a fingerprint of
+ * the files on their class path, a class loader is stopped once it has been evicted and is no
+ * longer used by any work item.
+ */
+public class IsolatedClassLoaderCache implements Stoppable {
+    private static final int MAX_CACHED_CLASS_LOADERS = 8;
+
+    private final LegacyTypesSupport legacyTypesSupport;
+    private final GroovySystemLoaderFactory groovySystemLoaderFactory = new GroovySystemLoaderFactory();
+    private final Map<Key, CachedClassLoader> classLoaders = new LinkedHashMap<>(16, 0.75f, true);
+
+    public IsolatedClassLoaderCache(LegacyTypesSupport legacyTypesSupport) {
+        this.legacyTypesSupport = legacyTypesSupport;
+    }
+
+    /**
+     * Returns a class loader for the given structure, creating it if required. The class loader
+     * can be used concurrently by other work items until the returned lease is closed.
+     */
+    public Lease acquire(ClassLoaderStructure classLoaderStructure, ClassLoader workerInfrastructureClassloader) {
+        Key key = new Key(classLoaderStructure, workerInfrastructureClassloader, fingerprint(classLoaderStructure));
+        List<CachedClassLoader> evicted = new ArrayList<>();
+        CachedClassLoader cached;
+        synchronized (classLoaders) {
+            cached = classLoaders.get(key);
+            if (cached == null) {
+                ClassLoader classLoader = IsolatedClassloaderWorker.createIsolatedWorkerClassloader(classLoaderStructure, workerInfrastructureClassloader, legacyTypesSupport);
+                cached = new CachedClassLoader(classLoader);
+                classLoaders.put(key, cached);
+                Iterator<CachedClassLoader> iterator = classLoaders.values().iterator();
+                while (classLoaders.size() > MAX_CACHED_CLASS_LOADERS) {
+                    CachedClassLoader eldest = iterator.next();
+                    iterator.remove();
+                    evicted.add(eldest);
+                }
+            }
+            cached.users++;
+            for (CachedClassLoader classLoader : evicted) {
+                classLoader.evicted = true;
+            }
+        }
+        for (CachedClassLoader classLoader : evicted) {
+            classLoader.stopIfUnused();
+        }
+        return new Lease(cached);
+    }
+
+    @Override
+    public void stop() {
+        List<CachedClassLoader> evicted;
+        synchronized (classLoaders) {
+            evicted = new ArrayList<>(classLoaders.values());
+            classLoaders.clear();
+            for (CachedClassLoader classLoader : evicted) {
+                classLoader.evicted = true;
+            }
+        }
+        for (CachedClassLoader classLoader : evicted) {
+            classLoader.stopIfUnused();
+        }
+    }
+
+    /**
+     * Hashes the length and modification time of the class path entries, so that a class loader
+     * is not reused when a jar has been rebuilt in place.
+     */
+    private static HashCode fingerprint(ClassLoaderStructure classLoaderStructure) {
+        Hasher hasher = Hashes.newHasher();
+        for (ClassLoaderStructure structure = classLoaderStructure; structure != null; structure = structure.getParent()) {
+            for (URL url : getClasspath(structure.getSpec())) {
+                File file = new File(url.getFile());
+                hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8);
+                hasher.putLong(file.length());
+                hasher.putLong(file.lastModified());
+            }
+        }
+        return hasher.hash();
+    }
+
+    private static List<URL> getClasspath(ClassLoaderSpec spec) {
+        // also covers MixInLegacyTypesClassLoader.Spec
+        if (spec instanceof VisitableURLClassLoader.Spec) {
+            return ((VisitableURLClassLoader.Spec) spec).getClasspath();
+        }
+        return Collections.emptyList();
+    }
+
+    public class Lease implements Closeable {
+        private final CachedClassLoader cached;
+        private boolean closed;
+
+        private Lease(CachedClassLoader cached) {
+            this.cached = cached;
+        }
+
+        public ClassLoader getClassLoader() {
+            return cached.classLoader;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            synchronized (classLoaders) {
+                cached.users--;
+            }
+            cached.stopIfUnused();
+        }
+    }
+
+    private class CachedClassLoader {
+        private final ClassLoader classLoader;
+        // guarded by classLoaders
+        private int users;
+        private boolean evicted;
+        private boolean stopped;
+
+        CachedClassLoader(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        void stopIfUnused() {
+            synchronized (classLoaders) {
+                if (!evicted || users > 0 || stopped) {
+                    return;
+                }
+                stopped = true;
+            }
+            groovySystemLoaderFactory.forClassLoader(classLoader).shutdown();
+            CompositeStoppable.stoppable(classLoader).stop();
+        }
+    }
+
+    private static class Key {
+        private final ClassLoaderStructure structure;
+        private final ClassLoader workerInfrastructureClassloader;
+        private final HashCode fingerprint;
+
+        Key(ClassLoaderStructure structure, ClassLoader workerInfrastructureClassloader, HashCode fingerprint) {
+            this.structure = structure;
+            this.workerInfrastructureClassloader = workerInfrastructureClassloader;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return workerInfrastructureClassloader == key.workerInfrastructureClassloader
+                   && structure.equals(key.structure)
+                   && fingerprint.equals(key.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(structure, fingerprint);
+        }
+    }
+}
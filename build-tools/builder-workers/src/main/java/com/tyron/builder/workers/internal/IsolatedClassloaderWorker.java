@@ -7,9 +7,18 @@ import com.tyron.builder.initialization.MixInLegacyTypesClassLoader;
 import com.tyron.builder.internal.classloader.ClassLoaderSpec;
 import com.tyron.builder.internal.classloader.FilteringClassLoader;
 import com.tyron.builder.internal.classloader.VisitableURLClassLoader;
+import com.tyron.builder.internal.classpath.DefaultClassPath;
 import com.tyron.builder.internal.concurrent.CompositeStoppable;
 import com.tyron.builder.internal.instantiation.InstantiatorFactory;
 import com.tyron.builder.internal.service.ServiceRegistry;
+import com.tyron.groovy.DexBackedURLClassLoader;
+
+import org.codehaus.groovy.reflection.android.AndroidSupport;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 public class IsolatedClassloaderWorker extends AbstractClassLoaderWorker {
     private final GroovySystemLoaderFactory groovySystemLoaderFactory = new GroovySystemLoaderFactory();
@@ -32,9 +41,9 @@ public class IsolatedClassloaderWorker extends AbstractClassLoaderWorker {
         try {
             return executeInClassLoader(spec, workerClassLoader);
         } finally {
-            workerClasspathGroovy.shutdown();
-            // TODO: we should just cache these classloaders and eject/stop them when they are no longer in use
+            // reused class loaders may be running other work items, they are stopped by their owner
             if (!reuseClassloader) {
+                workerClasspathGroovy.shutdown();
                 CompositeStoppable.stoppable(workerClassLoader).stop();
                 this.workerClassLoader = null;
             }
@@ -68,6 +77,14 @@ public class IsolatedClassloaderWorker extends AbstractClassLoaderWorker {
             if (visitableSpec.getClasspath().isEmpty()) {
                 return parent;
             }
+            if (AndroidSupport.isRunningAndroid()) {
+                // class files cannot be loaded directly, the class path is dexed in the background
+                List<File> files = new ArrayList<>();
+                for (URL url : visitableSpec.getClasspath()) {
+                    files.add(new File(url.getFile()));
+                }
+                return new DexBackedURLClassLoader(visitableSpec.getName(), parent, DefaultClassPath.of(files));
+            }
             return new VisitableURLClassLoader(visitableSpec.getName(), parent, visitableSpec.getClasspath());
         } else if (spec instanceof FilteringClassLoader.Spec) {
             FilteringClassLoader.Spec filteringSpec = (FilteringClassLoader.Spec) spec;
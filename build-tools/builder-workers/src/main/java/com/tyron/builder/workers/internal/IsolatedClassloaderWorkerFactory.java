@@ -1,7 +1,6 @@
 package com.tyron.builder.workers.internal;
 
 import com.tyron.builder.initialization.ClassLoaderRegistry;
-import com.tyron.builder.initialization.LegacyTypesSupport;
 import com.tyron.builder.internal.instantiation.InstantiatorFactory;
 import com.tyron.builder.internal.operations.BuildOperationExecutor;
 import com.tyron.builder.internal.operations.BuildOperationRef;
@@ -12,17 +11,17 @@ public class IsolatedClassloaderWorkerFactory implements WorkerFactory {
     private final BuildOperationExecutor buildOperationExecutor;
     private final ServiceRegistry internalServices;
     private final ClassLoaderRegistry classLoaderRegistry;
-    private final LegacyTypesSupport legacyTypesSupport;
     private final ActionExecutionSpecFactory actionExecutionSpecFactory;
     private final InstantiatorFactory instantiatorFactory;
+    private final IsolatedClassLoaderCache classLoaderCache;
 
-    public IsolatedClassloaderWorkerFactory(BuildOperationExecutor buildOperationExecutor, ServiceRegistry internalServices, ClassLoaderRegistry classLoaderRegistry, LegacyTypesSupport legacyTypesSupport, ActionExecutionSpecFactory actionExecutionSpecFactory, InstantiatorFactory instantiatorFactory) {
+    public IsolatedClassloaderWorkerFactory(BuildOperationExecutor buildOperationExecutor, ServiceRegistry internalServices, ClassLoaderRegistry classLoaderRegistry, ActionExecutionSpecFactory actionExecutionSpecFactory, InstantiatorFactory instantiatorFactory, IsolatedClassLoaderCache classLoaderCache) {
         this.buildOperationExecutor = buildOperationExecutor;
         this.internalServices = internalServices;
         this.classLoaderRegistry = classLoaderRegistry;
-        this.legacyTypesSupport = legacyTypesSupport;
         this.actionExecutionSpecFactory = actionExecutionSpecFactory;
         this.instantiatorFactory = instantiatorFactory;
+        this.classLoaderCache = classLoaderCache;
     }
 
     @Override
@@ -36,9 +35,10 @@ public class IsolatedClassloaderWorkerFactory implements WorkerFactory {
 
                     ClassLoader workerInfrastructureClassloader = classLoaderRegistry.getPluginsClassLoader();
                     ClassLoaderStructure classLoaderStructure = ((IsolatedClassLoaderWorkerRequirement) workerRequirement).getClassLoaderStructure();
-                    ClassLoader workerClassLoader = IsolatedClassloaderWorker.createIsolatedWorkerClassloader(classLoaderStructure, workerInfrastructureClassloader, legacyTypesSupport);
-                    RequestHandler<TransportableActionExecutionSpec, DefaultWorkResult> worker = new IsolatedClassloaderWorker(workerClassLoader, internalServices, actionExecutionSpecFactory, instantiatorFactory);
-                    return worker.run(transportableSpec);
+                    try (IsolatedClassLoaderCache.Lease lease = classLoaderCache.acquire(classLoaderStructure, workerInfrastructureClassloader)) {
+                        RequestHandler<TransportableActionExecutionSpec, DefaultWorkResult> worker = new IsolatedClassloaderWorker(lease.getClassLoader(), internalServices, actionExecutionSpecFactory, instantiatorFactory, true);
+                        return worker.run(transportableSpec);
+                    }
                 });
             }
         };
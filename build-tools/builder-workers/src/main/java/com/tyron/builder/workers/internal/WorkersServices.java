@@ -5,6 +5,7 @@ import com.tyron.builder.api.internal.ClassPathRegistry;
 import com.tyron.builder.concurrent.ParallelismConfiguration;
 import com.tyron.builder.initialization.ClassLoaderRegistry;
 import com.tyron.builder.initialization.GradleUserHomeDirProvider;
+import com.tyron.builder.initialization.LegacyTypesSupport;
 import com.tyron.builder.internal.concurrent.ExecutorFactory;
 import com.tyron.builder.internal.event.ListenerManager;
 import com.tyron.builder.internal.hash.ClassLoaderHierarchyHasher;
@@ -82,6 +83,10 @@ public class WorkersServices extends AbstractPluginServiceRegistry {
         ActionExecutionSpecFactory createActionExecutionSpecFactory(IsolatableFactory isolatableFactory, IsolatableSerializerRegistry serializerRegistry) {
             return new DefaultActionExecutionSpecFactory(isolatableFactory, serializerRegistry);
         }
+
+        IsolatedClassLoaderCache createIsolatedClassLoaderCache(LegacyTypesSupport legacyTypesSupport) {
+            return new IsolatedClassLoaderCache(legacyTypesSupport);
+        }
     }
 
     private static class ProjectScopeServices {
@@ -1,6 +1,9 @@
 package com.tyron.builder.internal.watch.registry.impl;
 
-import static net.rubygrapefruit.platform.internal.jni.LinuxFileEventFunctions.*;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
 
 import com.tyron.builder.internal.file.FileType;
 import com.tyron.builder.internal.snapshot.SnapshotHierarchy;
@@ -13,96 +16,246 @@ import net.rubygrapefruit.platform.file.FileWatcher;
 import net.rubygrapefruit.platform.internal.jni.AbstractFileEventFunctions;
 import net.rubygrapefruit.platform.internal.jni.InsufficientResourcesForWatchingException;
 
-import org.apache.commons.vfs2.FileChangeEvent;
-import org.apache.commons.vfs2.FileListener;
-import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.FileSystemException;
-import org.apache.commons.vfs2.FileSystemManager;
-import org.apache.commons.vfs2.VFS;
-import org.apache.commons.vfs2.impl.DefaultFileMonitor;
-
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class LinuxFileWatcherRegistryFactory extends AbstractFileWatcherRegistryFactory<LinuxFileWatcherRegistryFactory.LinuxFileEventFunctions, LinuxFileWatcherRegistryFactory.LinuxFileWatcher> {
 
-    private final BlockingQueue<FileWatchEvent> queue = new ArrayBlockingQueue<>(10);
+    /**
+     * A non-recursive file watcher backed by inotify through the {@link WatchService} of the
+     * default file system. Each directory passed to {@link #startWatching(Collection)} is
+     * watched on its own, so watches are added and removed incrementally as the watched
+     * hierarchies change instead of rescanning them.
+     */
+    public static class LinuxFileWatcher implements FileWatcher {
+
+        /**
+         * Events received within this window are coalesced, so a burst of writes to the
+         * same file is reported once.
+         */
+        static final long COALESCE_WINDOW_MILLIS = 20;
+
+        private final WatchService watchService;
+        private final Callback callback;
+        private final Map<Path, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+        private final Thread thread;
+
+        public LinuxFileWatcher(Callback callback) throws IOException {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.callback = callback;
+            this.thread = new Thread(this::processEvents, "File watcher server");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
 
-    protected static class LinuxFileWatcher implements FileWatcher {
+        @Override
+        public void startWatching(Collection<File> collection) throws InsufficientResourcesForWatchingException {
+            for (File file : collection) {
+                Path path = file.toPath().toAbsolutePath();
+                if (watchedDirectories.containsKey(path)) {
+                    continue;
+                }
+                try {
+                    WatchKey key = path.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                    watchedDirectories.put(path, new WatchedDirectory(key, fileKey));
+                } catch (NoSuchFileException | NotDirectoryException e) {
+                    // the directory has been removed in the meantime, the parent will report it
+                } catch (IOException e) {
+                    if (e.getMessage() != null && e.getMessage().contains("inotify")) {
+                        throw new InsufficientResourcesForWatchingException(e.getMessage());
+                    }
+                    callback.reportFailure(e);
+                }
+            }
+        }
 
-        private final FileSystemManager manager;
-        private DefaultFileMonitor fileMonitor;
-        private final FileListener fileListener;
+        @Override
+        public boolean stopWatching(Collection<File> collection) {
+            boolean allStopped = true;
+            for (File file : collection) {
+                WatchedDirectory directory = watchedDirectories.remove(file.toPath().toAbsolutePath());
+                if (directory == null) {
+                    allStopped = false;
+                } else {
+                    directory.key.cancel();
+                }
+            }
+            return allStopped;
+        }
 
-        public LinuxFileWatcher(FileListener fileListener) {
+        private void processEvents() {
             try {
-                manager = VFS.getManager();
-            } catch (FileSystemException e) {
-                throw new RuntimeException(e);
+                while (true) {
+                    Map<String, FileWatchEvent.ChangeType> changes = new LinkedHashMap<>();
+                    Set<String> overflows = new LinkedHashSet<>();
+
+                    WatchKey key = watchService.take();
+                    long deadline = System.currentTimeMillis() + COALESCE_WINDOW_MILLIS;
+                    while (key != null) {
+                        collectEvents(key, changes, overflows);
+                        long remaining = deadline - System.currentTimeMillis();
+                        key = remaining > 0
+                                ? watchService.poll(remaining, TimeUnit.MILLISECONDS)
+                                : watchService.poll();
+                    }
+
+                    for (String overflow : overflows) {
+                        callback.reportOverflow(overflow);
+                    }
+                    changes.forEach((path, type) -> {
+                        if (!overflows.contains(new File(path).getParent())) {
+                            callback.reportChangeEvent(type, path);
+                        }
+                    });
+                    if (!changes.isEmpty() || !overflows.isEmpty()) {
+                        callback.reportBatchComplete();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // shutting down
+            } catch (Throwable e) {
+                callback.reportFailure(e);
             }
-            this.fileListener = fileListener;
+            callback.reportTermination();
         }
 
-        @Override
-        public void startWatching(Collection<File> collection) throws InsufficientResourcesForWatchingException {
-            if (fileMonitor != null) {
-                return;
+        private void collectEvents(WatchKey key, Map<String, FileWatchEvent.ChangeType> changes,
+                                   Set<String> overflows) {
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                WatchEvent.Kind<?> kind = event.kind();
+                if (kind == OVERFLOW) {
+                    // events have been lost, the whole directory needs to be invalidated
+                    overflows.add(directory.toString());
+                    continue;
+                }
+                String path = directory.resolve((Path) event.context()).toString();
+                changes.merge(path, toChangeType(kind), LinuxFileWatcher::coalesce);
             }
+            if (!key.reset()) {
+                // the directory is no longer accessible, its removal is reported by its parent
+                watchedDirectories.remove(directory, watchedDirectories.get(directory));
+            }
+        }
 
-            List<FileObject> files = resolveFileObjects(collection);
-            fileMonitor = new DefaultFileMonitor(fileListener);
-            fileMonitor.setRecursive(true);
-            files.forEach(fileMonitor::addFile);
-            fileMonitor.start();
+        private static FileWatchEvent.ChangeType toChangeType(WatchEvent.Kind<?> kind) {
+            if (kind == ENTRY_CREATE) {
+                return FileWatchEvent.ChangeType.CREATED;
+            }
+            if (kind == ENTRY_DELETE) {
+                return FileWatchEvent.ChangeType.REMOVED;
+            }
+            return FileWatchEvent.ChangeType.MODIFIED;
         }
 
-        @Override
-        public boolean stopWatching(Collection<File> collection) {
-            if (fileMonitor == null) {
-                return false;
+        /**
+         * Merges two successive events of the same path. A file that is created and then
+         * written is still only created, anything else is reported as the latest event.
+         */
+        private static FileWatchEvent.ChangeType coalesce(FileWatchEvent.ChangeType previous,
+                                                          FileWatchEvent.ChangeType next) {
+            if (previous == FileWatchEvent.ChangeType.CREATED
+                && next == FileWatchEvent.ChangeType.MODIFIED) {
+                return previous;
             }
-            List<FileObject> fileObjects = resolveFileObjects(collection);
-            fileObjects.forEach(fileMonitor::removeFile);
-            return true;
-        }
-
-        private List<FileObject> resolveFileObjects(Collection<File> collection) {
-            return collection.stream()
-                    .map(File::toString)
-                    .map(path -> {
-                        try {
-                            return manager.resolveFile(path);
-                        } catch (FileSystemException e) {
-                            return null;
-                        }
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            return next;
         }
 
         @Override
         public void shutdown() {
-            if (fileMonitor != null) {
-                fileMonitor.stop();
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
             }
         }
 
         @Override
         public boolean awaitTermination(long l, TimeUnit timeUnit) throws InterruptedException {
             shutdown();
-            return true;
+            thread.join(timeUnit.toMillis(l));
+            return !thread.isAlive();
         }
 
+        /**
+         * inotify watches follow the inode of a directory, so a moved directory would keep
+         * reporting changes under its old path. Stops watching the directories that no longer
+         * exist or have been replaced.
+         */
         public Collection<File> stopWatchingMovedPaths(Collection<File> directoriesToCheck) {
-            return Collections.emptyList();
+            List<File> moved = new ArrayList<>();
+            for (File file : directoriesToCheck) {
+                Path path = file.toPath().toAbsolutePath();
+                WatchedDirectory directory = watchedDirectories.get(path);
+                if (directory == null) {
+                    continue;
+                }
+                Object fileKey;
+                try {
+                    fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                } catch (IOException e) {
+                    fileKey = null;
+                }
+                if (fileKey == null || !fileKey.equals(directory.fileKey)) {
+                    watchedDirectories.remove(path, directory);
+                    directory.key.cancel();
+                    moved.add(file);
+                }
+            }
+            return moved;
+        }
+
+        /**
+         * Receives the events of the watcher, called from the watcher thread.
+         */
+        public interface Callback {
+            void reportChangeEvent(FileWatchEvent.ChangeType type, String absolutePath);
+
+            /**
+             * Events of the given directory have been lost.
+             */
+            void reportOverflow(String absolutePath);
+
+            /**
+             * Called after all the events coalesced within one window have been reported.
+             */
+            void reportBatchComplete();
+
+            void reportFailure(Throwable failure);
+
+            void reportTermination();
+        }
+
+        private static class WatchedDirectory {
+            private final WatchKey key;
+            private final Object fileKey;
+
+            private WatchedDirectory(WatchKey key, Object fileKey) {
+                this.key = key;
+                this.fileKey = fileKey;
+            }
         }
     }
 
@@ -126,31 +279,36 @@ public class LinuxFileWatcherRegistryFactory extends AbstractFileWatcherRegistry
                                                          long l,
                                                          TimeUnit timeUnit,
                                                          NativeFileWatcherCallback nativeFileWatcherCallback) throws InterruptedException {
-                    return new LinuxFileWatcher(new FileListener() {
-                        @Override
-                        public void fileCreated(FileChangeEvent event) throws Exception {
-                            FileObject fileObject = event.getFileObject();
-                            nativeFileWatcherCallback.reportChangeEvent(FileWatchEvent.ChangeType.CREATED.ordinal(), fileObject.getPath().toString());
-                        }
-
-                        @Override
-                        public void fileDeleted(FileChangeEvent event) throws Exception {
-                            FileObject fileObject = event.getFileObject();
-                            nativeFileWatcherCallback.reportChangeEvent(
-                                    FileWatchEvent.ChangeType.REMOVED.ordinal(),
-                                    fileObject.getPath().toString()
-                            );
-                        }
-
-                        @Override
-                        public void fileChanged(FileChangeEvent event) throws Exception {
-                            FileObject fileObject = event.getFileObject();
-                            nativeFileWatcherCallback.reportChangeEvent(
-                                    FileWatchEvent.ChangeType.MODIFIED.ordinal(),
-                                    fileObject.getPath().toString()
-                            );
-                        }
-                    });
+                    try {
+                        return new LinuxFileWatcher(new LinuxFileWatcher.Callback() {
+                            @Override
+                            public void reportChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
+                                nativeFileWatcherCallback.reportChangeEvent(type.ordinal(), absolutePath);
+                            }
+
+                            @Override
+                            public void reportOverflow(String absolutePath) {
+                                nativeFileWatcherCallback.reportOverflow(absolutePath);
+                            }
+
+                            @Override
+                            public void reportBatchComplete() {
+                                // the native callback receives events one by one
+                            }
+
+                            @Override
+                            public void reportFailure(Throwable failure) {
+                                nativeFileWatcherCallback.reportFailure(failure);
+                            }
+
+                            @Override
+                            public void reportTermination() {
+                                nativeFileWatcherCallback.reportTermination();
+                            }
+                        });
+                    } catch (IOException e) {
+                        throw new NativeIntegrationUnavailableException("Unable to create a watch service: " + e.getMessage());
+                    }
                 }
             };
         }
@@ -0,0 +1,231 @@
+package com.tyron.builder.internal.watch.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.internal.watch.registry.impl.LinuxFileWatcherRegistryFactory.LinuxFileWatcher;
+
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LinuxFileWatcherTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Map<String, FileWatchEvent.ChangeType> changes = new ConcurrentHashMap<>();
+    private final Set<String> overflows = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger eventCount = new AtomicInteger();
+    private final AtomicInteger batchCount = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private LinuxFileWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        watcher = new LinuxFileWatcher(new LinuxFileWatcher.Callback() {
+            @Override
+            public void reportChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
+                changes.put(absolutePath, type);
+                eventCount.incrementAndGet();
+            }
+
+            @Override
+            public void reportOverflow(String absolutePath) {
+                overflows.add(absolutePath);
+            }
+
+            @Override
+            public void reportBatchComplete() {
+                batchCount.incrementAndGet();
+            }
+
+            @Override
+            public void reportFailure(Throwable t) {
+                failure.set(t);
+            }
+
+            @Override
+            public void reportTermination() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        assertTrue(watcher.awaitTermination(5, TimeUnit.SECONDS));
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testReportsChangesOfWatchedDirectory() throws Exception {
+        File directory = folder.newFolder("watched");
+        watcher.startWatching(Collections.singleton(directory));
+
+        File file = new File(directory, "file.txt");
+        Files.write(file.toPath(), new byte[]{1});
+        awaitChange(file.getAbsolutePath(), FileWatchEvent.ChangeType.CREATED);
+
+        Files.write(file.toPath(), new byte[]{2});
+        awaitChange(file.getAbsolutePath(), FileWatchEvent.ChangeType.MODIFIED);
+
+        Files.delete(file.toPath());
+        awaitChange(file.getAbsolutePath(), FileWatchEvent.ChangeType.REMOVED);
+    }
+
+    @Test
+    public void testIsNotRecursive() throws Exception {
+        File directory = folder.newFolder("watched");
+        File child = new File(directory, "child");
+        assertTrue(child.mkdir());
+        watcher.startWatching(Collections.singleton(directory));
+
+        File nested = new File(child, "nested.txt");
+        Files.write(nested.toPath(), new byte[]{1});
+        File marker = new File(directory, "marker.txt");
+        Files.write(marker.toPath(), new byte[]{1});
+
+        awaitChange(marker.getAbsolutePath(), FileWatchEvent.ChangeType.CREATED);
+        assertFalse(changes.containsKey(nested.getAbsolutePath()));
+    }
+
+    @Test
+    public void testStopWatching() throws Exception {
+        File directory = folder.newFolder("watched");
+        File other = folder.newFolder("other");
+        watcher.startWatching(Collections.singleton(directory));
+        watcher.startWatching(Collections.singleton(other));
+        assertTrue(watcher.stopWatching(Collections.singleton(directory)));
+        assertFalse(watcher.stopWatching(Collections.singleton(directory)));
+
+        File ignored = new File(directory, "ignored.txt");
+        Files.write(ignored.toPath(), new byte[]{1});
+        File marker = new File(other, "marker.txt");
+        Files.write(marker.toPath(), new byte[]{1});
+
+        awaitChange(marker.getAbsolutePath(), FileWatchEvent.ChangeType.CREATED);
+        assertFalse(changes.containsKey(ignored.getAbsolutePath()));
+    }
+
+    @Test
+    public void testStopWatchingMovedDirectory() throws Exception {
+        File directory = folder.newFolder("watched");
+        watcher.startWatching(Collections.singleton(directory));
+
+        File moved = new File(folder.getRoot(), "moved");
+        assertTrue(directory.renameTo(moved));
+        assertTrue(directory.mkdir());
+
+        assertEquals(Collections.singletonList(directory),
+                watcher.stopWatchingMovedPaths(Collections.singleton(directory)));
+    }
+
+    /**
+     * Creates and writes to 10k files in bursts, every file must either be reported
+     * or be covered by an overflow of its directory.
+     */
+    @Test
+    public void testBurstWrites() throws Exception {
+        File directory = folder.newFolder("watched");
+        watcher.startWatching(Collections.singleton(directory));
+
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            File file = new File(directory, "file" + i + ".txt");
+            Files.write(file.toPath(), new byte[]{1});
+            Files.write(file.toPath(), new byte[]{2}, StandardOpenOption.APPEND);
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (changes.size() < count && overflows.isEmpty()
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        if (overflows.isEmpty()) {
+            assertEquals(count, changes.size());
+            for (int i = 0; i < count; i++) {
+                String path = new File(directory, "file" + i + ".txt").getAbsolutePath();
+                assertTrue(changes.containsKey(path));
+            }
+            // the write following each creation is coalesced
+            assertTrue(eventCount.get() < count * 2);
+        } else {
+            assertEquals(Collections.singleton(directory.getAbsolutePath()), overflows);
+        }
+    }
+
+    /**
+     * Creates and writes to 10k files spread over directories that are small enough not to
+     * overflow. No path may be lost and the events must be delivered in a number of batches
+     * bounded by the coalescing window, not by the number of files.
+     */
+    @Test
+    public void testLargeBurstIsCoalesced() throws Exception {
+        int directoryCount = 100;
+        int filesPerDirectory = 100;
+        List<File> directories = new ArrayList<>();
+        for (int i = 0; i < directoryCount; i++) {
+            directories.add(folder.newFolder("watched" + i));
+        }
+        watcher.startWatching(directories);
+
+        long start = System.currentTimeMillis();
+        List<String> paths = new ArrayList<>();
+        for (File directory : directories) {
+            for (int i = 0; i < filesPerDirectory; i++) {
+                File file = new File(directory, "file" + i + ".txt");
+                Files.write(file.toPath(), new byte[]{1});
+                Files.write(file.toPath(), new byte[]{2}, StandardOpenOption.APPEND);
+                paths.add(file.getAbsolutePath());
+            }
+        }
+
+        long deadline = start + TIMEOUT_MILLIS;
+        while (changes.size() < paths.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        int batches = batchCount.get();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(overflows.isEmpty());
+        for (String path : paths) {
+            assertTrue(path, changes.containsKey(path));
+        }
+        // every batch collects events for at least one coalescing window
+        assertTrue(batches + " batches in " + elapsed + " ms",
+                batches <= elapsed / LinuxFileWatcher.COALESCE_WINDOW_MILLIS + 1);
+        assertTrue(eventCount.get() < paths.size() * 2);
+    }
+
+    private void awaitChange(String path, FileWatchEvent.ChangeType type) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (changes.get(path) != type && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(type, changes.get(path));
+    }
+}
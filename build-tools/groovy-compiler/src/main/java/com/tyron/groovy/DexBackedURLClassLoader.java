@@ -1,12 +1,7 @@
 package com.tyron.groovy;
 
-import com.google.common.hash.HashCode;
 import com.tyron.builder.internal.classloader.AppDataDirGuesser;
 import com.tyron.builder.internal.classpath.ClassPath;
-import com.tyron.builder.internal.hash.DefaultFileHasher;
-import com.tyron.builder.internal.hash.DefaultStreamHasher;
-import com.tyron.builder.internal.hash.FileHasher;
-import com.tyron.builder.util.internal.GFileUtils;
 import com.tyron.common.TestUtil;
 
 import org.apache.commons.io.FilenameUtils;
@@ -18,8 +13,13 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import dalvik.system.BaseDexClassLoader;
 import dalvik.system.DexClassLoader;
@@ -37,9 +37,11 @@ public class DexBackedURLClassLoader extends URLClassLoader {
         }
     }
     private final DexClassLoader dexClassLoader;
-    private final FileHasher hasher = new DefaultFileHasher(new DefaultStreamHasher());
-
     private final Set<URL> loadedUrls = new HashSet<>();
+    /**
+     * Class path entries that are being dexed, in class path order.
+     */
+    private final Queue<Future<File>> pending = new ArrayDeque<>();
 
     public DexBackedURLClassLoader(ClassLoader parent) {
         this("", parent, ClassPath.EMPTY);
@@ -64,24 +66,46 @@ public class DexBackedURLClassLoader extends URLClassLoader {
 
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
-        if (AndroidSupport.isRunningAndroid()) {
-            return dexClassLoader.loadClass(name);
-        } else {
+        if (!AndroidSupport.isRunningAndroid()) {
             return getParent().loadClass(name);
         }
+
+        ClassNotFoundException notFound;
+        try {
+            return dexClassLoader.loadClass(name);
+        } catch (ClassNotFoundException e) {
+            notFound = e;
+        }
+        // the class may be in a jar that is still being dexed, wait for the pending
+        // jars in class path order and stop as soon as the class is found
+        while (attachNextPending()) {
+            try {
+                return dexClassLoader.loadClass(name);
+            } catch (ClassNotFoundException e) {
+                notFound = e;
+            }
+        }
+        throw notFound;
     }
 
     @Nullable
     @Override
     public URL getResource(String name) {
-        if (AndroidSupport.isRunningAndroid()) {
-            return dexClassLoader.getResource(name);
-        } else {
+        if (!AndroidSupport.isRunningAndroid()) {
             return getParent().getResource(name);
         }
-    }
 
+        URL resource = dexClassLoader.getResource(name);
+        while (resource == null && attachNextPending()) {
+            resource = dexClassLoader.getResource(name);
+        }
+        return resource;
+    }
 
+    /**
+     * Starts dexing the class path entry in the background, its classes become visible
+     * once the dex files are ready and are either requested or {@link #awaitAll()} is called.
+     */
     @Override
     protected void addURL(URL url) {
         if (!AndroidSupport.isRunningAndroid()) {
@@ -95,29 +119,59 @@ public class DexBackedURLClassLoader extends URLClassLoader {
             return;
         }
 
-        if (loadedUrls.contains(url)) {
-            // already loaded
-            return;
+        synchronized (pending) {
+            if (!loadedUrls.add(url)) {
+                // already loaded
+                return;
+            }
+            File dexCache = new File(new AppDataDirGuesser().guess(), "dexCache");
+            File file = new File(url.getFile());
+            pending.add(DexCache.getInstance().dexAsync(dexCache, file));
         }
+    }
 
-        File dexCache = new File(new AppDataDirGuesser().guess(), "dexCache");
-        String filePath = url.getFile();
-        File file = new File(filePath);
-
-        HashCode hashCode = hasher.hash(file);
-        File jarDir = new File(dexCache, hashCode.toString());
-        if (!jarDir.exists()) {
-            GFileUtils.mkdirs(jarDir);
-            ScriptFactory.dexJar(file, jarDir);
+    /**
+     * Waits for all the class path entries of this class loader to be dexed and adds them.
+     */
+    public void awaitAll() {
+        //noinspection StatementWithEmptyBody
+        while (attachNextPending()) {
         }
+    }
 
-        File[] dexFiles = jarDir.listFiles(c -> c.getName().endsWith(".dex"));
-        if (dexFiles != null) {
-            for (File dexFile : dexFiles) {
-                addDexPath(dexFile.getAbsolutePath());
+    /**
+     * Waits for the oldest pending class path entry to be dexed and adds its dex files to
+     * the class loader, entries are added in the order they were added to the class path.
+     *
+     * @return false if there are no more pending entries
+     */
+    private boolean attachNextPending() {
+        synchronized (pending) {
+            Future<File> future = pending.peek();
+            if (future == null) {
+                return false;
+            }
+            File jarDir;
+            try {
+                jarDir = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ScriptCompilationException(e);
+            } catch (ExecutionException e) {
+                pending.poll();
+                throw new ScriptCompilationException(e.getCause());
+            }
+            pending.poll();
+
+            File[] dexFiles = jarDir.listFiles(c -> c.getName().endsWith(".dex"));
+            if (dexFiles != null) {
+                Arrays.sort(dexFiles);
+                for (File dexFile : dexFiles) {
+                    addDexPath(dexFile.getAbsolutePath());
+                }
             }
+            return true;
         }
-        loadedUrls.add(url);
     }
 
     public void addDexPath(String path) {
@@ -0,0 +1,253 @@
+package com.tyron.groovy;
+
+import android.util.Log;
+
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.OutputMode;
+import com.android.tools.r8.Version;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.tyron.builder.internal.hash.DefaultFileHasher;
+import com.tyron.builder.internal.hash.DefaultStreamHasher;
+import com.tyron.builder.internal.hash.FileHasher;
+import com.tyron.builder.util.internal.GFileUtils;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A content addressed cache of dexed class path entries, shared by all the
+ * {@link DexBackedURLClassLoader}s of the process.
+ *
+ * <p>Entries are dexed on a bounded pool of threads. Requests for the same file, even from
+ * different class loaders, share the same task. Entries that are not used are removed,
+ * least recently used first, once the cache grows past {@link #MAX_CACHE_SIZE}.</p>
+ */
+public class DexCache {
+
+    private static final String TAG = "DexCache";
+
+    /**
+     * The maximum size in bytes of the cache directory before unused entries are removed.
+     */
+    public static final long MAX_CACHE_SIZE = 512L * 1024 * 1024;
+
+    private static final long TEMP_DIR_MAX_AGE = 60 * 60 * 1000;
+
+    private static final DexCache INSTANCE = new DexCache();
+
+    public static DexCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final FileHasher mHasher = new DefaultFileHasher(new DefaultStreamHasher());
+    private final ExecutorService mExecutor;
+    private final Map<String, CompletableFuture<File>> mInFlight = new ConcurrentHashMap<>();
+    private final Striped<Lock> mLocks = Striped.lock(64);
+    /**
+     * Entries used by this process, these are never removed when trimming.
+     */
+    private final Set<String> mUsedEntries = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean mTrimScheduled = new AtomicBoolean();
+
+    private DexCache() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger count = new AtomicInteger();
+        mExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "DexCache-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Dexes the given jar file or classes directory in the background.
+     *
+     * @param cacheDir the directory where the dexed entries are stored
+     * @param file     the class path entry to dex
+     * @return a future of the directory containing the dex files of the entry
+     */
+    public CompletableFuture<File> dexAsync(File cacheDir, File file) {
+        String key = file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length();
+        CompletableFuture<File> future = mInFlight.computeIfAbsent(key, k ->
+                CompletableFuture.supplyAsync(() -> dex(cacheDir, file), mExecutor));
+        future.whenComplete((result, error) -> {
+            // completed entries are found on disk, failed ones can be tried again
+            mInFlight.remove(key, future);
+            scheduleTrim(cacheDir);
+        });
+        return future;
+    }
+
+    private File dex(File cacheDir, File file) {
+        String hash = hash(file).toString();
+        File jarDir = new File(cacheDir, hash);
+        mUsedEntries.add(hash);
+
+        Lock lock = mLocks.get(hash);
+        lock.lock();
+        try {
+            if (jarDir.exists()) {
+                // used by the LRU trimming
+                //noinspection ResultOfMethodCallIgnored
+                jarDir.setLastModified(System.currentTimeMillis());
+                return jarDir;
+            }
+
+            long start = System.currentTimeMillis();
+            File tempDir = new File(cacheDir, hash + ".tmp-" + System.nanoTime());
+            GFileUtils.mkdirs(tempDir);
+            try {
+                if (file.isDirectory()) {
+                    dexClassesDirectory(file, tempDir);
+                } else {
+                    ScriptFactory.dexJar(file, tempDir);
+                }
+                // only expose the dex files once they are complete, an interrupted
+                // build would otherwise leave a broken entry that is reused forever
+                if (!tempDir.renameTo(jarDir) && !jarDir.exists()) {
+                    throw new ScriptCompilationException("Unable to move " + tempDir + " to " + jarDir);
+                }
+            } finally {
+                GFileUtils.deleteQuietly(tempDir);
+            }
+            Log.d(TAG, "Dexed " + file.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
+            return jarDir;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hashes the class path entry along with the version of D8, so dex files are reused
+     * across builds until either the contents or the compiler changes. Directories, such as
+     * the classes of compiled build scripts, are hashed by the relative path and contents of
+     * their class files.
+     */
+    private HashCode hash(File file) {
+        Hasher result = Hashing.sha256().newHasher();
+        result.putString(Version.getVersionString(), StandardCharsets.UTF_8);
+        if (file.isDirectory()) {
+            List<File> classFiles = new ArrayList<>(
+                    FileUtils.listFiles(file, new String[]{"class"}, true));
+            Collections.sort(classFiles);
+            for (File classFile : classFiles) {
+                result.putString(file.toPath().relativize(classFile.toPath()).toString(),
+                        StandardCharsets.UTF_8);
+                result.putBytes(mHasher.hash(classFile).toByteArray());
+            }
+        } else {
+            result.putBytes(mHasher.hash(file).toByteArray());
+        }
+        return result.hash();
+    }
+
+    /**
+     * Dexes all the class files inside the given directory, used for class path entries that
+     * are directories such as the output of compiled build scripts.
+     */
+    private static void dexClassesDirectory(File classesDir, File outputDir) {
+        D8Command.Builder builder = D8Command.builder();
+        builder.setMinApiLevel(26);
+        builder.setDisableDesugaring(true);
+        builder.setMode(CompilationMode.DEBUG);
+        for (File classFile : FileUtils.listFiles(classesDir, new String[]{"class"}, true)) {
+            builder.addProgramFiles(classFile.toPath());
+        }
+        builder.setOutput(outputDir.toPath(), OutputMode.DexIndexed);
+        try {
+            D8.run(builder.build());
+        } catch (CompilationFailedException e) {
+            throw new ScriptCompilationException(e);
+        }
+    }
+
+    private void scheduleTrim(File cacheDir) {
+        if (!mInFlight.isEmpty() || !mTrimScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        mExecutor.execute(() -> {
+            try {
+                trim(cacheDir, MAX_CACHE_SIZE);
+            } finally {
+                mTrimScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Removes the least recently used entries until the cache directory is smaller than
+     * the given size. Entries used by this process are kept.
+     */
+    void trim(File cacheDir, long maxSize) {
+        File[] entries = cacheDir.listFiles(File::isDirectory);
+        if (entries == null) {
+            return;
+        }
+
+        long[] sizes = new long[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            sizes[i] = FileUtils.sizeOfDirectory(entries[i]);
+            total += sizes[i];
+        }
+        if (total <= maxSize) {
+            return;
+        }
+
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        long[] lastModified = new long[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            lastModified[i] = entries[i].lastModified();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastModified[i]));
+
+        for (int i : order) {
+            if (total <= maxSize) {
+                break;
+            }
+            File entry = entries[i];
+            if (mUsedEntries.contains(entry.getName())) {
+                continue;
+            }
+            if (entry.getName().contains(".tmp-")
+                && System.currentTimeMillis() - lastModified[i] < TEMP_DIR_MAX_AGE) {
+                // possibly still being written
+                continue;
+            }
+            Lock lock = mLocks.get(entry.getName());
+            lock.lock();
+            try {
+                GFileUtils.deleteQuietly(entry);
+            } finally {
+                lock.unlock();
+            }
+            total -= sizes[i];
+            Log.d(TAG, "Removed unused dex cache entry " + entry.getName());
+        }
+    }
+}
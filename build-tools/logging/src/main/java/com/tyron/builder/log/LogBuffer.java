@@ -0,0 +1,199 @@
+package com.tyron.builder.log;
+
+import com.tyron.builder.model.DiagnosticWrapper;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer of diagnostics. Every added diagnostic is given a
+ * sequence number, once the buffer is full the oldest diagnostics are overwritten.
+ *
+ * <p>Optionally, every diagnostic can also be written to a file so the complete log is
+ * still available even after it has been evicted from memory.</p>
+ */
+public class LogBuffer {
+
+    private final int mMask;
+    private final AtomicReferenceArray<DiagnosticWrapper> mEntries;
+    /**
+     * The sequence number stored on each slot, a slot is only readable once its
+     * sequence has been published here. While a slot is being written it holds
+     * {@link #writing(long)} of the sequence being written.
+     */
+    private final AtomicLongArray mPublished;
+    private final AtomicLong mNext = new AtomicLong();
+    private volatile long mStart;
+
+    private volatile Spill mSpill;
+
+    private static class Spill {
+        final ThreadPoolExecutor executor;
+        final Writer writer;
+
+        Spill(ThreadPoolExecutor executor, Writer writer) {
+            this.executor = executor;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * @param capacity the maximum amount of diagnostics kept in memory, rounded up to the
+     *                 next power of two
+     */
+    public LogBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mMask = size - 1;
+        mEntries = new AtomicReferenceArray<>(size);
+        mPublished = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mPublished.set(i, writing(-1));
+        }
+    }
+
+    /**
+     * Adds a diagnostic to this buffer, safe to call from any thread.
+     *
+     * @return the sequence number of the added diagnostic
+     */
+    public long add(DiagnosticWrapper diagnostic) {
+        long sequence = mNext.getAndIncrement();
+        int index = (int) (sequence & mMask);
+        // readers check the published sequence before and after reading the entry, so it
+        // has to be invalidated before the entry of an older sequence is overwritten
+        mPublished.set(index, writing(sequence));
+        mEntries.set(index, diagnostic);
+        mPublished.set(index, sequence);
+        spill(diagnostic);
+        return sequence;
+    }
+
+    /**
+     * @return the sequence number that will be given to the next added diagnostic
+     */
+    public long getSequence() {
+        return mNext.get();
+    }
+
+    /**
+     * Removes all the diagnostics currently in memory, the spill file is kept.
+     */
+    public void clear() {
+        mStart = mNext.get();
+    }
+
+    /**
+     * Copies the published diagnostics that are still in memory, ordered by their sequence
+     * number. Diagnostics that are being added concurrently may not be included.
+     */
+    public List<DiagnosticWrapper> snapshot() {
+        long end = mNext.get();
+        long start = Math.max(mStart, end - mEntries.length());
+        List<DiagnosticWrapper> list = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int index = (int) (sequence & mMask);
+            long published = mPublished.get(index);
+            if (published != sequence) {
+                long written = published < 0 ? -published - 2 : published;
+                if (written < sequence) {
+                    // not yet published by its writer, newer items are not visible yet as well
+                    break;
+                }
+                // overwritten by a newer diagnostic, skip it
+                continue;
+            }
+            DiagnosticWrapper diagnostic = mEntries.get(index);
+            if (mPublished.get(index) != sequence) {
+                // overwritten while we were reading, the entry may belong to another sequence
+                continue;
+            }
+            list.add(diagnostic);
+        }
+        return list;
+    }
+
+    /**
+     * @return the value stored in {@link #mPublished} while the given sequence is written,
+     * always negative so it never equals a published sequence
+     */
+    private static long writing(long sequence) {
+        return -sequence - 2;
+    }
+
+    /**
+     * Sets the file where every diagnostic added to this buffer is also written to.
+     * The file is truncated. Pass null to stop writing to the previous file.
+     */
+    public synchronized void setSpillFile(File file) throws IOException {
+        closeSpillFile();
+        if (file == null) {
+            return;
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8));
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "LogBuffer-spill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mSpill = new Spill(executor, writer);
+    }
+
+    private synchronized void closeSpillFile() {
+        Spill spill = mSpill;
+        if (spill == null) {
+            return;
+        }
+        mSpill = null;
+        spill.executor.execute(() -> {
+            try {
+                spill.writer.close();
+            } catch (IOException ignored) {
+                // the log file is best effort
+            }
+        });
+        spill.executor.shutdown();
+    }
+
+    private void spill(DiagnosticWrapper diagnostic) {
+        Spill spill = mSpill;
+        if (spill == null) {
+            return;
+        }
+        try {
+            spill.executor.execute(() -> {
+                try {
+                    spill.writer.write(diagnostic.getKind() + ": " + diagnostic.getMessage(null));
+                    spill.writer.write('\n');
+                    // only flush once the diagnostics added so far have been written
+                    if (spill.executor.getQueue().isEmpty()) {
+                        spill.writer.flush();
+                    }
+                } catch (IOException ignored) {
+                    // the log file is best effort
+                }
+            });
+        } catch (RuntimeException ignored) {
+            // the spill file has been closed concurrently
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.tyron.builder.log;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.view.Choreographer;
 
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
@@ -11,8 +12,11 @@ import com.tyron.builder.model.DiagnosticWrapper;
 
 import javax.tools.Diagnostic;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LogViewModel extends ViewModel {
 
@@ -22,9 +26,24 @@ public class LogViewModel extends ViewModel {
     public static final int DEBUG = totalCount++;
     public static final int IDE = totalCount++;
 
+    /**
+     * The maximum amount of diagnostics kept in memory for each log,
+     * use {@link #setLogFile(int, File)} to keep the complete log.
+     */
+    private static final int MAX_LOG_SIZE = 8192;
+
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private List<MutableLiveData<List<DiagnosticWrapper>>> log;
+    private final List<LogBuffer> buffers = new ArrayList<>();
+    private final List<AtomicBoolean> pendingFrames = new ArrayList<>();
+
+    public LogViewModel() {
+        for (int i = 0; i < totalCount; i++) {
+            buffers.add(new LogBuffer(MAX_LOG_SIZE));
+            pendingFrames.add(new AtomicBoolean());
+        }
+    }
 
     public LiveData<List<DiagnosticWrapper>> getLogs(int id) {
         if (log == null) {
@@ -37,8 +56,24 @@ public class LogViewModel extends ViewModel {
         if (log == null) {
             log = init();
         }
+        LogBuffer buffer = buffers.get(id);
+        buffer.clear();
+        for (DiagnosticWrapper diagnostic : diagnostics) {
+            buffer.add(diagnostic);
+        }
         MutableLiveData<List<DiagnosticWrapper>> logData = this.log.get(id);
-        logData.setValue(diagnostics);
+        logData.setValue(buffer.snapshot());
+    }
+
+    /**
+     * Sets the file where all the diagnostics of the given log id are written to, unlike the
+     * logs kept in memory, this file contains every diagnostic and can be used to export them.
+     *
+     * @param id   the log id
+     * @param file the file to write to, it is truncated. Null to stop writing to a file.
+     */
+    public void setLogFile(int id, File file) throws IOException {
+        buffers.get(id).setSpillFile(file);
     }
 
     private List<MutableLiveData<List<DiagnosticWrapper>>> init() {
@@ -50,8 +85,16 @@ public class LogViewModel extends ViewModel {
     }
 
     public void clear(int id) {
-        MutableLiveData<List<DiagnosticWrapper>> data = (MutableLiveData<List<DiagnosticWrapper>>) getLogs(id);
-        data.setValue(new ArrayList<>());
+        buffers.get(id).clear();
+        if (Thread.currentThread() == Looper.getMainLooper().getThread()) {
+            MutableLiveData<List<DiagnosticWrapper>> data = (MutableLiveData<List<DiagnosticWrapper>>) getLogs(id);
+            data.setValue(new ArrayList<>());
+        } else {
+            mainHandler.post(() -> {
+                MutableLiveData<List<DiagnosticWrapper>> data = (MutableLiveData<List<DiagnosticWrapper>>) getLogs(id);
+                data.setValue(buffers.get(id).snapshot());
+            });
+        }
     }
 
     public void e(int id, DiagnosticWrapper diagnostic) {
@@ -92,26 +135,43 @@ public class LogViewModel extends ViewModel {
      * @param diagnosticWrapper the DiagnosticWrapper to add
      */
     private void add(int id, DiagnosticWrapper diagnosticWrapper) {
-        List<DiagnosticWrapper> list = getLogs(id).getValue();
-        if (list == null) {
-            list = new ArrayList<>();
-        }
-        list.add(diagnosticWrapper);
-        maybePost(id, list);
+        buffers.get(id).add(diagnosticWrapper);
+        scheduleUpdate(id);
     }
 
     /**
-     * Checks if the current thread is the main thread and does not post it if so
+     * Schedules the delivery of the logs on the next frame, any diagnostics added before
+     * the frame is drawn are delivered together so there is at most one update per frame.
      *
-     * @param id      log id to set the value to
-     * @param current Value to set to the ViewModel
+     * @param id log id to deliver
      */
-    private void maybePost(int id, List<DiagnosticWrapper> current) {
-        if (Thread.currentThread() != Looper.getMainLooper().getThread()) {
-            // Using postValue will ignore all values except the last one, we don't want that
-            mainHandler.post(() -> log.get(id).setValue(current));
+    private void scheduleUpdate(int id) {
+        if (!pendingFrames.get(id).compareAndSet(false, true)) {
+            return;
+        }
+        // the Choreographer must be retrieved from the main thread
+        Runnable post = () -> Choreographer.getInstance().postFrameCallback(frameTimeNanos -> {
+            pendingFrames.get(id).set(false);
+            MutableLiveData<List<DiagnosticWrapper>> data = (MutableLiveData<List<DiagnosticWrapper>>) getLogs(id);
+            data.setValue(buffers.get(id).snapshot());
+        });
+        if (Thread.currentThread() == Looper.getMainLooper().getThread()) {
+            post.run();
         } else {
-            log.get(id).setValue(current);
+            mainHandler.post(post);
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+
+        for (LogBuffer buffer : buffers) {
+            try {
+                buffer.setSpillFile(null);
+            } catch (IOException ignored) {
+                // closing never throws
+            }
         }
     }
 }
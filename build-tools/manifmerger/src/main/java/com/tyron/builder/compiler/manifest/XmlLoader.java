@@ -1,17 +1,19 @@
 package com.tyron.builder.compiler.manifest;
 
 import com.google.common.base.Optional;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.manifest.blame.SourceFile;
 import com.tyron.builder.util.PositionXmlParser;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.openjdk.javax.xml.parsers.ParserConfigurationException;
 
@@ -20,6 +22,31 @@ import org.openjdk.javax.xml.parsers.ParserConfigurationException;
  */
 public final class XmlLoader {
 
+    private static final int MAX_CACHED_DOCUMENTS = 256;
+
+    /**
+     * The documents parsed from files, keyed by the file and only used again while the hash
+     * of its contents is the same. The merger modifies the documents it loads so only copies
+     * of the cached documents are handed out.
+     */
+    private static final Map<File, CachedDocument> sDocumentCache =
+            new LinkedHashMap<File, CachedDocument>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<File, CachedDocument> eldest) {
+                    return size() > MAX_CACHED_DOCUMENTS;
+                }
+            };
+
+    private static class CachedDocument {
+        private final HashCode mHash;
+        private final Document mDocument;
+
+        private CachedDocument(HashCode hash, Document document) {
+            mHash = hash;
+            mDocument = document;
+        }
+    }
+
     private XmlLoader() {}
 
     /**
@@ -37,9 +64,7 @@ public final class XmlLoader {
             XmlDocument.Type type,
             Optional<String> mainManifestPackageName)
             throws IOException, SAXException, ParserConfigurationException {
-        InputStream inputStream = new BufferedInputStream(new FileInputStream(xmlFile));
-
-        Document domDocument = PositionXmlParser.parse(inputStream);
+        Document domDocument = parse(xmlFile);
         return domDocument != null ? new XmlDocument(
                 new SourceFile(xmlFile, displayName),
                 selectors,
@@ -80,4 +105,26 @@ public final class XmlLoader {
                 mainManifestPackageName)
                 : null;
     }
+
+    private static Document parse(File xmlFile)
+            throws IOException, SAXException, ParserConfigurationException {
+        byte[] data = Files.readAllBytes(xmlFile.toPath());
+        HashCode hash = Hashing.sha256().hashBytes(data);
+
+        Document document;
+        synchronized (sDocumentCache) {
+            CachedDocument cached = sDocumentCache.get(xmlFile);
+            document = cached != null && cached.mHash.equals(hash) ? cached.mDocument : null;
+        }
+        if (document == null) {
+            document = PositionXmlParser.parse(data);
+            synchronized (sDocumentCache) {
+                sDocumentCache.put(xmlFile, new CachedDocument(hash, document));
+            }
+        }
+        // reading a DOM from several threads is not guaranteed to be safe
+        synchronized (document) {
+            return PositionXmlParser.copyDocument(document);
+        }
+    }
 }
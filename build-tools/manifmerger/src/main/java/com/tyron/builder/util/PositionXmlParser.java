@@ -419,6 +419,47 @@ public class PositionXmlParser {
         return xml;
     }
 
+    /**
+     * Returns a deep copy of a document returned by one of the parse methods, the copy keeps
+     * the position information so it can be used in place of parsing the XML again.
+     *
+     * @param document the parsed document
+     * @return the copy of the document
+     */
+    @NotNull
+    public static Document copyDocument(@NotNull Document document)
+            throws ParserConfigurationException {
+        Document copy = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+        copy.setUserData(CONTENT_KEY, document.getUserData(CONTENT_KEY), null);
+
+        NodeList children = document.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.DOCUMENT_TYPE_NODE) {
+                continue;
+            }
+            Node imported = copy.importNode(child, true);
+            copy.appendChild(imported);
+            copyPositions(child, imported);
+        }
+        return copy;
+    }
+
+    private static void copyPositions(@NotNull Node from, @NotNull Node to) {
+        Object position = from.getUserData(POS_KEY);
+        if (position != null) {
+            to.setUserData(POS_KEY, position, null);
+        }
+
+        Node fromChild = from.getFirstChild();
+        Node toChild = to.getFirstChild();
+        while (fromChild != null && toChild != null) {
+            copyPositions(fromChild, toChild);
+            fromChild = fromChild.getNextSibling();
+            toChild = toChild.getNextSibling();
+        }
+    }
+
     /**
      * Returns the position for the given node. This is the start position. The end position can be
      * obtained via {@link Position#getEnd()}.
@@ -3,12 +3,24 @@ package com.tyron.builder.project;
 import androidx.annotation.Nullable;
 
 import com.tyron.builder.model.ModuleSettings;
+import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.KotlinModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
 import com.tyron.builder.project.impl.JavaModuleImpl;
 import com.tyron.builder.project.impl.ModuleImpl;
 
+import com.tyron.builder.project.util.SourceDirectoryWatcher.ChangeType;
+
 import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ModuleUtil {
 
@@ -32,4 +44,73 @@ public class ModuleUtil {
                 return new AndroidModuleImpl(directory);
         }
     }
+
+    /**
+     * @return the directories containing the files that the module keeps track of
+     */
+    public static Set<File> getSourceDirectories(Module module) {
+        Set<File> directories = new LinkedHashSet<>();
+        if (module instanceof JavaModule) {
+            directories.add(((JavaModule) module).getJavaDirectory());
+        }
+        if (module instanceof KotlinModule) {
+            directories.add(((KotlinModule) module).getKotlinDirectory());
+        }
+        if (module instanceof AndroidModule) {
+            directories.add(((AndroidModule) module).getAndroidResourcesDirectory());
+        }
+        return directories;
+    }
+
+    /**
+     * Updates the source files of the module with the changes made to the file system.
+     */
+    public static void applyChanges(Module module, Map<File, ChangeType> changes) {
+        Set<Path> changedPaths = new HashSet<>();
+        for (File file : changes.keySet()) {
+            changedPaths.add(file.toPath());
+        }
+        synchronized (module) {
+            if (module instanceof JavaModule) {
+                JavaModule javaModule = (JavaModule) module;
+                // the package of a changed file may have changed as well
+                for (String className : findClasses(javaModule.getJavaFiles(), changedPaths)) {
+                    javaModule.removeJavaFile(className);
+                }
+                changes.forEach((file, type) -> {
+                    if (type != ChangeType.REMOVED && file.getName().endsWith(".java")) {
+                        javaModule.addJavaFile(file);
+                    }
+                });
+            }
+            if (module instanceof KotlinModule) {
+                KotlinModule kotlinModule = (KotlinModule) module;
+                for (String className : findClasses(kotlinModule.getKotlinFiles(), changedPaths)) {
+                    kotlinModule.removeKotlinFile(className);
+                }
+                changes.forEach((file, type) -> {
+                    if (type != ChangeType.REMOVED && file.getName().endsWith(".kt")) {
+                        kotlinModule.addKotlinFile(file);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the classes whose file is one of the changed paths or is inside one of them,
+     * if it is a directory
+     */
+    private static List<String> findClasses(Map<String, File> files, Set<Path> changedPaths) {
+        List<String> classes = new ArrayList<>();
+        files.forEach((className, classFile) -> {
+            for (Path path = classFile.toPath(); path != null; path = path.getParent()) {
+                if (changedPaths.contains(path)) {
+                    classes.add(className);
+                    break;
+                }
+            }
+        });
+        return classes;
+    }
 }
@@ -13,6 +13,8 @@ import com.google.common.graph.MutableGraph;
 import com.tyron.builder.model.ProjectSettings;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
+import com.tyron.builder.project.listener.ProjectFileListener;
+import com.tyron.builder.project.util.SourceDirectoryWatcher;
 
 import org.jetbrains.kotlin.com.intellij.util.messages.MessageBusConnection;
 import org.jetbrains.kotlin.com.intellij.util.messages.MessageBusFactory;
@@ -26,11 +28,19 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 @SuppressWarnings("UnstableApiUsage")
 public class Project {
@@ -44,6 +54,16 @@ public class Project {
     private volatile boolean mCompiling;
     private volatile boolean mIndexing;
 
+    private SourceDirectoryWatcher mWatcher;
+    private ExecutorService mUpdateExecutor;
+    private final List<ProjectFileListener> mFileListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Modules whose changes were lost by the watcher, they are indexed again once the
+     * project is neither compiling nor indexing.
+     */
+    private final Set<Module> mPendingReindex = new LinkedHashSet<>();
+
     MutableGraph<Module> graph = GraphBuilder
             .directed()
             .allowsSelfLoops(false)
@@ -62,10 +82,16 @@ public class Project {
 
     public void setCompiling(boolean compiling) {
         mCompiling = compiling;
+        if (!compiling) {
+            scheduleReindex();
+        }
     }
 
     public void setIndexing(boolean indexing) {
         mIndexing = indexing;
+        if (!indexing) {
+            scheduleReindex();
+        }
     }
 
     public boolean isIndexing() {
@@ -79,18 +105,176 @@ public class Project {
         graph.addNode(mMainModule);
         addEdges(graph, mMainModule);
         Set<Module> modules = Graphs.reachableNodes(graph, mMainModule);
+        invokeAll(modules, Module::open);
         for (Module module : modules) {
-            module.open();
             File rootFile = module.getRootFile();
             mModules.put(rootFile.getName(), module);
         }
     }
 
+    /**
+     * Indexes all the modules in parallel, each module also indexes its
+     * libraries on their own task on the same pool.
+     */
     public void index() throws IOException {
         Set<Module> modules = Graphs.reachableNodes(graph, mMainModule);
-        for (Module module : modules) {
+        invokeAll(modules, module -> {
             module.clear();
             module.index();
+        });
+    }
+
+    /**
+     * Starts watching the source directories of the modules, files that are changed
+     * outside of the editor are added or removed from the module without indexing it again.
+     */
+    public synchronized void startWatching() throws IOException {
+        if (mWatcher != null) {
+            return;
+        }
+        // updates run in order on their own thread, so the watcher keeps draining events
+        ExecutorService updateExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Project-update");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mUpdateExecutor = updateExecutor;
+        mWatcher = new SourceDirectoryWatcher(new SourceDirectoryWatcher.Listener() {
+            @Override
+            public void onFilesChanged(@NonNull Map<File, SourceDirectoryWatcher.ChangeType> changes) {
+                try {
+                    updateExecutor.execute(() -> applyChanges(changes));
+                } catch (RejectedExecutionException e) {
+                    // no longer watching
+                }
+            }
+
+            @Override
+            public void onOverflow(@NonNull File root) {
+                Module module = findModule(root);
+                if (module == null) {
+                    return;
+                }
+                synchronized (mPendingReindex) {
+                    mPendingReindex.add(module);
+                }
+                scheduleReindex();
+            }
+        });
+        for (Module module : mModules.values()) {
+            for (File directory : ModuleUtil.getSourceDirectories(module)) {
+                mWatcher.watch(directory);
+            }
+        }
+    }
+
+    private void applyChanges(Map<File, SourceDirectoryWatcher.ChangeType> changes) {
+        Map<Module, Map<File, SourceDirectoryWatcher.ChangeType>> byModule = new LinkedHashMap<>();
+        changes.forEach((file, type) -> {
+            Module module = findModule(file);
+            if (module != null) {
+                byModule.computeIfAbsent(module, m -> new LinkedHashMap<>()).put(file, type);
+            }
+        });
+        byModule.forEach((module, moduleChanges) -> {
+            ModuleUtil.applyChanges(module, moduleChanges);
+            for (ProjectFileListener listener : mFileListeners) {
+                listener.onFilesChanged(module, moduleChanges);
+            }
+        });
+    }
+
+    public synchronized void stopWatching() {
+        if (mWatcher != null) {
+            mWatcher.close();
+            mWatcher = null;
+        }
+        if (mUpdateExecutor != null) {
+            mUpdateExecutor.shutdownNow();
+            mUpdateExecutor = null;
+        }
+        synchronized (mPendingReindex) {
+            mPendingReindex.clear();
+        }
+    }
+
+    private synchronized void scheduleReindex() {
+        if (mUpdateExecutor != null) {
+            mUpdateExecutor.execute(this::reindexPending);
+        }
+    }
+
+    /**
+     * Indexes the modules whose changes were lost again, unless a build or indexing is
+     * running since clearing a module would remove the files and libraries they are reading.
+     * Those are indexed again once the project is no longer compiling or indexing.
+     */
+    private void reindexPending() {
+        List<Module> modules;
+        synchronized (mPendingReindex) {
+            if (mCompiling || mIndexing || mPendingReindex.isEmpty()) {
+                return;
+            }
+            modules = new ArrayList<>(mPendingReindex);
+            mPendingReindex.clear();
+            mIndexing = true;
+        }
+        try {
+            for (Module module : modules) {
+                module.clear();
+                module.index();
+                for (ProjectFileListener listener : mFileListeners) {
+                    listener.onModuleReindexed(module);
+                }
+            }
+        } finally {
+            setIndexing(false);
+        }
+    }
+
+    public void addFileListener(ProjectFileListener listener) {
+        mFileListeners.add(listener);
+    }
+
+    public void removeFileListener(ProjectFileListener listener) {
+        mFileListeners.remove(listener);
+    }
+
+    @Nullable
+    private Module findModule(File file) {
+        for (Module module : mModules.values()) {
+            if (file.toPath().startsWith(module.getRootFile().toPath())) {
+                return module;
+            }
+        }
+        return null;
+    }
+
+    private interface ModuleAction {
+        void execute(Module module) throws IOException;
+    }
+
+    private static void invokeAll(Collection<Module> modules, ModuleAction action) throws IOException {
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for (Module module : modules) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                action.execute(module);
+                return null;
+            }));
+        }
+        try {
+            ForkJoinPool.commonPool().submit(() -> ForkJoinTask.invokeAll(tasks)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            // exceptions thrown by the tasks may be wrapped several times by the pool
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IOException(e.getCause());
         }
     }
 
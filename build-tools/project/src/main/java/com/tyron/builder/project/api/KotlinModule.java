@@ -18,4 +18,6 @@ public interface KotlinModule extends Module {
     File getKotlinFile(String packageName);
 
     void addKotlinFile(File file);
+
+    void removeKotlinFile(String packageName);
 }
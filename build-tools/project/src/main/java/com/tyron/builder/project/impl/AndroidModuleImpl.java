@@ -193,6 +193,11 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
         mKotlinFiles.put(fqn, file);
     }
 
+    @Override
+    public void removeKotlinFile(String packageName) {
+        mKotlinFiles.remove(packageName);
+    }
+
     @Override
     public void clear() {
         super.clear();
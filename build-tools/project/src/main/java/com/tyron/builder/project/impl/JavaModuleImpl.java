@@ -8,6 +8,7 @@ import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.util.PackageTrie;
+import com.tyron.builder.project.util.ZipCentralDirectory;
 import com.tyron.common.util.StringSearch;
 
 import org.apache.commons.io.FileUtils;
@@ -18,12 +19,15 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -103,7 +107,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     }
 
     @Override
-    public List<File> getLibraries() {
+    public synchronized List<File> getLibraries() {
         return ImmutableList.copyOf(mLibraries);
     }
 
@@ -113,10 +117,11 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             return;
         }
         try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
+            // reading the jar also checks if it is valid
             putJar(jar);
-            mLibraries.add(jar);
+            synchronized (this) {
+                mLibraries.add(jar);
+            }
         } catch (IOException e) {
             // ignored, don't put the jar
         }
@@ -126,28 +131,46 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         if (file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
+        List<String> classes = readClassNames(file);
+        synchronized (this) {
+            for (String packageName : classes) {
+                mClassFiles.put(packageName, file);
+                mClassIndex.add(packageName);
+            }
+        }
+    }
 
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
+    /**
+     * Reads the fully qualified names of the top level classes in a jar. Only the central
+     * directory of the jar is read, falling back to {@link JarFile} for jars it cannot read.
+     */
+    private static List<String> readClassNames(File file) throws IOException {
+        List<String> classes = new ArrayList<>();
+        Consumer<String> consumer = name -> {
+            // We only want top level classes, if it contains $ then
+            // its an inner class, we ignore it
+            if (name.contains("$")) {
+                return;
+            }
 
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
+            classes.add(name.replace("/", ".")
+                    .substring(0, name.length() - ".class".length()));
+        };
+        try {
+            ZipCentralDirectory.forEachEntryName(file, ".class", consumer);
+        } catch (IOException e) {
+            classes.clear();
+            try (JarFile jar = new JarFile(file)) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        consumer.accept(entry.getName());
+                    }
                 }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
-
-                mClassFiles.put(packageName, file);
-                mClassIndex.add(packageName);
             }
         }
+        return classes;
     }
 
     @NonNull
@@ -243,18 +266,14 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
     @Override
     public void index() {
-        try {
-            putJar(getBootstrapJarFile());
-        } catch (IOException e) {
-            // ignored
-        }
-
-        if (getJavaDirectory().exists()) {
-            FileUtils.iterateFiles(getJavaDirectory(),
-                    FileFilterUtils.suffixFileFilter(".java"),
-                    TrueFileFilter.INSTANCE
-            ).forEachRemaining(this::addJavaFile);
-        }
+        List<ForkJoinTask<?>> jarTasks = new ArrayList<>();
+        jarTasks.add(ForkJoinTask.adapt(() -> {
+            try {
+                putJar(getBootstrapJarFile());
+            } catch (IOException e) {
+                // ignored
+            }
+        }));
 
         File[] libraryDirectories = new File(getBuildDirectory(), "libs")
                 .listFiles(File::isDirectory);
@@ -262,10 +281,30 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             for (File directory : libraryDirectories) {
                 File check = new File(directory, "classes.jar");
                 if (check.exists()) {
-                    addLibrary(check);
+                    jarTasks.add(ForkJoinTask.adapt(() -> addLibrary(check)));
                 }
             }
         }
+
+        // each jar is read on its own task while the sources are being walked
+        for (ForkJoinTask<?> task : jarTasks) {
+            task.fork();
+        }
+
+        if (getJavaDirectory().exists()) {
+            List<File> javaFiles = new ArrayList<>();
+            FileUtils.iterateFiles(getJavaDirectory(),
+                    FileFilterUtils.suffixFileFilter(".java"),
+                    TrueFileFilter.INSTANCE
+            ).forEachRemaining(javaFiles::add);
+            synchronized (this) {
+                javaFiles.forEach(this::addJavaFile);
+            }
+        }
+
+        for (ForkJoinTask<?> task : jarTasks) {
+            task.join();
+        }
     }
 
     @Override
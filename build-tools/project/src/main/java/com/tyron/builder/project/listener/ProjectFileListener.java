@@ -0,0 +1,23 @@
+package com.tyron.builder.project.listener;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.util.SourceDirectoryWatcher.ChangeType;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Notified when source files of a module are changed outside of the editor, after the
+ * module has been updated. Called from a background thread.
+ */
+public interface ProjectFileListener {
+
+    void onFilesChanged(@NonNull Module module, @NonNull Map<File, ChangeType> changes);
+
+    /**
+     * Called when the changes of the module are unknown and it has been indexed again.
+     */
+    void onModuleReindexed(@NonNull Module module);
+}
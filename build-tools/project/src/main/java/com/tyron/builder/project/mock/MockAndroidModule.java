@@ -149,6 +149,11 @@ public class MockAndroidModule extends MockJavaModule implements AndroidModule {
         mKotlinFiles.put(StringSearch.packageName(file), file);
     }
 
+    @Override
+    public void removeKotlinFile(String packageName) {
+        mKotlinFiles.remove(packageName);
+    }
+
     @Override
     public Map<String, File> getInjectedClasses() {
         return null;
@@ -0,0 +1,194 @@
+package com.tyron.builder.project.util;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.builder.internal.watch.registry.impl.LinuxFileWatcherRegistryFactory.LinuxFileWatcher;
+
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.internal.jni.InsufficientResourcesForWatchingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watches directory trees for changes made outside of the editor, such as a git checkout.
+ *
+ * Every directory of the tree is watched by a {@link LinuxFileWatcher}, and directories
+ * created afterwards are watched as they appear. The changes that the watcher coalesces
+ * within one window are delivered in a single batch on the watcher thread.
+ */
+public class SourceDirectoryWatcher {
+
+    private static final String TAG = SourceDirectoryWatcher.class.getSimpleName();
+
+    public enum ChangeType {
+        CREATED,
+        MODIFIED,
+        REMOVED
+    }
+
+    /**
+     * Called on the watcher thread, which does not receive events while a listener runs.
+     * Listeners should hand long updates to another thread.
+     */
+    public interface Listener {
+
+        /**
+         * Called with the files that have changed, newest change per file.
+         * Files inside a newly created directory are reported as created.
+         */
+        void onFilesChanged(@NonNull Map<File, ChangeType> changes);
+
+        /**
+         * Called when events have been lost, everything under the given root may have changed.
+         */
+        void onOverflow(@NonNull File root);
+    }
+
+    private final LinuxFileWatcher mWatcher;
+    private final Listener mListener;
+    private final Set<Path> mRoots = ConcurrentHashMap.newKeySet();
+
+    // only accessed on the watcher thread
+    private Map<File, ChangeType> mChanges = new LinkedHashMap<>();
+    private final Set<File> mOverflows = new LinkedHashSet<>();
+
+    public SourceDirectoryWatcher(@NonNull Listener listener) throws IOException {
+        mListener = listener;
+        mWatcher = new LinuxFileWatcher(new LinuxFileWatcher.Callback() {
+            @Override
+            public void reportChangeEvent(FileWatchEvent.ChangeType type, String absolutePath) {
+                onChange(type, Paths.get(absolutePath));
+            }
+
+            @Override
+            public void reportOverflow(String absolutePath) {
+                mOverflows.add(getRoot(Paths.get(absolutePath)).toFile());
+            }
+
+            @Override
+            public void reportBatchComplete() {
+                deliver();
+            }
+
+            @Override
+            public void reportFailure(Throwable failure) {
+                // the watcher stops, changes made from now on are unknown
+                Log.w(TAG, "Unable to watch source directories", failure);
+                for (Path root : mRoots) {
+                    mOverflows.add(root.toFile());
+                }
+                deliver();
+            }
+
+            @Override
+            public void reportTermination() {
+            }
+        });
+    }
+
+    /**
+     * Starts watching the given directory and all of its sub directories.
+     */
+    public void watch(@NonNull File root) throws IOException {
+        Path path = root.toPath().toAbsolutePath();
+        if (!Files.isDirectory(path) || !mRoots.add(path)) {
+            return;
+        }
+        registerTree(path, null);
+    }
+
+    public void close() {
+        mWatcher.shutdown();
+        mRoots.clear();
+    }
+
+    private void onChange(FileWatchEvent.ChangeType type, Path path) {
+        if (type == FileWatchEvent.ChangeType.CREATED && Files.isDirectory(path)) {
+            // files may have been added before the new directory is watched
+            try {
+                registerTree(path, mChanges);
+            } catch (IOException e) {
+                mOverflows.add(getRoot(path).toFile());
+            }
+            return;
+        }
+
+        ChangeType changeType = type == FileWatchEvent.ChangeType.CREATED
+                ? ChangeType.CREATED
+                : type == FileWatchEvent.ChangeType.REMOVED
+                        ? ChangeType.REMOVED
+                        : ChangeType.MODIFIED;
+        // files found in a new directory are reported as created before their own events
+        mChanges.merge(path.toFile(), changeType, (previous, next) ->
+                previous == ChangeType.CREATED && next == ChangeType.MODIFIED ? previous : next);
+    }
+
+    private void deliver() {
+        for (File overflow : mOverflows) {
+            mListener.onOverflow(overflow);
+        }
+        mOverflows.clear();
+
+        if (!mChanges.isEmpty()) {
+            Map<File, ChangeType> changes = mChanges;
+            mChanges = new LinkedHashMap<>();
+            mListener.onFilesChanged(Collections.unmodifiableMap(changes));
+        }
+    }
+
+    private void registerTree(Path start, Map<File, ChangeType> created) throws IOException {
+        List<File> directories = new ArrayList<>();
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                directories.add(dir.toFile());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (created != null) {
+                    created.put(file.toFile(), ChangeType.CREATED);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // deleted while walking, its removal is reported by its parent
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        try {
+            mWatcher.startWatching(directories);
+        } catch (InsufficientResourcesForWatchingException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private Path getRoot(Path path) {
+        for (Path root : mRoots) {
+            if (path.startsWith(root)) {
+                return root;
+            }
+        }
+        return path;
+    }
+}
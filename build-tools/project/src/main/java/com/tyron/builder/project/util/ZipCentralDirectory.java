@@ -0,0 +1,119 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads the names of the entries of a zip file straight from its central directory.
+ *
+ * Unlike {@link java.util.zip.ZipFile}, only the central directory is mapped into memory, the
+ * local headers and the data of the entries are never read. A file that is not a valid zip
+ * file results in an {@link IOException}, so this can also be used to validate a jar.
+ */
+public class ZipCentralDirectory {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    /**
+     * Visits the name of every entry in the zip file that ends with the given suffix.
+     *
+     * @param file     the zip file to read
+     * @param suffix   only names ending with this suffix are decoded and visited
+     * @param consumer receives the name of each matching entry
+     * @throws IOException if the file cannot be read or is not a valid zip file
+     */
+    public static void forEachEntryName(@NonNull File file,
+                                        @NonNull String suffix,
+                                        @NonNull Consumer<String> consumer) throws IOException {
+        byte[] suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size < EOCD_MIN_SIZE) {
+                throw new IOException("Not a zip file: " + file);
+            }
+
+            long tailSize = Math.min(size, EOCD_MIN_SIZE + MAX_COMMENT_SIZE);
+            MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY,
+                    size - tailSize, tailSize);
+            tail.order(ByteOrder.LITTLE_ENDIAN);
+
+            int eocd = -1;
+            for (int i = (int) tailSize - EOCD_MIN_SIZE; i >= 0; i--) {
+                if (tail.getInt(i) == EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd == -1) {
+                throw new IOException("Unable to find the central directory of " + file);
+            }
+
+            int entries = tail.getShort(eocd + 10) & 0xFFFF;
+            long directorySize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+            long directoryOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+            if (entries == 0xFFFF || directorySize == 0xFFFFFFFFL
+                || directoryOffset == 0xFFFFFFFFL) {
+                throw new IOException("Zip64 files are not supported: " + file);
+            }
+            if (directoryOffset + directorySize > size) {
+                throw new IOException("Invalid central directory of " + file);
+            }
+
+            MappedByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY,
+                    directoryOffset, directorySize);
+            directory.order(ByteOrder.LITTLE_ENDIAN);
+
+            int position = 0;
+            for (int i = 0; i < entries; i++) {
+                if (position + CENTRAL_HEADER_SIZE > directorySize
+                    || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                    throw new IOException("Invalid central directory entry in " + file);
+                }
+                int nameLength = directory.getShort(position + 28) & 0xFFFF;
+                int extraLength = directory.getShort(position + 30) & 0xFFFF;
+                int commentLength = directory.getShort(position + 32) & 0xFFFF;
+                int nameStart = position + CENTRAL_HEADER_SIZE;
+                if (nameStart + nameLength > directorySize) {
+                    throw new IOException("Invalid central directory entry in " + file);
+                }
+
+                if (endsWith(directory, nameStart, nameLength, suffixBytes)) {
+                    byte[] name = new byte[nameLength];
+                    for (int j = 0; j < nameLength; j++) {
+                        name[j] = directory.get(nameStart + j);
+                    }
+                    consumer.accept(new String(name, StandardCharsets.UTF_8));
+                }
+
+                position = nameStart + nameLength + extraLength + commentLength;
+            }
+        }
+    }
+
+    private static boolean endsWith(MappedByteBuffer buffer, int start, int length,
+                                    byte[] suffix) {
+        if (length < suffix.length) {
+            return false;
+        }
+        int offset = start + length - suffix.length;
+        for (int i = 0; i < suffix.length; i++) {
+            if (buffer.get(offset + i) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
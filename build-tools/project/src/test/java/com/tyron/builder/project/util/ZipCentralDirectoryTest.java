@@ -0,0 +1,55 @@
+package com.tyron.builder.project.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ZipCentralDirectoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadNames() throws IOException {
+        File jar = folder.newFile("test.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.setComment("a comment");
+            for (String name : new String[]{"META-INF/MANIFEST.MF", "a/b/C.class",
+                    "a/b/C$Inner.class", "D.class", "a/res.txt"}) {
+                ZipEntry entry = new ZipEntry(name);
+                entry.setExtra(new byte[]{1, 2, 3, 4});
+                entry.setComment("comment of " + name);
+                out.putNextEntry(entry);
+                out.write(name.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        ZipCentralDirectory.forEachEntryName(jar, ".class", names::add);
+
+        assert names.size() == 3;
+        assert names.contains("a/b/C.class");
+        assert names.contains("a/b/C$Inner.class");
+        assert names.contains("D.class");
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidZip() throws IOException {
+        File file = folder.newFile("invalid.jar");
+        Files.write(file.toPath(), "this is not a zip file, it is long enough though"
+                .getBytes(StandardCharsets.UTF_8));
+
+        ZipCentralDirectory.forEachEntryName(file, ".class", name -> {});
+    }
+}
@@ -2,11 +2,11 @@ package com.tyron.builder.internal.fingerprint.impl;
 
 import com.google.common.hash.HashCode;
 import com.google.common.hash.Hasher;
-import com.google.common.hash.Hashing;
 import com.tyron.builder.internal.fingerprint.CurrentFileCollectionFingerprint;
 import com.tyron.builder.internal.fingerprint.FingerprintingStrategy;
 import com.tyron.builder.internal.fingerprint.hashing.ConfigurableNormalizer;
 import com.tyron.builder.internal.fingerprint.hashing.FileSystemLocationSnapshotHasher;
+import com.tyron.builder.internal.hash.Hashes;
 import com.tyron.builder.internal.snapshot.FileSystemLocationSnapshot;
 
 
@@ -27,7 +27,7 @@ public abstract class AbstractFingerprintingStrategy implements FingerprintingSt
     ) {
         this.identifier = identifier;
         this.emptyFingerprint = new EmptyCurrentFileCollectionFingerprint(identifier);
-        Hasher hasher = Hashing.md5().newHasher();
+        Hasher hasher = Hashes.newHasher();
         hasher.putString(getClass().getName(), StandardCharsets.UTF_8);
         configurableNormalizer.appendConfigurationToHasher(hasher);
         this.configurationHash = hasher.hash();
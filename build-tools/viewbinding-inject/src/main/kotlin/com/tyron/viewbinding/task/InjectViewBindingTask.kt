@@ -30,14 +30,11 @@ class InjectViewBindingTask private constructor(
             genTask.prepareWithOutputDir(outputDir)
             genTask.run()
 
-            val sources = outputDir.walkTopDown().filter {
-                it.isFile && it.name.endsWith(".java")
-            }.toList()
-
             // inject classes
-            sources.forEach(module::addInjectedClass)
+            genTask.outputFiles.forEach(module::addInjectedClass)
 
-            consumer.invoke(sources)
+            // only the classes of the layouts that changed need to be compiled again
+            consumer.invoke(genTask.writtenFiles)
         } catch (ignored: Throwable) {}
     }
 
@@ -52,7 +49,7 @@ class InjectViewBindingTask private constructor(
 
             val task = InjectViewBindingTask(project, module)
             task.doInject { files ->
-                if (project.isCompiling || project.isIndexing) {
+                if (files.isEmpty() || project.isCompiling || project.isIndexing) {
                     return@doInject
                 }
 
@@ -141,6 +141,12 @@ public class SimpleResourceRepository implements Repository {
                     .forEach(mTable::remove);
         }
 
+        if (contents == null && !file.exists()) {
+            // the file has been deleted, only its resources had to be removed
+            mFileItems.removeAll(file);
+            return;
+        }
+
         File parent = file.getParentFile();
         if (parent == null) {
             return;
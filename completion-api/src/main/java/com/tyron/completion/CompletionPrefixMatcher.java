@@ -1,17 +1,10 @@
 package com.tyron.completion;
 
-import me.xdrop.fuzzywuzzy.FuzzySearch;
-
 /**
  * Logic of matching a completion name with a given completion prefix
  */
 public class CompletionPrefixMatcher {
 
-    /**
-     * The minimum score needed for a candidate to be considered as partial match.
-     */
-    private static final int MINIMUM_SCORE = 70;
-
     /**
      * How well does the candidate name match the completion prefix.
      *
@@ -28,23 +21,107 @@ public class CompletionPrefixMatcher {
         CASE_SENSITIVE_EQUAL
     }
 
-    public static MatchLevel computeMatchLevel(String candidateName, String completionPrefix) {
-        if (candidateName.startsWith(completionPrefix)) {
-            return candidateName.length() == completionPrefix.length()
-                    ? MatchLevel.CASE_SENSITIVE_EQUAL
-                    : MatchLevel.CASE_SENSITIVE_PREFIX;
+    private static MatchLevel prefixLevel(boolean caseSensitive, boolean equal) {
+        if (caseSensitive) {
+            return equal ? MatchLevel.CASE_SENSITIVE_EQUAL : MatchLevel.CASE_SENSITIVE_PREFIX;
         }
+        return equal ? MatchLevel.CASE_INSENSITIVE_EQUAL : MatchLevel.CASE_INSENSITIVE_PREFIX;
+    }
 
-        if (candidateName.toLowerCase().startsWith(completionPrefix.toLowerCase())) {
-            return candidateName.length() == completionPrefix.length()
-                    ? MatchLevel.CASE_INSENSITIVE_EQUAL
-                    : MatchLevel.CASE_INSENSITIVE_PREFIX;
+    /**
+     * Whether a hump of the name starts at the given index: the first character, an upper case
+     * letter, a digit following a letter, or any letter or digit following a separator such as
+     * {@code _}, {@code .} or {@code $}.
+     */
+    private static boolean isHumpStart(CharSequence name, int index) {
+        char c = name.charAt(index);
+        if (index == 0 || Character.isUpperCase(c)) {
+            return true;
+        }
+        char previous = name.charAt(index - 1);
+        if (Character.isDigit(c)) {
+            return !Character.isDigit(previous);
         }
+        return Character.isLetter(c) && !Character.isLetterOrDigit(previous);
+    }
 
-        int score = FuzzySearch.ratio(candidateName, completionPrefix);
-        if (score > MINIMUM_SCORE) {
+    /**
+     * A candidate name with its lower case form and the start of each of its humps computed
+     * once, so it can be matched against every prefix the user types without allocating.
+     */
+    public static final class Candidate {
+        private final String name;
+        private final char[] lowercase;
+        private final int[] humps;
+
+        public Candidate(String name) {
+            this.name = name;
+            int length = name.length();
+            this.lowercase = new char[length];
+            int humpCount = 0;
+            for (int i = 0; i < length; i++) {
+                lowercase[i] = Character.toLowerCase(name.charAt(i));
+                if (isHumpStart(name, i)) {
+                    humpCount++;
+                }
+            }
+            this.humps = new int[humpCount];
+            for (int i = 0, hump = 0; i < length; i++) {
+                if (isHumpStart(name, i)) {
+                    humps[hump++] = i;
+                }
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Computes the match level without allocating. A name that does not start with the
+         * prefix is a partial match when the characters of the prefix can be found in order at
+         * the start of its humps, e.g. {@code arLi} and {@code AL} both match {@code ArrayList}.
+         */
+        public MatchLevel match(CharSequence completionPrefix) {
+            int prefixLength = completionPrefix.length();
+            int candidateLength = lowercase.length;
+            if (prefixLength <= candidateLength) {
+                boolean caseSensitive = true;
+                boolean caseInsensitive = true;
+                for (int i = 0; i < prefixLength && caseInsensitive; i++) {
+                    char p = completionPrefix.charAt(i);
+                    if (name.charAt(i) != p) {
+                        caseSensitive = false;
+                        caseInsensitive = lowercase[i] == Character.toLowerCase(p);
+                    }
+                }
+                if (caseInsensitive) {
+                    return prefixLevel(caseSensitive, candidateLength == prefixLength);
+                }
+            }
+
+            int position = 0;
+            int hump = 0;
+            for (int i = 0; i < prefixLength; i++) {
+                char p = Character.toLowerCase(completionPrefix.charAt(i));
+                if (position < candidateLength && lowercase[position] == p) {
+                    position++;
+                    continue;
+                }
+                while (hump < humps.length && (humps[hump] < position || lowercase[humps[hump]] != p)) {
+                    hump++;
+                }
+                if (hump == humps.length) {
+                    return MatchLevel.NOT_MATCH;
+                }
+                position = humps[hump] + 1;
+            }
             return MatchLevel.PARTIAL_MATCH;
         }
-        return MatchLevel.NOT_MATCH;
+
+        @Override
+        public String toString() {
+            return name;
+        }
     }
 }
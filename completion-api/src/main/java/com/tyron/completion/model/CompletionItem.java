@@ -22,9 +22,7 @@ public class CompletionItem implements Comparable<CompletionItem> {
             Comparator.comparing((CompletionItem item) -> item.getMatchLevel()
                     .ordinal(), Comparator.reverseOrder())
                     .thenComparing(CompletionItem::getSortText)
-                    .thenComparing(it -> it.getFilterTexts()
-                            .isEmpty() ? it.getLabel() : it.getFilterTexts()
-                            .get(0));
+                    .thenComparing(it -> it.filterTexts.isEmpty() ? it.getLabel() : it.filterTexts.get(0));
 
 
     public static CompletionItem create(String label, String detail, String commitText) {
@@ -52,6 +50,7 @@ public class CompletionItem implements Comparable<CompletionItem> {
     private String sortText;
     private List<String> filterTexts = new ArrayList<>(1);
     private CompletionPrefixMatcher.MatchLevel matchLevel;
+    private CompletionPrefixMatcher.Candidate[] filterCandidates;
 
     public CompletionItem() {
         this.insertHandler = new DefaultInsertHandler(CompletionUtils.JAVA_PREDICATE, this);
@@ -85,6 +84,27 @@ public class CompletionItem implements Comparable<CompletionItem> {
 
     public void addFilterText(String text) {
         filterTexts.add(text);
+        filterCandidates = null;
+    }
+
+    /**
+     * The filter texts prepared for matching, computed once and reused when the list is
+     * filtered again as the user keeps typing.
+     */
+    public CompletionPrefixMatcher.Candidate[] getFilterCandidates() {
+        CompletionPrefixMatcher.Candidate[] candidates = filterCandidates;
+        if (candidates == null || (filterTexts.isEmpty() && !Objects.equals(candidates[0].getName(), label))) {
+            if (filterTexts.isEmpty()) {
+                candidates = new CompletionPrefixMatcher.Candidate[]{new CompletionPrefixMatcher.Candidate(label)};
+            } else {
+                candidates = new CompletionPrefixMatcher.Candidate[filterTexts.size()];
+                for (int i = 0; i < candidates.length; i++) {
+                    candidates[i] = new CompletionPrefixMatcher.Candidate(filterTexts.get(i));
+                }
+            }
+            filterCandidates = candidates;
+        }
+        return candidates;
     }
 
     public String getSortText() {
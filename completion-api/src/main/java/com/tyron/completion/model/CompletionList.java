@@ -12,7 +12,6 @@ import com.tyron.completion.CompletionProvider;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -66,6 +65,7 @@ public class CompletionList {
     public static class Builder {
         private final List<CompletionItem> items;
         private boolean incomplete;
+        private int maxItems = Integer.MAX_VALUE;
 
         private final String completionPrefix;
 
@@ -94,25 +94,30 @@ public class CompletionList {
         }
 
         public Builder addItem(CompletionItem item) {
-            List<MatchLevel> matchLevels = new ArrayList<>();
-            for (String filterText : item.getFilterTexts()) {
-                MatchLevel matchLevel =
-                        CompletionPrefixMatcher.computeMatchLevel(filterText, completionPrefix);
-                if (matchLevel == MatchLevel.NOT_MATCH) {
-                    continue;
+            MatchLevel matchLevel = MatchLevel.NOT_MATCH;
+            for (CompletionPrefixMatcher.Candidate candidate : item.getFilterCandidates()) {
+                MatchLevel candidateLevel = candidate.match(completionPrefix);
+                if (candidateLevel.compareTo(matchLevel) > 0) {
+                    matchLevel = candidateLevel;
                 }
-                matchLevels.add(matchLevel);
             }
-            if (matchLevels.isEmpty()) {
+            if (matchLevel == MatchLevel.NOT_MATCH) {
                 return this;
             }
-            Collections.sort(matchLevels);
-            MatchLevel matchLevel = matchLevels.get(matchLevels.size() - 1);
             item.setMatchLevel(matchLevel);
             items.add(item);
             return this;
         }
 
+        /**
+         * Only keeps the best {@code maxItems} items when the list is built, the rest are not
+         * sorted and the list is marked as incomplete.
+         */
+        public Builder limit(int maxItems) {
+            this.maxItems = maxItems;
+            return this;
+        }
+
         public int getItemCount() {
             return items.size();
         }
@@ -128,8 +133,13 @@ public class CompletionList {
         @SuppressWarnings("NewApi")
         public CompletionList build() {
             CompletionList list = new CompletionList();
-            list.isIncomplete = this.incomplete;
-            list.items = ITEM_ORDERING.immutableSortedCopy(items);
+            if (items.size() > maxItems) {
+                list.isIncomplete = true;
+                list.items = ImmutableList.copyOf(ITEM_ORDERING.leastOf(items, maxItems));
+            } else {
+                list.isIncomplete = this.incomplete;
+                list.items = ITEM_ORDERING.immutableSortedCopy(items);
+            }
             return list;
         }
     }
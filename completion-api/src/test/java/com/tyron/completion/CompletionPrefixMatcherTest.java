@@ -0,0 +1,49 @@
+package com.tyron.completion;
+
+import static org.junit.Assert.assertEquals;
+
+import com.tyron.completion.CompletionPrefixMatcher.Candidate;
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import org.junit.Test;
+
+public class CompletionPrefixMatcherTest {
+
+    @Test
+    public void testPrefixLevels() {
+        Candidate arrayList = new Candidate("ArrayList");
+        assertEquals(MatchLevel.CASE_SENSITIVE_EQUAL, arrayList.match("ArrayList"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_EQUAL, arrayList.match("arraylist"));
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX, arrayList.match("Arr"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_PREFIX, arrayList.match("arr"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_PREFIX, arrayList.match("ARRAY"));
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX, arrayList.match(""));
+    }
+
+    @Test
+    public void testHumpMatches() {
+        Candidate arrayList = new Candidate("ArrayList");
+        assertEquals(MatchLevel.PARTIAL_MATCH, arrayList.match("AL"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, arrayList.match("al"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, arrayList.match("arLi"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, arrayList.match("List"));
+
+        Candidate constant = new Candidate("MAX_COMPLETION_ITEMS");
+        assertEquals(MatchLevel.PARTIAL_MATCH, constant.match("MCI"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, constant.match("maxIt"));
+
+        Candidate base64 = new Candidate("Base64Decoder");
+        assertEquals(MatchLevel.PARTIAL_MATCH, base64.match("B64D"));
+    }
+
+    @Test
+    public void testNonMatches() {
+        Candidate arrayList = new Candidate("ArrayList");
+        assertEquals(MatchLevel.NOT_MATCH, arrayList.match("LA"));
+        assertEquals(MatchLevel.NOT_MATCH, arrayList.match("ArrayLists"));
+        assertEquals(MatchLevel.NOT_MATCH, arrayList.match("rayList"));
+        assertEquals(MatchLevel.NOT_MATCH, arrayList.match("Arylist"));
+        assertEquals(MatchLevel.NOT_MATCH, arrayList.match("x"));
+        assertEquals(MatchLevel.NOT_MATCH, new Candidate("").match("a"));
+    }
+}
@@ -13,6 +13,7 @@ import com.tyron.completion.java.compiler.JavaCompilerService;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -53,6 +54,16 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
         mProvider = null;
     }
 
+    /**
+     * Invalidates the given source files in the current compiler, if one has been created.
+     */
+    public void invalidate(Collection<File> files) {
+        JavaCompilerService service = mProvider;
+        if (service != null) {
+            service.invalidateFiles(files);
+        }
+    }
+
     public synchronized JavaCompilerService getCompiler(Project project, JavaModule module) {
         List<Module> dependencies = new ArrayList<>();
         if (project != null) {
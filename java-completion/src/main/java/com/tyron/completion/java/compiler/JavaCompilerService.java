@@ -138,6 +138,21 @@ public class JavaCompilerService implements CompilerProvider {
         }
     }
 
+    /**
+     * Invalidates the given source files once no compilation is running, used when they
+     * are changed outside of the editor.
+     */
+    public void invalidateFiles(Collection<File> files) {
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (File file : files) {
+            sources.add(new SourceFileObject(file.toPath()));
+        }
+        mContainer.getWithLock(task -> {
+            invalidate(sources);
+            return null;
+        });
+    }
+
     private CompileBatch doCompile(Collection<? extends JavaFileObject> sources) {
         if (sources.isEmpty()) {
             throw new RuntimeException("empty sources");
@@ -8,7 +8,8 @@ import android.preference.PreferenceManager;
 
 import com.tyron.common.ApplicationProvider;
 import com.tyron.common.SharedPreferenceKeys;
-import com.tyron.common.util.StringSearch;
+import com.tyron.completion.CompletionPrefixMatcher;
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.insert.ClassImportInsertHandler;
@@ -16,17 +17,32 @@ import com.tyron.completion.java.util.ActionUtil;
 import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.CompletionList;
 
+import com.google.common.collect.Ordering;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.TreePath;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.Predicate;
 
 public class ClassNameCompletionProvider extends BaseCompletionProvider {
 
+    /**
+     * The order of class items in the completion list, see {@link CompletionItem#COMPARATOR}.
+     */
+    private static final Ordering<ClassNameMatch> BEST_MATCH_FIRST = Ordering.from(
+            Comparator.comparing((ClassNameMatch match) -> match.matchLevel, Comparator.reverseOrder())
+                    .thenComparing(match -> match.simpleName));
+
+    private static volatile ClassNameCandidates sPackagePrivateTypes;
+    private static volatile ClassNameCandidates sPublicTypes;
+
     public ClassNameCompletionProvider(JavaCompilerService service) {
         super(service);
     }
@@ -51,44 +67,104 @@ public class ClassNameCompletionProvider extends BaseCompletionProvider {
                                      boolean caseSensitive) {
         checkCanceled();
 
-        Predicate<String> predicate;
-        if (caseSensitive) {
-            predicate = string -> StringSearch.matchesPartialName(string, partial);
-        } else {
-            predicate = string -> StringSearch.matchesPartialNameLowercase(string, partial);
-        }
-
         String packageName = Objects.toString(root.getPackageName(), "");
+        ClassNameCandidates packagePrivateTypes = ClassNameCandidates.of(sPackagePrivateTypes,
+                new HashSet<>(compiler.packagePrivateTopLevelTypes(packageName)));
+        sPackagePrivateTypes = packagePrivateTypes;
+        ClassNameCandidates publicTypes = ClassNameCandidates.of(sPublicTypes,
+                compiler.publicTopLevelTypes());
+        sPublicTypes = publicTypes;
+
         Set<String> uniques = new HashSet<>();
-        for (String className : compiler.packagePrivateTopLevelTypes(packageName)) {
-            if (!predicate.test(className)) {
-                continue;
+        List<ClassNameMatch> matches = new ArrayList<>();
+        packagePrivateTypes.addMatches(partial, caseSensitive, false, uniques, matches);
+        publicTypes.addMatches(partial, caseSensitive, true, uniques, matches);
+
+        // class items are all sorted as TO_IMPORT, so only the best matches can make it into
+        // the limited list, the items and insert handlers of the others are never created
+        if (matches.size() > Completions.MAX_COMPLETION_ITEMS) {
+            list.incomplete();
+            matches = BEST_MATCH_FIRST.leastOf(matches, Completions.MAX_COMPLETION_ITEMS);
+        }
+        File file = new File(root.getSourceFile().toUri());
+        for (ClassNameMatch match : matches) {
+            CompletionItem item = classItem(match.className);
+            if (match.requiresImport) {
+                item.setInsertHandler(new ClassImportInsertHandler(compiler, file, item));
             }
-            list.addItem(classItem(className));
-            uniques.add(className);
+            list.addItem(item);
         }
+    }
 
-        for (String className : compiler.publicTopLevelTypes()) {
-            // more strict on matching class names
-            String simpleName = ActionUtil.getSimpleName(className);
-            if (!predicate.test(simpleName)) {
-                continue;
+    /**
+     * Matches the simple name of a class with {@link CompletionPrefixMatcher.Candidate}, so
+     * camel humps such as {@code AL} match {@code ArrayList}. A case sensitive match only
+     * rejects names that start with the prefix in a different case.
+     */
+    private static MatchLevel match(CompletionPrefixMatcher.Candidate candidate, String partial,
+                                    boolean caseSensitive) {
+        MatchLevel matchLevel = candidate.match(partial);
+        if (caseSensitive && (matchLevel == MatchLevel.CASE_INSENSITIVE_PREFIX ||
+                              matchLevel == MatchLevel.CASE_INSENSITIVE_EQUAL)) {
+            return MatchLevel.NOT_MATCH;
+        }
+        return matchLevel;
+    }
+
+    /**
+     * The candidates of a set of class names. Creating a candidate lowercases the simple name
+     * and finds its humps, so they are only created again when the classes have changed, not
+     * on every keystroke.
+     */
+    private static final class ClassNameCandidates {
+        private final Set<String> classNames;
+        private final String[] qualifiedNames;
+        private final CompletionPrefixMatcher.Candidate[] candidates;
+
+        private ClassNameCandidates(Set<String> classNames) {
+            this.classNames = classNames;
+            this.qualifiedNames = classNames.toArray(new String[0]);
+            this.candidates = new CompletionPrefixMatcher.Candidate[qualifiedNames.length];
+            for (int i = 0; i < qualifiedNames.length; i++) {
+                candidates[i] = new CompletionPrefixMatcher.Candidate(
+                        ActionUtil.getSimpleName(qualifiedNames[i]));
             }
-            if (uniques.contains(className)) {
-                continue;
+        }
+
+        /**
+         * @return the previous candidates if they were created for the same class names
+         */
+        static ClassNameCandidates of(@Nullable ClassNameCandidates previous, Set<String> classNames) {
+            if (previous != null && previous.classNames.equals(classNames)) {
+                return previous;
             }
-            if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
-                list.incomplete();
-                break;
+            return new ClassNameCandidates(classNames);
+        }
+
+        void addMatches(String partial, boolean caseSensitive, boolean requiresImport,
+                        Set<String> uniques, List<ClassNameMatch> matches) {
+            for (int i = 0; i < candidates.length; i++) {
+                MatchLevel matchLevel = match(candidates[i], partial, caseSensitive);
+                if (matchLevel != MatchLevel.NOT_MATCH && uniques.add(qualifiedNames[i])) {
+                    matches.add(new ClassNameMatch(qualifiedNames[i], candidates[i].getName(),
+                            matchLevel, requiresImport));
+                }
             }
-            CompletionItem item = classItem(className);
-            item.data = className;
-            item.setInsertHandler(new ClassImportInsertHandler(compiler, new File(
-                    root.getSourceFile()
-                            .toUri()), item));
-            item.setSortText(JavaSortCategory.TO_IMPORT.toString());
-            list.addItem(item);
-            uniques.add(className);
+        }
+    }
+
+    private static class ClassNameMatch {
+        private final String className;
+        private final String simpleName;
+        private final MatchLevel matchLevel;
+        private final boolean requiresImport;
+
+        private ClassNameMatch(String className, String simpleName, MatchLevel matchLevel,
+                               boolean requiresImport) {
+            this.className = className;
+            this.simpleName = simpleName;
+            this.matchLevel = matchLevel;
+            this.requiresImport = requiresImport;
         }
     }
 }
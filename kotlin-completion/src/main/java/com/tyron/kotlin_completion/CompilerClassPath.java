@@ -1,5 +1,6 @@
 package com.tyron.kotlin_completion;
 
+import com.google.common.hash.Hashing;
 import com.tyron.builder.BuildModule;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.kotlin_completion.classpath.ClassPathEntry;
@@ -10,8 +11,10 @@ import com.tyron.kotlin_completion.util.AsyncExecutor;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -93,6 +96,29 @@ public class CompilerClassPath implements Closeable {
         return compiler;
     }
 
+    public AndroidModule getModule() {
+        return mProject;
+    }
+
+    /**
+     * @return a hash of the jars in the class path and their size and last modified time,
+     * used to determine whether the symbols of the libraries have changed.
+     */
+    public String getClassPathHash() {
+        List<String> entries;
+        synchronized (mClassPath) {
+            entries = mClassPath.stream()
+                    .map(ClassPathEntry::getCompiledJar)
+                    .map(Path::toFile)
+                    .map(file -> file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        return Hashing.sha256()
+                .hashString(String.join("\n", entries), StandardCharsets.UTF_8)
+                .toString();
+    }
+
     @Override
     public void close() throws IOException {
 
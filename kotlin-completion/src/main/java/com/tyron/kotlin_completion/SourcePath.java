@@ -12,6 +12,7 @@ import org.jetbrains.kotlin.com.intellij.lang.Language;
 import org.jetbrains.kotlin.com.intellij.psi.PsiElement;
 import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
 import org.jetbrains.kotlin.container.ComponentProvider;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
 import org.jetbrains.kotlin.psi.KtFile;
@@ -26,8 +27,11 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -52,13 +56,14 @@ public class SourcePath {
     }
 
     private final AsyncExecutor indexAsync = new AsyncExecutor();
-    private final SymbolIndex index = new SymbolIndex();
-    private boolean indexEnabled = false;
-    private boolean indexInitialized;
+    private final SymbolIndex index;
+    private boolean indexEnabled = true;
+    private String indexedClassPathHash;
 
 
     public SourcePath(CompilerClassPath classPath) {
         cp = classPath;
+        index = new SymbolIndex(new File(classPath.getModule().getBuildDirectory(), "index/kotlin"));
     }
 
     public CompilerClassPath getCompilerClassPath() {
@@ -164,6 +169,7 @@ public class SourcePath {
                 }
             }
             initializeIndexAsyncIfNeeded(compiledcontainer);
+            updateIndexAsync(Collections.singleton(this));
         }
         public CompiledFile prepareCompiledFile() {
             parseIfChanged();
@@ -213,7 +219,10 @@ public class SourcePath {
     }
 
     public void delete(File file) {
-        files.remove(file.toURI());
+        SourceFile removed = files.remove(file.toURI());
+        if (indexEnabled && removed != null && !removed.isTemporary) {
+            indexAsync.execute(() -> index.removeSourceFile(removed.uri.toString()));
+        }
     }
 
     public BindingContext compileFiles(Collection<File> all) {
@@ -229,16 +238,45 @@ public class SourcePath {
         return UtilKt.util(sourcesContext, sources, allChanged);
     }
 
+    /**
+     * Builds the library partition of the index, this walks every package of the class path
+     * so it is only done when the class path has changed since the index was last built.
+     */
     private void initializeIndexAsyncIfNeeded(ComponentProvider container) {
         indexAsync.execute(() -> {
-            if (indexEnabled && !indexInitialized) {
-                ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
-                index.refresh(module, true);
-                indexInitialized = true;
+            if (indexEnabled) {
+                String classPathHash = cp.getClassPathHash();
+                if (!classPathHash.equals(indexedClassPathHash)) {
+                    ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
+                    index.refreshLibraries(module, classPathHash);
+                    indexedClassPathHash = classPathHash;
+                }
             }
         });
     }
 
+    /**
+     * Replaces the symbols of the given source files on the index with their top level
+     * declarations from their latest compilation.
+     */
+    private void updateIndexAsync(Collection<SourceFile> changed) {
+        if (!indexEnabled) {
+            return;
+        }
+        for (SourceFile file : changed) {
+            KtFile compiled = file.compiledFile;
+            BindingContext context = file.compiledContext;
+            if (file.isTemporary || compiled == null || context == null) {
+                continue;
+            }
+            List<DeclarationDescriptor> declarations = compiled.getDeclarations().stream()
+                    .map(it -> context.get(BindingContext.DECLARATION_TO_DESCRIPTOR, it))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            String uri = file.uri.toString();
+            indexAsync.execute(() -> index.updateSourceFile(uri, CollectionsKt.asSequence(declarations)));
+        }
+    }
 
     private BindingContext compileAndUpdate(Set<SourceFile> changed) {
         if (changed.isEmpty()) return null;
@@ -264,6 +302,7 @@ public class SourcePath {
         });
 
         initializeIndexAsyncIfNeeded(pair.getSecond());
+        updateIndexAsync(changed);
         return pair.getFirst();
     }
 
@@ -7,8 +7,10 @@ import org.jetbrains.exposed.sql.transactions.transaction
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.MemberScope
+import java.io.File
 import java.lang.IllegalStateException
 import java.time.Duration
 import java.time.Instant
@@ -16,14 +18,27 @@ import kotlin.sequences.Sequence
 
 private const val MAX_FQNAME_LENGTH = 255
 private const val MAX_SHORT_NAME_LENGTH = 80
+private const val MAX_PARTITION_LENGTH = 1024
+
+/**
+ * Bumped whenever the tables change so a persisted index with an older schema is not used
+ */
+private const val SCHEMA_VERSION = 1
+
+/**
+ * The partition of the symbols declared in the libraries of the module, source files
+ * are stored in their own partition named after their uri.
+ */
+private const val LIBRARY_PARTITION = "<libraries>"
 
 private object Symbols : Table() {
     val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH) references FqNames.fqName
     val kind = integer("kind")
     val visibility = integer("visibility")
     val extensionReceiverType = varchar("extensionreceivertype", length = MAX_FQNAME_LENGTH).nullable()
+    val partition = varchar("partition", length = MAX_PARTITION_LENGTH).index()
 
-    override val primaryKey = PrimaryKey(fqName)
+    override val primaryKey = PrimaryKey(fqName, partition)
 }
 
 private object FqNames : Table() {
@@ -32,58 +47,137 @@ private object FqNames : Table() {
 
     override val primaryKey = PrimaryKey(fqName)
 }
-class SymbolIndex {
-    private val db = Database.connect("jdbc:h2:mem:symbolindex;DB_CLOSE_DELAY=-1", "org.h2.Driver")
+
+private object Partitions : Table() {
+    val name = varchar("name", length = MAX_PARTITION_LENGTH)
+    val hash = varchar("hash", length = MAX_FQNAME_LENGTH)
+
+    override val primaryKey = PrimaryKey(name)
+}
+
+/**
+ * An index of the top level symbols of a module, split into partitions so they can be updated
+ * independently. The library partition is only rebuilt when the class path changes and is
+ * persisted if a storage directory is given, while the partition of a source file is replaced
+ * whenever that file is compiled.
+ */
+class SymbolIndex(storageDirectory: File? = null) {
+    private val db = if (storageDirectory == null) {
+        Database.connect("jdbc:h2:mem:symbolindex;DB_CLOSE_DELAY=-1", "org.h2.Driver")
+    } else {
+        val file = File(storageDirectory, "symbolindex-v$SCHEMA_VERSION")
+        Database.connect("jdbc:h2:file:${file.absolutePath};DB_CLOSE_DELAY=-1", "org.h2.Driver")
+    }
 
     var indexing: Boolean = false
 
     init {
        transaction (db) {
-           SchemaUtils.create(Symbols, FqNames)
+           SchemaUtils.create(Symbols, FqNames, Partitions)
        }
     }
 
-    fun refresh(module: ModuleDescriptor, forced: Boolean = true) {
+    /**
+     * @return whether the library partition has been built from the class path with the given hash
+     */
+    fun isLibraryIndexUpToDate(classPathHash: String): Boolean = transaction(db) {
+        Partitions.select { Partitions.name eq LIBRARY_PARTITION }
+            .map { it[Partitions.hash] }
+            .firstOrNull() == classPathHash
+    }
+
+    /**
+     * Rebuilds the library partition by walking every package of the module, symbols declared
+     * in source files are skipped as they are stored in their own partitions.
+     * Does nothing if the partition has already been built for the given class path hash.
+     */
+    fun refreshLibraries(module: ModuleDescriptor, classPathHash: String) {
+        if (isLibraryIndexUpToDate(classPathHash)) {
+            return
+        }
+
         val started = System.currentTimeMillis()
-        Log.d("SymbolIndex", "Updating symbol index...");
+        Log.d("SymbolIndex", "Updating library symbol index...")
 
         indexing = true
         try {
             transaction(db) {
-                if (forced) {
-                    Symbols.deleteAll()
+                Symbols.deleteWhere { Symbols.partition eq LIBRARY_PARTITION }
+                val descriptors = allDescriptors(module)
+                    .filter { DescriptorToSourceUtils.getContainingFile(it) == null }
+                addDeclarations(LIBRARY_PARTITION, descriptors)
+
+                Partitions.replace {
+                    it[name] = LIBRARY_PARTITION
+                    it[hash] = classPathHash
                 }
-                for (descriptor in allDescriptors(module)) {
-                    val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
-                    val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
-
-                    if (canStoreFqName(descriptorFqn) && (extensionReceiverFqn?.let { canStoreFqName(it) } != false)) {
-
-                        for (fqn in listOfNotNull(descriptorFqn, extensionReceiverFqn)) {
-                            FqNames.replace {
-                                it[fqName] = fqn.toString()
-                                it[shortName] = fqn.shortName().toString()
-                            }
-                        }
-
-
-                        Symbols.replace {
-                            it[fqName] = descriptorFqn.toString()
-                            it[kind] = descriptor.accept(ExtractSymbolKind, Unit).rawValue
-                            it[visibility] = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
-                            it[extensionReceiverType] = extensionReceiverFqn?.toString()
-                        }
-                    } else {
-                        Log.w("SymbolIndex",
-                            "Excluding symbol $descriptorFqn from index since its name is too long"
-                        );
+            }
+            Log.d("SymbolIndex", "Updated library symbol index in " +
+                    (System.currentTimeMillis() - started) + " ms")
+        } catch (e: Exception) {
+            Log.e("SymbolIndex", "Error while updating symbol index", e)
+        } finally {
+            indexing = false
+        }
+    }
+
+    /**
+     * Replaces the symbols of a source file with the given declarations
+     *
+     * @param uri the uri of the source file
+     * @param declarations the top level declarations of the source file
+     */
+    fun updateSourceFile(uri: String, declarations: Sequence<DeclarationDescriptor>) {
+        try {
+            transaction(db) {
+                Symbols.deleteWhere { Symbols.partition eq uri }
+                addDeclarations(uri, declarations)
+            }
+        } catch (e: Exception) {
+            Log.e("SymbolIndex", "Error while updating symbols of $uri", e)
+        }
+    }
+
+    /**
+     * Removes the symbols of a source file that has been deleted
+     */
+    fun removeSourceFile(uri: String) {
+        try {
+            transaction(db) {
+                Symbols.deleteWhere { Symbols.partition eq uri }
+            }
+        } catch (e: Exception) {
+            Log.e("SymbolIndex", "Error while removing symbols of $uri", e)
+        }
+    }
+
+    private fun addDeclarations(partitionName: String, declarations: Sequence<DeclarationDescriptor>) {
+        for (descriptor in declarations) {
+            val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
+            val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
+
+            if (canStoreFqName(descriptorFqn) && (extensionReceiverFqn?.let { canStoreFqName(it) } != false)) {
+
+                for (fqn in listOfNotNull(descriptorFqn, extensionReceiverFqn)) {
+                    FqNames.replace {
+                        it[fqName] = fqn.toString()
+                        it[shortName] = fqn.shortName().toString()
                     }
                 }
 
-                indexing = false
+
+                Symbols.replace {
+                    it[fqName] = descriptorFqn.toString()
+                    it[kind] = descriptor.accept(ExtractSymbolKind, Unit).rawValue
+                    it[visibility] = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
+                    it[extensionReceiverType] = extensionReceiverFqn?.toString()
+                    it[partition] = partitionName
+                }
+            } else {
+                Log.w("SymbolIndex",
+                    "Excluding symbol $descriptorFqn from index since its name is too long"
+                );
             }
-        } catch (e: Exception) {
-            Log.e("SymbolIndex", "Error while updating symbol index", e);
         }
     }
 
@@ -92,7 +186,9 @@ class SymbolIndex {
         try {
             return transaction(db) {
                 (Symbols innerJoin FqNames)
+                    .slice(Symbols.fqName, Symbols.kind, Symbols.visibility, Symbols.extensionReceiverType)
                     .select { FqNames.shortName.like("$prefix%") and (Symbols.extensionReceiverType eq receiverType?.toString()) }
+                    .withDistinct()
                     .limit(limit)
                     .map {
                         Symbol(
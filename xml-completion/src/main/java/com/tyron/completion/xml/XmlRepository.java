@@ -48,6 +48,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class XmlRepository {
     private final Map<String, DeclareStyleable> mDeclareStyleables = new TreeMap<>();
@@ -55,11 +60,19 @@ public class XmlRepository {
     private final Map<String, AttributeInfo> mExtraAttributes = new TreeMap<>();
     private final Map<String, JavaClass> mJavaViewClasses = new TreeMap<>();
 
+    /**
+     * Runs the updates of the resource repository one at a time, the thread is stopped while
+     * there is nothing to update.
+     */
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(
+            1, 1, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            runnable -> new Thread(runnable, "XmlRepository"));
+
     private boolean mInitialized = false;
     private ResourceRepository mRepository;
 
     public XmlRepository() {
-
+        mExecutor.allowCoreThreadTimeOut(true);
     }
 
     @Deprecated
@@ -81,6 +94,10 @@ public class XmlRepository {
         return mExtraAttributes.get(name);
     }
 
+    public boolean isInitialized() {
+        return mInitialized;
+    }
+
     public void initialize(AndroidModule module) throws IOException {
         if (mInitialized) {
             return;
@@ -310,6 +327,15 @@ public class XmlRepository {
         return mRepository;
     }
 
+    /**
+     * Runs the task on the thread of this repository, after the updates submitted before it.
+     * Tasks that update the resource repository should be run here so that they never run
+     * concurrently with each other or with the tasks reading the updated resources.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return mExecutor.submit(task);
+    }
+
     public static XmlRepository getRepository(Project project, AndroidModule module) throws IOException {
         XmlIndexProvider indexProvider = CompilerService.getInstance()
                 .getIndex(XmlIndexProvider.KEY);
@@ -0,0 +1,357 @@
+package com.tyron.completion.xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.ImmutableSet;
+import com.tyron.builder.compiler.manifest.SdkConstants;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.completion.xml.util.AndroidResourcesUtils;
+import com.tyron.completion.xml.util.XmlUtils;
+import com.tyron.xml.completion.repository.ResourceRepository;
+import com.tyron.xml.completion.repository.api.AttrResourceValue;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceReference;
+import com.tyron.xml.completion.repository.api.ResourceUrl;
+import com.tyron.xml.completion.util.DOMUtils;
+
+import org.eclipse.lemminx.dom.DOMAttr;
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.eclipse.lemminx.dom.DOMElement;
+import org.eclipse.lemminx.dom.DOMNode;
+import org.eclipse.lemminx.dom.DOMParser;
+import org.eclipse.lemminx.uriresolver.URIResolverExtensionManager;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.tools.Diagnostic;
+
+import static com.tyron.completion.xml.util.AttributeProcessingUtil.getLayoutStyleablePrimary;
+import static com.tyron.completion.xml.util.AttributeProcessingUtil.getLayoutStyleableSecondary;
+import static com.tyron.completion.xml.util.AttributeProcessingUtil.getTagAttributes;
+
+/**
+ * Checks a single resource file against the {@link ResourceRepository} of its module without
+ * running AAPT2, so that diagnostics can be shown while the file is being edited. The file is
+ * checked for well-formedness, unknown android attributes on layout tags, malformed references,
+ * references to resources that do not exist and ids that are declared more than once.
+ */
+public class XmlResourceValidator {
+
+    private static final String EMPTY_RESOURCE = "@empty";
+
+    private final ResourceRepository mRepository;
+    private final ResourceNamespace mNamespace;
+
+    public XmlResourceValidator(@NonNull ResourceRepository repository) {
+        mRepository = repository;
+        mNamespace = repository.getNamespace();
+    }
+
+    /**
+     * The result of validating a file.
+     */
+    public static class Result {
+        private final List<DiagnosticWrapper> mDiagnostics = new ArrayList<>();
+        private final Set<String> mDeclaredResources = new LinkedHashSet<>();
+
+        public List<DiagnosticWrapper> getDiagnostics() {
+            return mDiagnostics;
+        }
+
+        /**
+         * @return the resources declared by the file in the form of {@code type/name}, used to
+         * know whether the generated R class needs to be updated after an edit
+         */
+        public Set<String> getDeclaredResources() {
+            return mDeclaredResources;
+        }
+    }
+
+    @NonNull
+    public Result validate(@NonNull File file, @NonNull String contents) {
+        Result result = new Result();
+        if (!checkWellFormed(file, contents, result)) {
+            return result;
+        }
+
+        DOMDocument document = DOMParser.getInstance()
+                .parse(contents, mNamespace.getXmlNamespaceUri(),
+                       new URIResolverExtensionManager());
+        DOMElement root = DOMUtils.getRootElement(document);
+        if (root == null) {
+            return result;
+        }
+        ResourceNamespace.Resolver resolver = DOMUtils.getNamespaceResolver(document);
+        boolean layout = AndroidResourcesUtils.isLayoutXMLFile(file);
+        boolean values = "resources".equals(root.getTagName());
+
+        Set<String> declaredIds = new HashSet<>();
+        collectDeclarations(file, root, values, declaredIds, result);
+        checkElement(file, root, layout, values, resolver, declaredIds, result);
+        return result;
+    }
+
+    private boolean checkWellFormed(File file, String contents, Result result) {
+        try {
+            XmlPullParser parser = XmlUtils.newPullParser();
+            parser.setInput(new StringReader(contents));
+            //noinspection StatementWithEmptyBody
+            while (parser.next() != XmlPullParser.END_DOCUMENT) {
+            }
+            return true;
+        } catch (XmlPullParserException e) {
+            int offset = getOffset(contents, e.getLineNumber(), e.getColumnNumber());
+            result.mDiagnostics.add(createDiagnostic(file, Diagnostic.Kind.ERROR,
+                                                     e.getMessage(), offset, offset));
+            return false;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void collectDeclarations(File file,
+                                     DOMElement root,
+                                     boolean values,
+                                     Set<String> declaredIds,
+                                     Result result) {
+        if (values) {
+            for (DOMNode child : root.getChildren()) {
+                if (!child.isElement()) {
+                    continue;
+                }
+                DOMElement element = (DOMElement) child;
+                String name = element.getAttribute("name");
+                String type = "item".equals(element.getTagName())
+                        ? element.getAttribute("type")
+                        : element.getTagName();
+                if (name != null && type != null) {
+                    result.mDeclaredResources.add(type + "/" + name);
+                }
+            }
+        }
+        collectIds(file, root, declaredIds, new HashSet<>(), result);
+    }
+
+    /**
+     * Collects the ids created with {@code @+id}, an id may be created by any attribute that
+     * references it but only one {@code android:id} attribute may create it.
+     */
+    private void collectIds(File file,
+                            DOMElement element,
+                            Set<String> declaredIds,
+                            Set<String> assignedIds,
+                            Result result) {
+        for (DOMAttr attr : element.getAttributeNodes()) {
+            String value = attr.getValue();
+            if (value == null || !value.startsWith("@+id/")) {
+                continue;
+            }
+            String name = value.substring("@+id/".length());
+            if ("id".equals(attr.getLocalName()) && !assignedIds.add(name)) {
+                result.mDiagnostics.add(createDiagnostic(file, Diagnostic.Kind.WARNING,
+                                                         "Duplicate id " + value + ", already defined earlier in this layout",
+                                                         getValueStart(attr), getValueEnd(attr)));
+            }
+            declaredIds.add(name);
+            result.mDeclaredResources.add("id/" + name);
+        }
+        for (DOMNode child : element.getChildren()) {
+            if (child.isElement()) {
+                collectIds(file, (DOMElement) child, declaredIds, assignedIds, result);
+            }
+        }
+    }
+
+    private void checkElement(File file,
+                              DOMElement element,
+                              boolean layout,
+                              boolean values,
+                              ResourceNamespace.Resolver resolver,
+                              Set<String> declaredIds,
+                              Result result) {
+        Set<String> knownAttributes = layout ? getKnownAttributes(element) : null;
+        for (DOMAttr attr : element.getAttributeNodes()) {
+            if (knownAttributes != null && !knownAttributes.isEmpty() &&
+                isAndroidAttribute(attr, resolver) &&
+                !knownAttributes.contains(attr.getLocalName())) {
+                result.mDiagnostics.add(createDiagnostic(file, Diagnostic.Kind.ERROR,
+                                                         "Unknown attribute " + attr.getName(),
+                                                         attr.getStart(), attr.getStart() + attr.getName().length()));
+            }
+            String value = attr.getValue();
+            if (value != null && !attr.getName().startsWith("xmlns") &&
+                !isToolsAttribute(attr, resolver)) {
+                checkReference(file, value, getValueStart(attr), resolver, declaredIds, result);
+            }
+        }
+
+        for (DOMNode child : element.getChildren()) {
+            if (child.isElement()) {
+                checkElement(file, (DOMElement) child, layout, values, resolver, declaredIds, result);
+            } else if (values && child.isText()) {
+                String text = child.getTextContent();
+                if (text != null) {
+                    int leading = 0;
+                    while (leading < text.length() && Character.isWhitespace(text.charAt(leading))) {
+                        leading++;
+                    }
+                    checkReference(file, text.trim(), child.getStart() + leading, resolver, declaredIds, result);
+                }
+            }
+        }
+    }
+
+    private void checkReference(File file,
+                                String value,
+                                int start,
+                                ResourceNamespace.Resolver resolver,
+                                Set<String> declaredIds,
+                                Result result) {
+        if (!value.startsWith("@") || value.startsWith("@+")) {
+            return;
+        }
+        ResourceUrl url = ResourceUrl.parse(value);
+        if (url == null) {
+            // data binding expressions are not resource references
+            if (!value.startsWith("@{") && !SdkConstants.NULL_RESOURCE.equals(value) &&
+                !EMPTY_RESOURCE.equals(value)) {
+                result.mDiagnostics.add(createDiagnostic(file, Diagnostic.Kind.ERROR,
+                                                         "'" + value + "' is not a valid resource reference",
+                                                         start, start + value.length()));
+            }
+            return;
+        }
+        if (url.isPrivateAccessOverride()) {
+            return;
+        }
+        if (url.type == ResourceType.ID && url.namespace == null && declaredIds.contains(url.name)) {
+            return;
+        }
+        ResourceReference reference = url.resolve(mNamespace, resolver);
+        if (reference == null || exists(reference)) {
+            return;
+        }
+        result.mDiagnostics.add(createDiagnostic(file, Diagnostic.Kind.ERROR,
+                                                 "Cannot resolve symbol '" + value + "'",
+                                                 start, start + value.length()));
+    }
+
+    private boolean exists(ResourceReference reference) {
+        if (!mRepository.getResources(reference).isEmpty()) {
+            return true;
+        }
+        if (reference.getNamespace().equals(ResourceNamespace.ANDROID)) {
+            return false;
+        }
+        // resources of the libraries are stored under the namespace of each library
+        return mRepository.getResources(ResourceNamespace.RES_AUTO, reference.getResourceType())
+                .containsKey(reference.getName());
+    }
+
+    /**
+     * @return the names of the attributes the tag and its parent accept, an empty set if the
+     * tag is not a known view so that its attributes cannot be checked
+     */
+    private Set<String> getKnownAttributes(DOMElement element) {
+        List<AttrResourceValue> attributes =
+                getTagAttributes(mRepository, element, mNamespace, ImmutableSet::of);
+        if (attributes.isEmpty()) {
+            return ImmutableSet.of();
+        }
+        Set<String> names = new HashSet<>();
+        for (AttrResourceValue attribute : attributes) {
+            names.add(attribute.getName());
+        }
+
+        DOMElement parent = element.getParentElement();
+        List<AttrResourceValue> layoutParams = parent == null
+                ? new ArrayList<>()
+                : getTagAttributes(mRepository, parent, mNamespace,
+                                   tag -> ImmutableSet.of(tag, getLayoutStyleablePrimary(tag),
+                                                          getLayoutStyleableSecondary(tag)));
+        if (layoutParams.isEmpty()) {
+            // the layout params of an unknown parent are not known, accept all of them
+            for (DOMAttr attr : element.getAttributeNodes()) {
+                String name = attr.getLocalName();
+                if (name != null && name.startsWith("layout_")) {
+                    names.add(name);
+                }
+            }
+        }
+        for (AttrResourceValue attribute : layoutParams) {
+            names.add(attribute.getName());
+        }
+        return names;
+    }
+
+    private static boolean isAndroidAttribute(DOMAttr attr, ResourceNamespace.Resolver resolver) {
+        String prefix = attr.getPrefix();
+        if (prefix == null || attr.getLocalName() == null) {
+            return false;
+        }
+        return SdkConstants.ANDROID_URI.equals(resolver.prefixToUri(prefix));
+    }
+
+    /**
+     * Attributes in the tools namespace are only used by the editor and are removed by AAPT2,
+     * their values are not checked.
+     */
+    private static boolean isToolsAttribute(DOMAttr attr, ResourceNamespace.Resolver resolver) {
+        String prefix = attr.getPrefix();
+        return prefix != null && SdkConstants.TOOLS_URI.equals(resolver.prefixToUri(prefix));
+    }
+
+    private static int getValueStart(DOMAttr attr) {
+        DOMNode value = attr.getNodeAttrValue();
+        // skip the quote
+        return value != null ? value.getStart() + 1 : attr.getStart();
+    }
+
+    private static int getValueEnd(DOMAttr attr) {
+        DOMNode value = attr.getNodeAttrValue();
+        return value != null ? value.getEnd() - 1 : attr.getEnd();
+    }
+
+    /**
+     * Converts the 1-based line and column reported by the parser to an offset in the contents
+     */
+    private static int getOffset(String contents, int line, int column) {
+        int offset = 0;
+        for (int i = 1; i < line && offset >= 0; i++) {
+            offset = contents.indexOf('\n', offset);
+            if (offset >= 0) {
+                offset++;
+            }
+        }
+        if (offset < 0) {
+            return contents.length();
+        }
+        return Math.min(contents.length(), offset + Math.max(0, column - 1));
+    }
+
+    private static DiagnosticWrapper createDiagnostic(File file,
+                                                      Diagnostic.Kind kind,
+                                                      @Nullable String message,
+                                                      int start,
+                                                      int end) {
+        DiagnosticWrapper wrapper = new DiagnosticWrapper();
+        wrapper.setSource(file);
+        wrapper.setKind(kind);
+        wrapper.setMessage(message);
+        wrapper.setPosition(start);
+        wrapper.setStartPosition(start);
+        wrapper.setEndPosition(end);
+        return wrapper;
+    }
+}
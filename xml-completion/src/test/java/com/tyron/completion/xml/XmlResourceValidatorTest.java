@@ -0,0 +1,150 @@
+package com.tyron.completion.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.ApplicationProvider;
+import com.tyron.xml.completion.repository.ResourceRepository;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 26)
+public class XmlResourceValidatorTest {
+
+    private static final String STRINGS = "<resources>\n" +
+                                          "    <string name=\"app_name\">Test</string>\n" +
+                                          "</resources>";
+
+    private static final String ATTRS = "<resources>\n" +
+                                        "    <declare-styleable name=\"TestView\">\n" +
+                                        "        <attr name=\"id\" format=\"reference\"/>\n" +
+                                        "        <attr name=\"text\" format=\"string\"/>\n" +
+                                        "    </declare-styleable>\n" +
+                                        "</resources>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mStringsFile;
+    private File mLayoutFile;
+    private ResourceRepository mRepository;
+
+    @Before
+    public void setup() throws IOException {
+        ApplicationProvider
+                .initialize(androidx.test.core.app.ApplicationProvider.getApplicationContext());
+
+        File root = folder.getRoot();
+        File resDir = new File(root, "res");
+        mStringsFile = new File(resDir, "values/strings.xml");
+        FileUtils.writeStringToFile(mStringsFile, STRINGS, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(resDir, "values/attrs.xml"), ATTRS,
+                                    StandardCharsets.UTF_8);
+        mLayoutFile = new File(resDir, "layout/activity_main.xml");
+
+        MockAndroidModule module = new MockAndroidModule(root, new MockFileManager(root));
+        module.setPackageName("com.tyron.test");
+        module.setAndroidResourcesDirectory(resDir);
+        module.open();
+
+        ResourceRepository.setInitializeAndroidRepo(false);
+        mRepository = new ResourceRepository(module);
+        mRepository.initialize();
+    }
+
+    @Test
+    public void testAcceptsValidLayout() {
+        String layout = layout("android:id=\"@+id/title\"\n" +
+                               "    android:text=\"@string/app_name\"\n" +
+                               "    tools:text=\"@tools:sample/full_names\"");
+
+        assertTrue(validate(layout).isEmpty());
+    }
+
+    @Test
+    public void testReportsUnknownResourceReference() {
+        String layout = layout("android:text=\"@string/missing\"");
+
+        List<DiagnosticWrapper> diagnostics = validate(layout);
+        assertEquals(1, diagnostics.size());
+        assertDiagnostic(diagnostics.get(0), layout, "@string/missing",
+                         "Cannot resolve symbol '@string/missing'");
+    }
+
+    @Test
+    public void testReportsMalformedReference() {
+        String layout = layout("android:text=\"@strng/app_name\"");
+
+        List<DiagnosticWrapper> diagnostics = validate(layout);
+        assertEquals(1, diagnostics.size());
+        assertDiagnostic(diagnostics.get(0), layout, "@strng/app_name",
+                         "'@strng/app_name' is not a valid resource reference");
+    }
+
+    @Test
+    public void testReportsUnknownAttribute() {
+        String layout = layout("android:txet=\"@string/app_name\"");
+
+        List<DiagnosticWrapper> diagnostics = validate(layout);
+        assertEquals(1, diagnostics.size());
+        assertDiagnostic(diagnostics.get(0), layout, "android:txet",
+                         "Unknown attribute android:txet");
+    }
+
+    @Test
+    public void testClearsDiagnosticsAfterFix() throws IOException {
+        String layout = layout("android:text=\"@string/title\"");
+        assertEquals(1, validate(layout).size());
+
+        // declaring the resource in another file fixes the layout
+        mRepository.updateFile(mStringsFile, STRINGS.replace(
+                "</resources>", "    <string name=\"title\">Title</string>\n</resources>"));
+        assertTrue(validate(layout).isEmpty());
+
+        // and so does fixing the layout itself
+        mRepository.updateFile(mStringsFile, STRINGS);
+        assertEquals(1, validate(layout).size());
+        assertTrue(validate(layout.replace("@string/title", "@string/app_name")).isEmpty());
+    }
+
+    private List<DiagnosticWrapper> validate(String contents) {
+        return new XmlResourceValidator(mRepository).validate(mLayoutFile, contents)
+                .getDiagnostics();
+    }
+
+    private static String layout(String attributes) {
+        return "<TestView\n" +
+               "    xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+               "    xmlns:tools=\"http://schemas.android.com/tools\"\n" +
+               "    " + attributes + "/>";
+    }
+
+    private static void assertDiagnostic(DiagnosticWrapper diagnostic,
+                                         String contents,
+                                         String range,
+                                         String message) {
+        int start = contents.indexOf(range);
+        assertEquals(Diagnostic.Kind.ERROR, diagnostic.getKind());
+        assertEquals(message, diagnostic.getMessage(null));
+        assertEquals(start, diagnostic.getStartPosition());
+        assertEquals(start + range.length(), diagnostic.getEndPosition());
+    }
+}